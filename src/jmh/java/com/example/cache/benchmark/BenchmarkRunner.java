@@ -0,0 +1,39 @@
+package com.example.cache.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the given pattern with 1, 2, 4, ... up to the number of processors threads and the
+ * gc profiler, which reports the allocation rate next to the ops/s. Results are written to
+ * {@code jmh-result-<threads>.json}.
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.cache.benchmark.BenchmarkRunner WorkloadBenchmark
+ * </pre>
+ *
+ * @author vishnu.g
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : "com.example.cache.benchmark.*";
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .exclude("\\.ExpiryBenchmark\\.") // needs a large heap, run on its own, unlike TtlExpiryBenchmark
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads + ".json");
+            new Runner(options.build()).run();
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+}
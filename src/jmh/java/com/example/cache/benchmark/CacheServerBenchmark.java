@@ -0,0 +1,85 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.InMemoryCache;
+import com.example.cache.Serializer;
+import com.example.cache.remote.CacheServer;
+import com.example.cache.remote.RemoteCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of a {@link CacheServer} over loopback: four threads share a {@link RemoteCache} connection to a server
+ * of two reactors. Throughput gives the requests per second, sample time the latency percentiles, p99 included. A
+ * {@code pipelined} invocation sends {@value #PIPELINE_DEPTH} gets before waiting for their responses, its scores
+ * are per request.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CacheServerBenchmark {
+
+    private static final int PIPELINE_DEPTH = 16;
+    private static final int CAPACITY = 65536;
+
+    private CacheServer<String, String> server;
+    private RemoteCache<String, String> client;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        InMemoryCache<String, String> cache = InMemoryCache.builder().maximumSize(CAPACITY).build();
+        keys = new String[CAPACITY * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key-" + i;
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put(keys[i], "value-" + i);
+        }
+        server = new CacheServer<>(cache, Serializer.string(), Serializer.string(), 2);
+        InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new RemoteCache<>(address, Serializer.string(), Serializer.string());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public String get() {
+        return client.get(nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        String key = nextKey();
+        client.put(key, key);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public Object pipelined() {
+        CompletableFuture<?>[] gets = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            gets[i] = client.getAsync(nextKey());
+        }
+        return CompletableFuture.allOf(gets).join();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.*;
+
+/**
+ * The cache implementations under benchmark, each one bounded to the given capacity where it supports it.
+ *
+ * @author vishnu.g
+ */
+public enum CacheType {
+
+    IN_MEMORY_CACHE_LRU {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return InMemoryCache.builder().initialCapacity(capacity).maximumSize(capacity).build();
+        }
+    },
+    IN_MEMORY_CACHE_TINY_LFU {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return InMemoryCache.builder().initialCapacity(capacity).maximumSize(capacity)
+                    .evictionPolicy(EvictionPolicy.WINDOW_TINY_LFU).build();
+        }
+    },
+    IN_MEMORY_CACHE_CLOCK {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return InMemoryCache.builder().initialCapacity(capacity).maximumSize(capacity)
+                    .evictionPolicy(EvictionPolicy.CLOCK).build();
+        }
+    },
+    IN_MEMORY_CACHE_SEGMENTED {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return InMemoryCache.builder().initialCapacity(capacity).maximumSize(capacity)
+                    .concurrencyLevel(16).build();
+        }
+    },
+    LRU_MAP {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return new InMemoryCacheWithLRUMap<>(capacity);
+        }
+    },
+    LRU_EVICTION {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return new InMemoryCacheWithLRUEviction<>(capacity);
+        }
+    },
+    FIFO_EVICTION {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return new InMemoryCacheWithFIFOEviction<>(capacity);
+        }
+    },
+    LFU_EVICTION {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return new InMemoryCacheWithLFUEviction<>(capacity);
+        }
+    },
+    /**
+     * Unbounded, the capacity is ignored.
+     */
+    DELAY_QUEUE {
+        @Override
+        <K, V> Cache<K, V> create(int capacity) {
+            return new InMemoryCacheWithDelayQueue<>();
+        }
+    };
+
+    abstract <K, V> Cache<K, V> create(int capacity);
+}
@@ -0,0 +1,53 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts of keys from a key space a hundred times the capacity, so nearly every put evicts an entry.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvictionChurnBenchmark {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"IN_MEMORY_CACHE_LRU", "IN_MEMORY_CACHE_TINY_LFU", "IN_MEMORY_CACHE_CLOCK", "IN_MEMORY_CACHE_SEGMENTED",
+            "LRU_MAP", "LRU_EVICTION", "FIFO_EVICTION", "LFU_EVICTION"})
+    private CacheType cacheType;
+
+    @Param({"1000"})
+    private int capacity;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[capacity * 100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        cache = cacheType.create(capacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    public void putAndEvict() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        cache.put(key, key, TTL);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a put and an overwrite while the cache holds many live keys with a ttl, each one scheduled in the
+ * timer wheel of the cache.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ExpiryBenchmark {
+
+    // one hour, no key expires while measuring
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"10000000"})
+    private int liveKeys;
+
+    @Param({"IN_MEMORY_CACHE_LRU", "DELAY_QUEUE", "LRU_EVICTION", "FIFO_EVICTION"})
+    private CacheType cacheType;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = cacheType.create(liveKeys);
+        keys = new Integer[liveKeys];
+        for (int i = 0; i < liveKeys; i++) {
+            keys[i] = i;
+            cache.put(keys[i], keys[i], TTL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    /**
+     * Replaces a live key, which cancels the old timer and schedules a new one.
+     */
+    @Benchmark
+    public void overwrite() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(liveKeys)];
+        cache.put(key, key, TTL);
+    }
+
+    /**
+     * Removes a live key and puts it back, which cancels and schedules a timer.
+     */
+    @Benchmark
+    public void removeAndPut() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(liveKeys)];
+        cache.remove(key);
+        cache.put(key, key, TTL);
+    }
+}
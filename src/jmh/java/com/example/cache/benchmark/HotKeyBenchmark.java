@@ -0,0 +1,57 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.InMemoryCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets from all processors on an {@link InMemoryCache} tracking its hot keys at sample rates from 1% to all the
+ * reads, against one not tracking them (rate 0), to show the cost the tracker adds to a get.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class HotKeyBenchmark {
+
+    private static final int CAPACITY = 65536;
+
+    @Param({"0", "0.01", "0.1", "1"})
+    private double sampleRate;
+
+    private InMemoryCache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryCache.CacheBuilder<Object, Object> builder = InMemoryCache.builder().maximumSize(CAPACITY)
+                .concurrencyLevel(16);
+        if (sampleRate > 0) {
+            builder.trackHotKeys(64, sampleRate);
+        }
+        cache = builder.build();
+        keys = new Integer[CAPACITY];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+        cache.clear();
+    }
+
+    @Benchmark
+    public Integer get() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+}
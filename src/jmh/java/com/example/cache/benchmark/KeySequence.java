@@ -0,0 +1,83 @@
+package com.example.cache.benchmark;
+
+import java.util.Random;
+
+/**
+ * Precomputed sequences of key indexes, so drawing a key costs no time while measuring.
+ *
+ * @author vishnu.g
+ */
+public enum KeySequence {
+
+    UNIFORM {
+        @Override
+        int[] generate(int keySpace, int length, long seed) {
+            Random random = new Random(seed);
+            int[] keys = new int[length];
+            for (int i = 0; i < length; i++) {
+                keys[i] = random.nextInt(keySpace);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Zipf distribution with an exponent of 0.99 like YCSB, the popular keys are scattered over the key space.
+     */
+    ZIPFIAN {
+        @Override
+        int[] generate(int keySpace, int length, long seed) {
+            double theta = 0.99;
+            double zetaN = zeta(keySpace, theta);
+            double alpha = 1.0 / (1.0 - theta);
+            double eta = (1 - Math.pow(2.0 / keySpace, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+            Random random = new Random(seed);
+            int[] ranks = shuffled(keySpace, random);
+            int[] keys = new int[length];
+            for (int i = 0; i < length; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                int rank;
+                if (uz < 1.0) {
+                    rank = 0;
+                } else if (uz < 1.0 + Math.pow(0.5, theta)) {
+                    rank = 1;
+                } else {
+                    rank = (int) (keySpace * Math.pow(eta * u - eta + 1, alpha));
+                }
+                keys[i] = ranks[Math.min(rank, keySpace - 1)];
+            }
+            return keys;
+        }
+    };
+
+    /**
+     * @param keySpace number of distinct keys
+     * @param length   length of the sequence
+     * @param seed     random seed
+     * @return key indexes in {@code [0, keySpace)}
+     */
+    abstract int[] generate(int keySpace, int length, long seed);
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.AsyncInMemoryCache;
+import com.example.cache.InMemoryCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How many concurrent slow loads a cache absorbs: an invocation misses on {@code loads} new keys at once, each load
+ * blocking {@value #LOAD_MILLIS} ms as if waiting on a backend, and waits for all of them. The common pool runs as
+ * many loads at a time as it has threads, a thread per load (virtual threads on Java 21 and later, run from the
+ * multi-release jar, see {@link com.example.cache.LoaderExecutors}) runs them all at once, so its time stays close to one load.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+    private static final int LOAD_MILLIS = 10;
+
+    @Param({"COMMON_POOL", "THREAD_PER_LOAD"})
+    private String executor;
+
+    @Param({"100", "1000", "10000"})
+    private int loads;
+
+    private AsyncInMemoryCache<Integer, Integer> cache;
+    private final AtomicInteger nextKey = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryCache.CacheBuilder<Object, Object> builder = InMemoryCache.builder().maximumSize(loads);
+        if ("THREAD_PER_LOAD".equals(executor)) {
+            builder.threadPerLoad();
+        } else {
+            builder.executor(ForkJoinPool.commonPool());
+        }
+        cache = builder.buildAsync(key -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(LOAD_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(key);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    public Object concurrentMisses() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[loads];
+        for (int i = 0; i < loads; i++) {
+            futures[i] = cache.getAsync(nextKey.getAndIncrement());
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import com.example.cache.InMemoryCacheWithLRUEviction;
+import com.example.cache.LongKeyCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and puts of {@code long} keys in the {@link LongKeyCache}, unboxed, and in the boxing LRU cache. Run with
+ * {@code -prof gc} to compare the bytes allocated per operation.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LongKeyBenchmark {
+
+    // one hour, no key expires while measuring
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"16384"})
+    private int capacity;
+
+    private LongKeyCache<String> longKeyCache;
+    private Cache<Long, String> boxedCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        longKeyCache = new LongKeyCache<>(capacity);
+        boxedCache = new InMemoryCacheWithLRUEviction<>(capacity);
+        for (long key = 0; key < capacity; key++) {
+            longKeyCache.put(key, "value", TTL);
+            boxedCache.put(key, "value", TTL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        longKeyCache.clear();
+        boxedCache.clear();
+    }
+
+    /**
+     * Keys spread over twice the capacity, so half of the gets miss and half of the puts evict.
+     */
+    private long nextKey() {
+        return ThreadLocalRandom.current().nextInt(capacity * 2);
+    }
+
+    @Benchmark
+    public String longKeyGet() {
+        return longKeyCache.get(nextKey());
+    }
+
+    @Benchmark
+    public void longKeyPut() {
+        longKeyCache.put(nextKey(), "value", TTL);
+    }
+
+    @Benchmark
+    public String boxedGet() {
+        return boxedCache.get(nextKey());
+    }
+
+    @Benchmark
+    public void boxedPut() {
+        boxedCache.put(nextKey(), "value", TTL);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import com.example.cache.InMemoryCache;
+import com.example.cache.remote.CacheTransport;
+import com.example.cache.remote.ConsistentHashCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and {@value #BATCH_SIZE}-key {@code getAll}s through a {@link ConsistentHashCache} over 1 to 16 in-process
+ * {@link InMemoryCache} nodes, so the cost of the routing and of splitting the batches by node is measured without a
+ * network.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RouterBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+    private static final int CAPACITY = 65536;
+
+    @Param({"1", "4", "16"})
+    private int nodes;
+
+    private ConsistentHashCache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Map<String, Cache<Integer, Integer>> caches = new HashMap<>();
+        for (int i = 0; i < nodes; i++) {
+            caches.put("node-" + i, InMemoryCache.builder().maximumSize(CAPACITY / nodes).build());
+        }
+        cache = new ConsistentHashCache<>(caches.keySet(), CacheTransport.local(caches));
+        keys = new Integer[CAPACITY * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+    }
+
+    private Integer nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public Integer get() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> getAll() {
+        List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(nextKey());
+        }
+        return cache.getAll(batch);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import com.example.cache.ShardedCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and puts from all processors on a {@link ShardedCache} of 1 to 64 segments of a single-lock policy, over a
+ * key space twice the capacity. One segment is the plain policy behind one more call, the throughput against the
+ * segment count shows how far splitting the lock scales the writes.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ShardedBenchmark {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"LRU_EVICTION", "FIFO_EVICTION", "LFU_EVICTION", "LRU_MAP"})
+    private CacheType cacheType;
+
+    @Param({"1", "2", "4", "8", "16", "64"})
+    private int segments;
+
+    @Param({"65536"})
+    private int capacity;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[capacity * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        cache = new ShardedCache<>(segments, capacity, cacheType::create);
+        for (int i = 0; i < capacity; i++) {
+            cache.put(keys[i], keys[i], TTL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+        cache.clear();
+    }
+
+    private Integer nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public Integer get() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        Integer key = nextKey();
+        cache.put(key, key, TTL);
+    }
+}
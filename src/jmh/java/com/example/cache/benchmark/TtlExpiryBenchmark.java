@@ -0,0 +1,59 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and puts of entries living one millisecond, so the expiry of each implementation, its cleaner thread or
+ * lazy checks, runs all the time.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TtlExpiryBenchmark {
+
+    // in milliseconds
+    private static final long TTL = 1;
+
+    @Param
+    private CacheType cacheType;
+
+    @Param({"100000"})
+    private int keySpace;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = i;
+        }
+        cache = cacheType.create(keySpace);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    public Integer getOrPut() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(keySpace)];
+        Integer value = cache.get(key);
+        if (null == value) {
+            cache.put(key, key, TTL);
+            return key;
+        }
+        return value;
+    }
+}
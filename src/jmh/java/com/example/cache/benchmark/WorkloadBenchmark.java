@@ -0,0 +1,101 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-heavy (95% gets), mixed (50%) and write-heavy (5% gets) workloads over uniform and Zipfian keys. The key
+ * space is four times the capacity, so every implementation also evicts. Run with {@code -t} or
+ * {@link BenchmarkRunner} to vary the number of threads.
+ *
+ * @author vishnu.g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkloadBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+    private static final int SEQUENCE_MASK = SEQUENCE_LENGTH - 1;
+    // one hour, no key expires while measuring
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Param
+    private CacheType cacheType;
+
+    @Param
+    private KeySequence keySequence;
+
+    @Param({"16384"})
+    private int capacity;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int keySpace = capacity * 4;
+        int[] sequence = keySequence.generate(keySpace, SEQUENCE_LENGTH, 42L);
+        keys = new Integer[SEQUENCE_LENGTH];
+        Integer[] pool = new Integer[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            pool[i] = i;
+        }
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            keys[i] = pool[sequence[i]];
+        }
+        cache = cacheType.create(capacity);
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            cache.put(keys[i], keys[i], TTL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    /**
+     * Position of a thread in the key sequence, each thread starts at a random offset.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int index = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Benchmark
+    public Integer readHeavy(ThreadState state) {
+        return operation(state.index++, 19);
+    }
+
+    @Benchmark
+    public Integer mixed(ThreadState state) {
+        return operation(state.index++, 10);
+    }
+
+    @Benchmark
+    public Integer writeHeavy(ThreadState state) {
+        return operation(state.index++, 1);
+    }
+
+    /**
+     * Get the key at the given position, or put it back when the get missed or when the position is a write.
+     */
+    private Integer operation(int index, int readsOutOfTwenty) {
+        Integer key = keys[index & SEQUENCE_MASK];
+        if (Integer.remainderUnsigned(index, 20) < readsOutOfTwenty) {
+            Integer value = cache.get(key);
+            if (null != value) {
+                return value;
+            }
+        }
+        cache.put(key, key, TTL);
+        return key;
+    }
+}
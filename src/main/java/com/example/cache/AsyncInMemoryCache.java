@@ -0,0 +1,229 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * In-memory cache loading missing values asynchronously.
+ * <p>
+ * A miss starts one load on the configured executor and keeps its future until the load is done, so concurrent
+ * misses on the same key share that load. Loads run outside of any cache lock. A successful load is stored in the
+ * underlying {@link InMemoryCache}, a failed one is dropped, so the next miss loads again. A write or removal of a
+ * key while it is loaded wins over the loaded value.
+ *
+ * @author vishnu.g
+ */
+public class AsyncInMemoryCache<K, V> implements Cache<K, V> {
+
+    private final InMemoryCache<K, V> cache;
+    // Function to load value for cache miss.
+    private final Function<K, CompletableFuture<V>> asyncLoader;
+    private final Executor executor;
+    // Loads in progress, removed once the load is done.
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    AsyncInMemoryCache(InMemoryCache<K, V> cache, Function<K, CompletableFuture<V>> asyncLoader, Executor executor) {
+        this.cache = cache;
+        this.asyncLoader = asyncLoader;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the value for the given key, loading it if it is not in the cache. Concurrent calls for a key which is
+     * being loaded get the future of that load.
+     *
+     * @param key the key
+     * @return future of the cached or loaded value, completed exceptionally if the load failed
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        Objects.requireNonNull(key);
+        V value = cache.get(key);
+        if (null != value) {
+            return CompletableFuture.completedFuture(value);
+        }
+        CompletableFuture<V> future = inFlight.get(key);
+        if (null != future) {
+            return future;
+        }
+        CompletableFuture<V> created = new CompletableFuture<>();
+        future = inFlight.putIfAbsent(key, created);
+        if (null != future) {
+            return future;
+        }
+        // recheck, a load may have completed between the first lookup and registering this one
+        value = cache.getQuietly(key);
+        if (null != value) {
+            inFlight.remove(key, created);
+            created.complete(value);
+            return created;
+        }
+        try {
+            executor.execute(() -> load(key, created));
+        } catch (RuntimeException e) { // rejected by the executor
+            complete(key, created, null, e);
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Waits for the load on a miss.
+     *
+     * @throws java.util.concurrent.CompletionException if the load failed
+     */
+    @Override
+    public V get(K key) {
+        return getAsync(key).join();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Starts the loads of all misses before waiting for any of them.
+     *
+     * @throws java.util.concurrent.CompletionException if a load failed
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        List<K> requested = new ArrayList<>();
+        List<CompletableFuture<V>> futures = new ArrayList<>();
+        for (K key : keys) {
+            requested.add(key);
+            futures.add(getAsync(key));
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (int i = 0; i < requested.size(); i++) {
+            V value = futures.get(i).join();
+            if (null != value) {
+                values.put(requested.get(i), value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        Objects.requireNonNull(key);
+        inFlight.remove(key);
+        cache.put(key, value, ttl);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(key);
+        inFlight.remove(key);
+        cache.put(key, value);
+    }
+
+    @Override
+    public V remove(K key) {
+        Objects.requireNonNull(key);
+        inFlight.remove(key);
+        return cache.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        entries.keySet().forEach(inFlight::remove);
+        cache.putAll(entries, ttl);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        List<K> removed = new ArrayList<>();
+        for (K key : keys) {
+            inFlight.remove(Objects.requireNonNull(key));
+            removed.add(key);
+        }
+        cache.invalidateAll(removed);
+    }
+
+    @Override
+    public void clear() {
+        inFlight.clear();
+        cache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every load counts from its start on the executor until its future completes.
+     */
+    @Override
+    public void close() {
+        cache.close();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    @Deprecated
+    public int capacity() {
+        return cache.capacity();
+    }
+
+    private void load(K key, CompletableFuture<V> future) {
+        StatsCounter statsCounter = cache.statsCounter();
+        CacheEvents.SlowLoad event = new CacheEvents.SlowLoad();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            asyncLoader.apply(key).whenComplete((value, error) -> {
+                if (null != statsCounter) {
+                    if (null == error && null != value) {
+                        statsCounter.recordLoadSuccess(System.nanoTime() - start);
+                    } else {
+                        statsCounter.recordLoadFailure(System.nanoTime() - start);
+                    }
+                }
+                event.complete(cache.name(), key, null != error || null == value);
+                complete(key, future, value, error);
+            });
+        } catch (Throwable e) {
+            if (null != statsCounter) {
+                statsCounter.recordLoadFailure(System.nanoTime() - start);
+            }
+            event.complete(cache.name(), key, true);
+            complete(key, future, null, e);
+        }
+    }
+
+    private void complete(K key, CompletableFuture<V> future, V value, Throwable error) {
+        // store the value only if the load was not superseded by a write, removal or clear meanwhile
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != future) {
+                return current;
+            }
+            if (null == error && null != value) {
+                cache.put(k, value);
+            }
+            return null;
+        });
+        if (null != error) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(value);
+        }
+    }
+}
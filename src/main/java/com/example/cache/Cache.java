@@ -1,9 +1,12 @@
 package com.example.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author vishnu.g
  */
-public interface Cache<K, V> {
+public interface Cache<K, V> extends AutoCloseable {
 
     /**
      * Put the given key and value into cache.
@@ -41,11 +44,68 @@ public interface Cache<K, V> {
      */
     V get(K key);
 
+    /**
+     * Get the values in the cache for the given keys, loading the missing ones if a loader is configured.
+     * Implementations take their locks once per batch instead of once per key.
+     *
+     * @param keys the keys
+     * @return the cached or loaded values by key in the iteration order of the keys; keys without a value are absent
+     */
+    default Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (null != value) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Put all given keys and values into cache.
+     *
+     * @param entries the keys and values
+     * @param ttl     time-to-leave in millisecond
+     */
+    default void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        entries.forEach((key, value) -> put(key, value, ttl));
+    }
+
+    /**
+     * Remove the given keys and their values from the cache, if present.
+     *
+     * @param keys the keys
+     */
+    default void invalidateAll(Iterable<? extends K> keys) {
+        for (K key : keys) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Get a snapshot of the statistics of this cache.
+     *
+     * @return the statistics, all zero if this cache does not record statistics
+     */
+    default CacheStats stats() {
+        return CacheStats.empty();
+    }
+
     /**
      * Clear all key-value entries from this cache.
      */
     void clear();
 
+    /**
+     * Stop the background maintenance of this cache, cancelling its registration with the shared maintenance
+     * scheduler. The cache stays usable, but its expired entries are no longer removed in the background. A cache
+     * which is not closed is deregistered once it becomes unreachable.
+     */
+    @Override
+    default void close() {
+    }
+
     /**
      * Check if cache is empty.
      *
@@ -0,0 +1,95 @@
+package com.example.cache;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the caches, all disabled by default. A recording enables them by name, for example
+ * {@code jcmd <pid> JFR.start settings=cache.jfc} with a settings file holding
+ * {@code <event name="com.example.cache.SlowLoad"><setting name="enabled">true</setting></event>}, or
+ * {@code Recording.enable("com.example.cache.SlowLoad")} in code. A disabled event costs an allocation the JIT
+ * removes and a check of its enabled flag, the cache name and key are only turned into strings for the events
+ * committed.
+ *
+ * @author vishnu.g
+ */
+final class CacheEvents {
+
+    private CacheEvents() {
+    }
+
+    @Name("com.example.cache.SlowLoad")
+    @Label("Slow Cache Load")
+    @Description("A load of a missing value taking longer than the threshold")
+    @Category("Cache")
+    @Enabled(false)
+    @Threshold("10 ms")
+    static final class SlowLoad extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Key")
+        String key;
+        @Label("Failed")
+        boolean failed;
+
+        /**
+         * End the load, committed if it took longer than the threshold.
+         *
+         * @param failed whether the loader threw or found no value
+         */
+        void complete(String cache, Object key, boolean failed) {
+            end();
+            if (shouldCommit()) {
+                this.cache = cache;
+                this.key = String.valueOf(key);
+                this.failed = failed;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.example.cache.EvictionBatch")
+    @Label("Cache Eviction Batch")
+    @Description("The entries evicted for size by one write")
+    @Category("Cache")
+    @Enabled(false)
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class EvictionBatch extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Evicted")
+        int evicted;
+    }
+
+    @Name("com.example.cache.ExpirySweep")
+    @Label("Cache Expiry Sweep")
+    @Description("A sweep removing expired entries")
+    @Category("Cache")
+    @Enabled(false)
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class ExpirySweep extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Expired")
+        int expired;
+    }
+
+    @Name("com.example.cache.LockWait")
+    @Label("Cache Lock Wait")
+    @Description("A wait for a cache lock held by another thread")
+    @Category("Cache")
+    @Enabled(false)
+    @Threshold("1 ms")
+    static final class LockWait extends Event {
+        @Label("Cache")
+        String cache;
+    }
+}
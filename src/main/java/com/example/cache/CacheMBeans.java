@@ -0,0 +1,157 @@
+package com.example.cache;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Registers caches with the platform MBean server, each as a {@link CacheMXBean} named
+ * {@code com.example.cache:type=Cache,name=<name>}, to be watched with JConsole, VisualVM or any JMX client.
+ * <p>
+ * Nothing is registered unless asked for, with {@link InMemoryCache.CacheBuilder#registerMBean(String)} or
+ * {@link #register(String, Cache)} for the other caches. The MBean holds its cache only weakly: closing the
+ * registration, or the {@link InMemoryCache} registered by its builder, unregisters it, and a cache which became
+ * unreachable unregisters on the next read of its MBean.
+ *
+ * @author vishnu.g
+ */
+public final class CacheMBeans {
+
+    static final String DOMAIN = "com.example.cache";
+
+    private CacheMBeans() {
+    }
+
+    /**
+     * @param name  the name of the cache, unique among the registered caches
+     * @param cache the cache
+     * @return the registration, closing it unregisters the MBean
+     * @throws IllegalArgumentException if a cache of that name is registered
+     */
+    public static Registration register(String name, Cache<?, ?> cache) throws IllegalArgumentException {
+        WeakReference<Cache<?, ?>> reference = new WeakReference<>(cache);
+        return register(name, cache, () -> {
+            Cache<?, ?> referent = reference.get();
+            return (null != referent) ? referent.capacity() : 0;
+        });
+    }
+
+    static Registration register(String name, Cache<?, ?> cache, LongSupplier capacity)
+            throws IllegalArgumentException {
+        ObjectName objectName;
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=Cache,name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("bad cache name " + name, e);
+        }
+        Registration registration = new Registration(objectName);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new Monitor(new WeakReference<>(cache), capacity, registration), objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("a cache named " + name + " is already registered", e);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + objectName, e);
+        }
+        return registration;
+    }
+
+    /**
+     * The registration of the MBean of a cache.
+     */
+    public static final class Registration implements AutoCloseable {
+        private final ObjectName objectName;
+
+        private Registration(ObjectName objectName) {
+            this.objectName = objectName;
+        }
+
+        public ObjectName objectName() {
+            return objectName;
+        }
+
+        /**
+         * Unregister the MBean, does nothing if it was already.
+         */
+        @Override
+        public void close() {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (InstanceNotFoundException e) { // already unregistered
+            } catch (JMException e) {
+                throw new IllegalStateException("cannot unregister " + objectName, e);
+            }
+        }
+    }
+
+    private static final class Monitor implements CacheMXBean {
+        private final WeakReference<Cache<?, ?>> cache;
+        private final LongSupplier capacity;
+        private final Registration registration;
+
+        private Monitor(WeakReference<Cache<?, ?>> cache, LongSupplier capacity, Registration registration) {
+            this.cache = cache;
+            this.capacity = capacity;
+            this.registration = registration;
+        }
+
+        @Override
+        public long getSize() {
+            Cache<?, ?> referent = cache();
+            return (null != referent) ? referent.size() : 0;
+        }
+
+        @Override
+        public long getCapacity() {
+            return capacity.getAsLong();
+        }
+
+        @Override
+        public long getHitCount() {
+            return stats().getHitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return stats().getMissCount();
+        }
+
+        @Override
+        public double getHitRatio() {
+            return stats().getHitRate();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return stats().getEvictionCount();
+        }
+
+        @Override
+        public long getExpiredCount() {
+            return stats().getExpiredCount();
+        }
+
+        private CacheStats stats() {
+            Cache<?, ?> referent = cache();
+            return (null != referent) ? referent.stats() : CacheStats.empty();
+        }
+
+        /**
+         * @return the cache, null if it was collected, which unregisters this MBean
+         */
+        private Cache<?, ?> cache() {
+            Cache<?, ?> referent = cache.get();
+            if (null == referent) {
+                registration.close();
+            }
+            return referent;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.cache;
+
+/**
+ * The management interface of a cache, registered by {@link CacheMBeans#register(String, Cache)} under
+ * {@code com.example.cache:type=Cache,name=<name>}. The counts are those of {@link Cache#stats()}, all zero unless
+ * the cache records statistics.
+ *
+ * @author vishnu.g
+ */
+public interface CacheMXBean {
+
+    long getSize();
+
+    /**
+     * @return the maximum size, or weight, of the cache, zero if not known
+     */
+    long getCapacity();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    /**
+     * @return the ratio of the reads which were hits, 1 if there was no read
+     */
+    double getHitRatio();
+
+    long getEvictionCount();
+
+    long getExpiredCount();
+}
@@ -0,0 +1,126 @@
+package com.example.cache;
+
+import lombok.Getter;
+
+/**
+ * Immutable snapshot of the statistics of a cache, see {@link Cache#stats()}.
+ * <p>
+ * A request is a hit or a miss. A miss of a cache with a loader is followed by a load, which fails if the loader
+ * throws or returns {@code null}. Removals are counted by their {@link RemovalCause}, replaced values are not
+ * counted.
+ *
+ * @author vishnu.g
+ */
+@Getter
+public final class CacheStats {
+
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    // in nanoseconds
+    private final long totalLoadTime;
+    // removals for RemovalCause.SIZE
+    private final long evictionCount;
+    // removals for RemovalCause.EXPIRED
+    private final long expiredCount;
+    // removals for RemovalCause.COLLECTED
+    private final long collectedCount;
+    // removals for RemovalCause.EXPLICIT
+    private final long explicitRemovalCount;
+
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTime, long evictionCount, long expiredCount, long collectedCount,
+                      long explicitRemovalCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.expiredCount = expiredCount;
+        this.collectedCount = collectedCount;
+        this.explicitRemovalCount = explicitRemovalCount;
+    }
+
+    /**
+     * @return statistics with all counts zero, of a cache not recording statistics
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return the ratio of hits to requests, 1.0 if there was no request
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the ratio of misses to requests, 0.0 if there was no request
+     */
+    public double getMissRate() {
+        long requestCount = getRequestCount();
+        return (requestCount == 0) ? 0.0 : (double) missCount / requestCount;
+    }
+
+    public long getLoadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * @return the average time of a load in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = getLoadCount();
+        return (loadCount == 0) ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * @return the number of removals for any cause but {@link RemovalCause#REPLACED}
+     */
+    public long getRemovalCount() {
+        return evictionCount + expiredCount + collectedCount + explicitRemovalCount;
+    }
+
+    /**
+     * @param other the statistics to add
+     * @return the sum of these and the other statistics, e.g. of two parts of a cache
+     */
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                loadSuccessCount + other.loadSuccessCount, loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime, evictionCount + other.evictionCount,
+                expiredCount + other.expiredCount, collectedCount + other.collectedCount,
+                explicitRemovalCount + other.explicitRemovalCount);
+    }
+
+    /**
+     * @param other earlier statistics of the same cache
+     * @return the difference of these and the other statistics, the activity in between
+     */
+    public CacheStats minus(CacheStats other) {
+        return new CacheStats(hitCount - other.hitCount, missCount - other.missCount,
+                loadSuccessCount - other.loadSuccessCount, loadFailureCount - other.loadFailureCount,
+                totalLoadTime - other.totalLoadTime, evictionCount - other.evictionCount,
+                expiredCount - other.expiredCount, collectedCount - other.collectedCount,
+                explicitRemovalCount - other.explicitRemovalCount);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount
+                + ", loadSuccessCount=" + loadSuccessCount + ", loadFailureCount=" + loadFailureCount
+                + ", totalLoadTime=" + totalLoadTime + ", evictionCount=" + evictionCount
+                + ", expiredCount=" + expiredCount + ", collectedCount=" + collectedCount
+                + ", explicitRemovalCount=" + explicitRemovalCount + '}';
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * CLOCK, or second chance: an approximation of LRU which needs no reordering on a hit.
+ * <p>
+ * Keys sit in the slots of a circular array. A hit only sets a reference bit, on the entry itself without taking the
+ * segment lock. To evict, the hand sweeps the array: a key found referenced has its bit cleared and is passed over,
+ * the first key not referenced since the hand last passed it is evicted. A new key starts unreferenced, in a full
+ * cache it mostly takes the slot just freed behind the hand, so the hand reaches it last. An update counts as a hit.
+ * Not thread-safe apart from the reference bits, the segment calls it while holding its lock.
+ *
+ * @author vishnu.g
+ */
+final class ClockEviction<K> implements Eviction<K> {
+
+    private static final int INITIAL_SLOTS = 16;
+
+    private final long maximumWeight;
+    // clears the reference bit set on the entry of a key by a hit, returns whether it was set
+    private final Predicate<? super K> referenced;
+    private final Map<K, Integer> slots = new HashMap<>();
+    // the clock, null marks a free slot
+    private Object[] keys = new Object[INITIAL_SLOTS];
+    private int[] weights = new int[INITIAL_SLOTS];
+    // reference bits of the accesses recorded under the lock
+    private boolean[] recent = new boolean[INITIAL_SLOTS];
+    // slots freed by removals, taken before new ones
+    private int[] freeSlots = new int[INITIAL_SLOTS];
+    private int freeCount;
+    // slots handed out so far, the hand sweeps only these
+    private int used;
+    private int hand;
+    private long weightedSize;
+
+    ClockEviction(long maximumWeight, Predicate<? super K> referenced) {
+        this.maximumWeight = maximumWeight;
+        this.referenced = referenced;
+    }
+
+    /**
+     * Hits set the reference bit on the entry instead, read back while sweeping.
+     */
+    @Override
+    public boolean recordsAccess() {
+        return false;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        Integer slot = slots.get(key);
+        if (null != slot) {
+            recent[slot] = true;
+        }
+    }
+
+    @Override
+    public void add(K key, int weight, Consumer<K> evictor) {
+        if (weight > maximumWeight) { // would evict every other key and still not fit
+            evictor.accept(key);
+            return;
+        }
+        int slot = (freeCount > 0) ? freeSlots[--freeCount] : newSlot();
+        keys[slot] = key;
+        weights[slot] = weight;
+        slots.put(key, slot);
+        weightedSize += weight;
+        evict(evictor);
+    }
+
+    @Override
+    public void update(K key, int weight, Consumer<K> evictor) {
+        Integer slot = slots.get(key);
+        if (null == slot) {
+            add(key, weight, evictor);
+            return;
+        }
+        weightedSize += weight - weights[slot];
+        weights[slot] = weight;
+        if (weight > maximumWeight) {
+            remove(key);
+            evictor.accept(key);
+            return;
+        }
+        recent[slot] = true;
+        evict(evictor);
+    }
+
+    @Override
+    public void remove(K key) {
+        Integer slot = slots.remove(key);
+        if (null != slot) {
+            free(slot);
+        }
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        Arrays.fill(keys, 0, used, null);
+        // the slots are handed out again from the first one, without the bits of their old keys
+        Arrays.fill(recent, 0, used, false);
+        used = 0;
+        hand = 0;
+        freeCount = 0;
+        weightedSize = 0;
+    }
+
+    @Override
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * Sweep the clock to the next key not referenced. After two full turns finding every key referenced again the
+     * next key is evicted regardless, so a sweep ends even while hits keep setting the bits.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean evictNext(Consumer<K> evictor) {
+        int visited = 0;
+        while (!slots.isEmpty()) {
+            if (hand >= used) {
+                hand = 0;
+            }
+            int slot = hand++;
+            K key = (K) keys[slot];
+            if (null == key) {
+                continue;
+            }
+            // both bits are cleared, a single hit earns a single second chance
+            if (visited++ < 2 * used && (recent[slot] | referenced.test(key))) {
+                recent[slot] = false;
+                continue;
+            }
+            slots.remove(key);
+            free(slot);
+            evictor.accept(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sweep the clock while the total weight exceeds the maximum.
+     */
+    private void evict(Consumer<K> evictor) {
+        while (weightedSize > maximumWeight && evictNext(evictor)) {
+            // evicted one more
+        }
+    }
+
+    private int newSlot() {
+        if (used == keys.length) {
+            int length = keys.length * 2;
+            keys = Arrays.copyOf(keys, length);
+            weights = Arrays.copyOf(weights, length);
+            recent = Arrays.copyOf(recent, length);
+            freeSlots = Arrays.copyOf(freeSlots, length);
+        }
+        return used++;
+    }
+
+    private void free(int slot) {
+        weightedSize -= weights[slot];
+        keys[slot] = null;
+        recent[slot] = false;
+        freeSlots[freeCount++] = slot;
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second tier of a cache holding the entries it evicts for size in memory-mapped files.
+ * <p>
+ * Evicted values are serialized and appended to the newest of a ring of segment files, mapped with
+ * {@link FileChannel#map}. An on-heap index maps every key to the location of its value. A hit takes the entry out of
+ * this tier, so the cache can promote it back to the heap. Once the files reach the maximum size the oldest one is
+ * dropped with all its entries. A file of which more than half was overwritten or promoted is compacted in the
+ * background: its live entries are copied to the newest file and the file is deleted.
+ * <p>
+ * Written files are never changed, so reads run without locking. Writes, rolling and compaction are guarded by
+ * one lock. The files are deleted on {@link #clear()} and when the JVM exits.
+ *
+ * @author vishnu.g
+ */
+public final class DiskOverflow<K, V> {
+
+    private static final System.Logger LOGGER = System.getLogger(DiskOverflow.class.getName());
+    // in bytes
+    private static final int DEFAULT_FILE_SIZE = 64 << 20;
+    // in bytes
+    private static final int MIN_FILE_SIZE = 4096;
+    // the segment files not deleted yet, of all tiers, deleted by a shutdown hook
+    private static final Set<Path> LIVE_FILES = liveFiles();
+
+    private final Path directory;
+    private final Serializer<V> serializer;
+    private final Executor executor;
+    private final int fileSize;
+    private final int maximumFiles;
+    private final ConcurrentHashMap<K, Slot> index = new ConcurrentHashMap<>();
+    // oldest file first, the last one is written to
+    private final ArrayDeque<DataFile> files = new ArrayDeque<>();
+    // the newest file, read without the lock
+    private volatile DataFile activeFile;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    /**
+     * Creates a tier compacting on the {@link ForkJoinPool#commonPool()}.
+     *
+     * @param directory    the directory of the segment files
+     * @param maximumBytes the maximum number of bytes of all segment files
+     * @param serializer   the serializer of the values
+     */
+    public DiskOverflow(Path directory, long maximumBytes, Serializer<V> serializer) {
+        this(directory, maximumBytes, serializer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param directory    the directory of the segment files
+     * @param maximumBytes the maximum number of bytes of all segment files
+     * @param serializer   the serializer of the values
+     * @param executor     the executor running compactions
+     * @throws IllegalArgumentException if {@code maximumBytes} is zero or negative
+     */
+    public DiskOverflow(Path directory, long maximumBytes, Serializer<V> serializer, Executor executor)
+            throws IllegalArgumentException {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("maximumBytes should be greater than zero");
+        }
+        this.directory = Objects.requireNonNull(directory);
+        this.serializer = Objects.requireNonNull(serializer);
+        this.executor = Objects.requireNonNull(executor);
+        // at least four files, so dropping the oldest one loses a small part of the tier
+        this.fileSize = (int) Math.min(DEFAULT_FILE_SIZE, Math.max(maximumBytes / 4, MIN_FILE_SIZE));
+        this.maximumFiles = (int) Math.min(Math.max(maximumBytes / fileSize, 2L), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Store an entry evicted from the cache, replacing the previous one of the key. An expired entry, a value
+     * larger than a segment file or a failed write only removes the previous entry.
+     *
+     * @param key              the key
+     * @param value            the value
+     * @param expiryTime       the time in {@link System#nanoTime()} the entry expires at
+     * @param expireAfterNanos the time-to-live of the entry in nanoseconds, zero if it never expires
+     */
+    void spill(K key, V value, long expiryTime, long expireAfterNanos) {
+        if (expireAfterNanos > 0 && System.nanoTime() - expiryTime >= 0) {
+            invalidate(key);
+            return;
+        }
+        // serialize outside of the lock
+        byte[] bytes = serializer.serialize(value);
+        lock.lock();
+        try {
+            Slot slot = (bytes.length <= fileSize) ? append(bytes, expiryTime, expireAfterNanos) : null;
+            Slot old = (null != slot) ? index.put(key, slot) : index.remove(key);
+            if (null != old) {
+                dead(old);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the entry of the key out of this tier, to promote it to the cache.
+     *
+     * @param key the key
+     * @return the entry, null if there is none or it expired
+     */
+    Entry<V> take(K key) {
+        Slot slot = index.remove(key);
+        if (null == slot) {
+            return null;
+        }
+        dead(slot);
+        if (slot.expireAfterNanos > 0 && System.nanoTime() - slot.expiryTime >= 0) {
+            return null;
+        }
+        V value = serializer.deserialize(ByteBuffer.wrap(slot.file.read(slot.offset, slot.length)));
+        return new Entry<>(value, slot.expiryTime, slot.expireAfterNanos);
+    }
+
+    /**
+     * Remove the entry of the key, if present.
+     *
+     * @param key the key
+     */
+    void invalidate(K key) {
+        Slot slot = index.remove(key);
+        if (null != slot) {
+            dead(slot);
+        }
+    }
+
+    /**
+     * Remove all entries and delete the segment files.
+     */
+    void clear() {
+        lock.lock();
+        try {
+            index.clear();
+            for (DataFile file : files) {
+                file.delete();
+            }
+            files.clear();
+            activeFile = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries, including expired ones not yet removed
+     */
+    long size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    int fileCount() {
+        lock.lock();
+        try {
+            return files.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append the bytes to the newest file, rolling to a new one if they do not fit. Must hold the lock.
+     *
+     * @return the location of the bytes, null if no file could be created
+     */
+    private Slot append(byte[] bytes, long expiryTime, long expireAfterNanos) {
+        DataFile file = activeFile;
+        if (null == file || file.writePosition + bytes.length > fileSize) {
+            file = roll();
+            if (null == file) {
+                return null;
+            }
+        }
+        int offset = file.write(bytes);
+        return new Slot(file, offset, bytes.length, expiryTime, expireAfterNanos);
+    }
+
+    /**
+     * Seal the newest file and create a new one, dropping the oldest file when the maximum is reached.
+     */
+    private DataFile roll() {
+        while (files.size() >= maximumFiles) {
+            drop(files.peekFirst());
+        }
+        DataFile sealed = activeFile;
+        DataFile file;
+        try {
+            file = new DataFile(directory, fileSize);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "cannot create a segment file in " + directory, e);
+            return null;
+        }
+        files.addLast(file);
+        activeFile = file;
+        if (null != sealed && sealed.isSparse()) {
+            scheduleCompaction();
+        }
+        return file;
+    }
+
+    /**
+     * Delete the file and the entries in it. Must hold the lock.
+     */
+    private void drop(DataFile file) {
+        files.remove(file);
+        index.values().removeIf(slot -> slot.file == file);
+        file.delete();
+    }
+
+    private void dead(Slot slot) {
+        DataFile file = slot.file;
+        file.deadBytes.addAndGet(slot.length);
+        if (file != activeFile && file.isSparse()) {
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::compact);
+            } catch (RuntimeException e) { // rejected by the executor, the next removal tries again
+                compactionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Copy the live entries of all sparse sealed files to the newest file and delete the sparse files.
+     */
+    private void compact() {
+        compactionScheduled.set(false);
+        lock.lock();
+        try {
+            List<DataFile> sparse = new ArrayList<>();
+            for (DataFile file : files) {
+                if (file != activeFile && file.isSparse()) {
+                    sparse.add(file);
+                }
+            }
+            for (DataFile file : sparse) {
+                if (files.contains(file)) { // not dropped by rolling meanwhile
+                    compact(file);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must hold the lock. The file leaves the ring first, so copying its entries never drops the file itself.
+     * Its entries stay readable until they are replaced by their copies, the mapping outlives the file.
+     */
+    private void compact(DataFile file) {
+        files.remove(file);
+        List<Map.Entry<K, Slot>> live = new ArrayList<>();
+        for (Map.Entry<K, Slot> entry : index.entrySet()) {
+            if (entry.getValue().file == file) {
+                live.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            }
+        }
+        long now = System.nanoTime();
+        for (Map.Entry<K, Slot> entry : live) {
+            Slot slot = entry.getValue();
+            Slot moved = (slot.expireAfterNanos > 0 && now - slot.expiryTime >= 0) ? null
+                    : append(file.read(slot.offset, slot.length), slot.expiryTime, slot.expireAfterNanos);
+            if (null == moved) { // expired or no file to copy to
+                index.remove(entry.getKey(), slot);
+            } else if (!index.replace(entry.getKey(), slot, moved)) { // taken or replaced meanwhile
+                moved.file.deadBytes.addAndGet(moved.length);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * An entry taken out of the tier.
+     */
+    static final class Entry<V> {
+        final V value;
+        // in System.nanoTime()
+        final long expiryTime;
+        // zero if the entry never expires
+        final long expireAfterNanos;
+
+        private Entry(V value, long expiryTime, long expireAfterNanos) {
+            this.value = value;
+            this.expiryTime = expiryTime;
+            this.expireAfterNanos = expireAfterNanos;
+        }
+    }
+
+    /**
+     * Location of a value in a segment file.
+     */
+    private static final class Slot {
+        private final DataFile file;
+        private final int offset;
+        private final int length;
+        private final long expiryTime;
+        private final long expireAfterNanos;
+
+        private Slot(DataFile file, int offset, int length, long expiryTime, long expireAfterNanos) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.expiryTime = expiryTime;
+            this.expireAfterNanos = expireAfterNanos;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file, only appended to.
+     */
+    private static final class DataFile {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // guarded by the lock of the tier
+        private int writePosition;
+        // bytes of entries which were replaced, taken or removed
+        private final AtomicLong deadBytes = new AtomicLong();
+
+        private DataFile(Path directory, int size) throws IOException {
+            this.path = Files.createTempFile(directory, "overflow-", ".data");
+            LIVE_FILES.add(path);
+            // the mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private int write(byte[] bytes) {
+            int offset = writePosition;
+            ByteBuffer target = buffer.duplicate();
+            target.position(offset);
+            target.put(bytes);
+            writePosition += bytes.length;
+            return offset;
+        }
+
+        private byte[] read(int offset, int length) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(offset);
+            byte[] bytes = new byte[length];
+            source.get(bytes);
+            return bytes;
+        }
+
+        private boolean isSparse() {
+            return deadBytes.get() * 2 > Math.max(writePosition, 1);
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(path);
+                LIVE_FILES.remove(path);
+            } catch (IOException e) { // left to the shutdown hook
+                LOGGER.log(System.Logger.Level.WARNING, "cannot delete segment file " + path, e);
+            }
+        }
+    }
+
+    /**
+     * One shutdown hook deletes the files left, {@link java.io.File#deleteOnExit()} would keep the path of every
+     * file ever rolled until the JVM exits.
+     */
+    private static Set<Path> liveFiles() {
+        Set<Path> liveFiles = ConcurrentHashMap.newKeySet();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Path path : liveFiles) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    LOGGER.log(System.Logger.Level.DEBUG, "cannot delete segment file " + path, e);
+                }
+            }
+        }, "cache-overflow-cleanup"));
+        return liveFiles;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Eviction order of the keys of a bounded {@link InMemoryCache} segment, keeping their total weight within the
+ * maximum of the segment. Implementations are not thread-safe, the segment calls them while holding its lock.
+ *
+ * @author vishnu.g
+ */
+interface Eviction<K> {
+
+    /**
+     * Record a hit or an update of a key in the cache.
+     *
+     * @param key the key
+     */
+    void recordAccess(K key);
+
+    /**
+     * Whether hits go through {@link #recordAccess(Object)}, so segments take the lock for them. An order reading
+     * reference bits marked on the entries returns {@code false}.
+     */
+    default boolean recordsAccess() {
+        return true;
+    }
+
+    /**
+     * Record a lookup of a key which is not in the cache.
+     *
+     * @param key the key
+     */
+    default void recordMiss(K key) {
+    }
+
+    /**
+     * Whether {@link #recordMiss(Object)} is used, so segments skip taking the lock otherwise.
+     */
+    default boolean recordsMisses() {
+        return false;
+    }
+
+    /**
+     * Estimate how often a key was used, written to snapshots.
+     *
+     * @param key the key
+     * @return the estimated frequency, zero if the order does not track frequencies
+     */
+    default int frequency(K key) {
+        return 0;
+    }
+
+    /**
+     * Restore the frequency of a key from a snapshot, before it is added.
+     *
+     * @param key       the key
+     * @param frequency the frequency returned by {@link #frequency(Object)} when the snapshot was taken
+     */
+    default void restoreFrequency(K key, int frequency) {
+    }
+
+    /**
+     * Add a new key and evict keys while the segment holds more than its maximum weight. A key heavier than the
+     * maximum weight on its own is evicted right away.
+     *
+     * @param key     the new key
+     * @param weight  the weight of its entry, 1 if the cache is bounded by its size
+     * @param evictor removes an evicted key from the segment
+     */
+    void add(K key, int weight, Consumer<K> evictor);
+
+    /**
+     * Record an update of a key, which may have changed its weight, and evict keys while the segment holds more
+     * than its maximum weight.
+     *
+     * @param key     the updated key
+     * @param weight  the weight of its new entry
+     * @param evictor removes an evicted key from the segment
+     */
+    void update(K key, int weight, Consumer<K> evictor);
+
+    /**
+     * Evict the next key in eviction order whatever the total weight, to free memory the weights do not count, like
+     * the off-heap memory of the values.
+     *
+     * @param evictor removes the evicted key from the segment
+     * @return false if there was no key to evict
+     */
+    boolean evictNext(Consumer<K> evictor);
+
+    /**
+     * Forget a key removed from the cache.
+     *
+     * @param key the key
+     */
+    void remove(K key);
+
+    void clear();
+
+    /**
+     * @return the total weight of the keys
+     */
+    long weightedSize();
+}
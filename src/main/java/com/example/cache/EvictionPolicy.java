@@ -0,0 +1,51 @@
+package com.example.cache;
+
+import java.util.function.Predicate;
+
+/**
+ * Policy choosing the entry to evict when an {@link InMemoryCache} with a maximum size or weight is full.
+ *
+ * @author vishnu.g
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Evicts the least recently used entry.
+     */
+    LRU {
+        @Override
+        <K> Eviction<K> newEviction(long maximumWeight, Predicate<? super K> referenced) {
+            return new LruEviction<>(maximumWeight);
+        }
+    },
+
+    /**
+     * Window TinyLFU: new entries enter a small LRU window, an entry leaving the window is only admitted to the
+     * main region if it was accessed more often than the entry it would evict. Keeps popular entries through
+     * scans of keys which are used only once.
+     */
+    WINDOW_TINY_LFU {
+        @Override
+        <K> Eviction<K> newEviction(long maximumWeight, Predicate<? super K> referenced) {
+            return new WindowTinyLfuEviction<>(maximumWeight);
+        }
+    },
+
+    /**
+     * CLOCK, an approximation of LRU: a hit only sets a reference bit on the entry, without a lock, and eviction
+     * sweeps the keys in a circle passing over the referenced ones once. Suits read-mostly caches, where reordering
+     * an LRU list on every hit costs more than the slightly less exact order.
+     */
+    CLOCK {
+        @Override
+        <K> Eviction<K> newEviction(long maximumWeight, Predicate<? super K> referenced) {
+            return new ClockEviction<>(maximumWeight, referenced);
+        }
+    };
+
+    /**
+     * @param maximumWeight the maximum weight of a segment
+     * @param referenced    clears the reference bit a hit set on the entry of a key, returns whether it was set
+     */
+    abstract <K> Eviction<K> newEviction(long maximumWeight, Predicate<? super K> referenced);
+}
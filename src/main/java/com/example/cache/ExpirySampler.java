@@ -0,0 +1,98 @@
+package com.example.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Active expiry by random sampling, as done by Redis, for caches which would otherwise scan all their entries.
+ * <p>
+ * The entries are kept in an array, each knowing its index, so adding, removing and picking a random entry are
+ * O(1). A round checks {@link #SAMPLE_SIZE} random entries and removes the expired ones. The cleanup of a cache runs
+ * rounds while more than a quarter of the sampled entries were expired and its {@link #TIME_BUDGET_NANOS} lasts,
+ * releasing its lock between rounds, so the expiry cost is bounded and a writer waits at most for one round. The
+ * cache also expires an entry found expired on access, the sampling frees the memory of those not read anymore.
+ * Not thread-safe, callers must guard the sampler with their own lock.
+ *
+ * @author vishnu.g
+ */
+final class ExpirySampler<N extends ExpirySampler.Node> {
+
+    // entries checked by a round
+    static final int SAMPLE_SIZE = 20;
+    // maximum time of the rounds of one cleanup
+    static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private Node[] nodes = new Node[16];
+    private int size;
+
+    void add(N entry) {
+        Node node = entry;
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        node.index = size;
+        nodes[size++] = node;
+    }
+
+    /**
+     * Forget a node, moving the last node into its place. Does nothing if the node is not in the sampler.
+     */
+    void remove(N entry) {
+        Node node = entry;
+        int index = node.index;
+        if (index < 0 || index >= size || nodes[index] != node) {
+            return;
+        }
+        Node last = nodes[--size];
+        nodes[index] = last;
+        last.index = index;
+        nodes[size] = null;
+        node.index = -1;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            nodes[i].index = -1;
+        }
+        Arrays.fill(nodes, 0, size, null);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Run one round: check random nodes and pass the expired ones to the remover, which must also remove them from
+     * this sampler.
+     *
+     * @param expired whether a node is expired
+     * @param remover removes an expired node from the cache
+     * @return {@code true} if more than a quarter of the sampled nodes were expired, so another round should run
+     */
+    @SuppressWarnings("unchecked")
+    boolean sample(Predicate<? super N> expired, Consumer<? super N> remover) {
+        int samples = Math.min(SAMPLE_SIZE, size);
+        int expiredCount = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < samples && size > 0; i++) {
+            N node = (N) nodes[random.nextInt(size)];
+            if (expired.test(node)) {
+                remover.accept(node);
+                expiredCount++;
+            }
+        }
+        return samples > 0 && expiredCount * 4 > samples;
+    }
+
+    /**
+     * An entry of a cache which can be sampled.
+     */
+    abstract static class Node {
+        // position in the sampler, negative if not in it
+        private int index = -1;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.cache;
+
+/**
+ * Count-Min sketch of 4-bit counters estimating how often a key was accessed.
+ * <p>
+ * Every {@code long} of the table holds sixteen counters. A key maps to four counters, one per hash function, and
+ * its frequency is the minimum of them, saturating at 15. Once the number of increments reaches the sample size,
+ * ten times the cache size, all counters are halved so the sketch follows changes in popularity. The table grows
+ * with the number of keys of a cache bounded by weight, see {@link #ensureCapacity(long)}.
+ * <p>
+ * Not thread-safe, callers must guard the sketch with their own lock.
+ *
+ * @author vishnu.g
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * @param maximumSize the maximum number of entries of the cache using the sketch
+     */
+    FrequencySketch(long maximumSize) {
+        resize(maximumSize);
+    }
+
+    /**
+     * Grow the table if the cache holds more entries than it was sized for. Growing drops all counts.
+     *
+     * @param maximumSize the number of entries the cache holds at least
+     */
+    void ensureCapacity(long maximumSize) {
+        if (maximumSize > table.length && table.length < MAX_TABLE_SIZE) {
+            resize(maximumSize);
+        }
+    }
+
+    private void resize(long maximumSize) {
+        int tableSize = 8;
+        while (tableSize < maximumSize && tableSize < MAX_TABLE_SIZE) {
+            tableSize <<= 1;
+        }
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(maximumSize, 1L), Integer.MAX_VALUE);
+        this.size = 0;
+    }
+
+    /**
+     * Estimated number of accesses of the key, at most 15.
+     *
+     * @param key the key
+     * @return the estimated frequency
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Count an access of the key, halving all counters when the sample size is reached.
+     *
+     * @param key the key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve every counter. The increments lost by the integer division are estimated by the odd counters.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /**
+     * Uses another multiplier than the segment selection of {@link InMemoryCache}, so keys of one segment do not
+     * share the same counters.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x31848bab;
+        return h ^ (h >>> 14);
+    }
+}
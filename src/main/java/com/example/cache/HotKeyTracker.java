@@ -0,0 +1,267 @@
+package com.example.cache;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Finds the most accessed keys of a cache, with the Space-Saving algorithm of Metwally et al.
+ * <p>
+ * A fixed number of counters is kept, so the memory is bounded whatever the number of keys. A key with a counter
+ * counts up, another key takes over the counter of the least counted key, starting from its count, which so bounds
+ * the overestimate of the new key. A key accessed more often than once per {@code capacity} accesses is sure to hold a
+ * counter. Only a random sample of the accesses is counted, at the configured rate, and a sample finding the tracker
+ * busy is dropped, so an access costs a random number most of the time and never waits. The counts are halved every
+ * half-life, so a key which went hot pushes out the keys which were hot before. The estimated rate of a key is its
+ * count over the time it was counted for, weighted the same way, so it is the recent rate of the key.
+ *
+ * @author vishnu.g
+ * @see InMemoryCache.CacheBuilder#trackHotKeys(int, double)
+ */
+public final class HotKeyTracker<K> {
+
+    public static final Duration DEFAULT_HALF_LIFE = Duration.ofSeconds(10);
+
+    private final int capacity;
+    private final double sampleRate;
+    private final long halfLifeNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Counter<K>> counters;
+    // min-heap of the counters by count, the least counted key first
+    private final Counter<K>[] heap;
+    private int size;
+    private long lastDecayNanos;
+    // the time counted before the last decay, halved by every decay
+    private double decayedNanos;
+
+    /**
+     * @param capacity   the number of keys tracked
+     * @param sampleRate the fraction of the accesses counted, 1 counts all
+     * @throws IllegalArgumentException if {@code capacity} is zero or negative or {@code sampleRate} not in (0, 1]
+     */
+    public HotKeyTracker(int capacity, double sampleRate) throws IllegalArgumentException {
+        this(capacity, sampleRate, DEFAULT_HALF_LIFE);
+    }
+
+    /**
+     * @param capacity   the number of keys tracked
+     * @param sampleRate the fraction of the accesses counted, 1 counts all
+     * @param halfLife   the time after which the counts are halved
+     * @throws IllegalArgumentException if {@code capacity} or {@code halfLife} is zero or negative or
+     *                                  {@code sampleRate} not in (0, 1]
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HotKeyTracker(int capacity, double sampleRate, Duration halfLife) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than zero");
+        }
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate should be greater than zero and at most one");
+        }
+        if (halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("halfLife should be greater than zero");
+        }
+        this.capacity = capacity;
+        this.sampleRate = sampleRate;
+        this.halfLifeNanos = halfLife.toNanos();
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = (Counter<K>[]) new Counter[capacity];
+        this.lastDecayNanos = System.nanoTime();
+    }
+
+    /**
+     * Count an access to the key, if sampled.
+     *
+     * @param key the key
+     */
+    public void record(K key) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!lock.tryLock()) { // lossy, a hot key is sampled again soon enough
+            return;
+        }
+        try {
+            decayIfDue(System.nanoTime());
+            Counter<K> counter = counters.get(key);
+            if (null != counter) {
+                counter.count++;
+                siftDown(counter.index);
+            } else if (size < capacity) {
+                counter = new Counter<>(key);
+                heap[size] = counter;
+                counters.put(key, counter);
+                siftUp(size++);
+            } else { // the new key takes over the least counted key
+                counter = heap[0];
+                counters.remove(counter.key);
+                counter.key = key;
+                counter.error = counter.count;
+                counter.count++;
+                counters.put(key, counter);
+                siftDown(0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the tracked keys, the most accessed first
+     */
+    public List<HotKey<K>> hotKeys() {
+        return hotKeys(capacity);
+    }
+
+    /**
+     * @param limit the maximum number of keys
+     * @return the most accessed keys, the most accessed first
+     */
+    public List<HotKey<K>> hotKeys(int limit) {
+        List<HotKey<K>> hotKeys = new ArrayList<>(size);
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            decayIfDue(now);
+            double seconds = (decayedNanos + (now - lastDecayNanos)) / 1e9;
+            for (int i = 0; i < size; i++) {
+                Counter<K> counter = heap[i];
+                long count = Math.round(counter.count / sampleRate);
+                long error = Math.round(counter.error / sampleRate);
+                hotKeys.add(new HotKey<>(counter.key, count, error, (seconds > 0) ? count / seconds : 0));
+            }
+        } finally {
+            lock.unlock();
+        }
+        hotKeys.sort(Comparator.comparingLong(HotKey<K>::getCount).reversed());
+        return (hotKeys.size() > limit) ? new ArrayList<>(hotKeys.subList(0, limit)) : hotKeys;
+    }
+
+    /**
+     * Forget all the keys.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            counters.clear();
+            Arrays.fill(heap, 0, size, null);
+            size = 0;
+            lastDecayNanos = System.nanoTime();
+            decayedNanos = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Halve the counts once per half-life passed, dropping the keys counted down to zero.
+     */
+    private void decayIfDue(long now) {
+        while (now - lastDecayNanos >= halfLifeNanos) {
+            decayedNanos = (decayedNanos + halfLifeNanos) / 2;
+            lastDecayNanos += halfLifeNanos;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                Counter<K> counter = heap[i];
+                counter.count >>>= 1;
+                counter.error >>>= 1;
+                if (counter.count > 0) {
+                    counter.index = kept;
+                    heap[kept++] = counter;
+                } else {
+                    counters.remove(counter.key);
+                }
+            }
+            Arrays.fill(heap, kept, size, null);
+            size = kept;
+            for (int i = size / 2 - 1; i >= 0; i--) { // halving keeps the order mostly, the dropped keys do not
+                siftDown(i);
+            }
+            if (0 == size) {
+                lastDecayNanos = now; // idle, the rest of the time would only be halved away
+                decayedNanos = 0;
+            }
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<K> counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter<K> {
+        private K key;
+        private long count = 1;
+        // the count the key took over, its count is overestimated by at most this much
+        private long error;
+        private int index;
+
+        private Counter(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A key and its estimated accesses, scaled up by the sample rate.
+     */
+    @Getter
+    public static final class HotKey<K> {
+        private final K key;
+        // estimated accesses since the counts were last halved, plus the halved counts before
+        private final long count;
+        // the count is at most this much above the actual accesses
+        private final long error;
+        // estimated recent accesses per second
+        private final double rate;
+
+        HotKey(K key, long count, long error, double rate) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.rate = rate;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count + " (" + Math.round(rate) + "/s)";
+        }
+    }
+}
@@ -1,53 +1,132 @@
 package com.example.cache;
 
-import lombok.Getter;
-
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.io.IOException;
 import java.lang.ref.SoftReference;
-import java.time.Duration;
-import java.time.Instant;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 
 /**
  * In-memory LRU cache with ttl.
+ * <p>
+ * Entries are kept in a {@link ConcurrentHashMap}, so reads never block each other. The eviction order and the
+ * timer wheel of expiring keys are split into {@code concurrencyLevel} segments, each guarded by its own lock, so
+ * writes to keys of different segments proceed in parallel. Reads only record their access when the segment lock is
+ * free, which keeps the eviction order approximate under contention. The entry to evict is chosen by the
+ * {@link EvictionPolicy}, LRU by default. Missing values are loaded outside of the locks, the threads missing a key
+ * while it loads wait for that one load.
+ * <p>
+ * Values are held by soft references on the heap, or serialized in off-heap memory if configured with
+ * {@link CacheBuilder#offHeap(long, Serializer)}. Entries evicted for size can spill into a {@link DiskOverflow}
+ * tier, see {@link CacheBuilder#overflowTo(Path, long, Serializer)}. A cache can be written to a snapshot with
+ * {@link #snapshotTo(Path, Serializer, Serializer)} and built warm from it, see
+ * {@link CacheBuilder#restoreFrom(Path, Serializer, Serializer)}.
  *
  * @author vishnu.g
  */
 public class InMemoryCache<K, V> implements Cache<K, V> {
 
+    private static final System.Logger LOGGER = System.getLogger(InMemoryCache.class.getName());
     private static final TemporalUnit FALL_BACK_EXPIRY_UNIT = ChronoUnit.MILLIS;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    // readers clean up a segment at most once per resolution of the timer wheel
+    private static final long CLEANUP_INTERVAL_NANOS = 1L << 20;
+    // ~146 years, keeps expiry times computed from System.nanoTime() from overflowing
+    private static final long MAX_EXPIRY_NANOS = Long.MAX_VALUE >>> 1;
     // Function to load value for cache miss.
     private final Function<K, V> valueLoader;
+    // Function to load the values of all misses of a bulk get at once.
+    private final Function<Set<K>, Map<K, V>> bulkLoader;
     // Actual Map to keep cache.
-    private final Map<K, SoftReference<V>> cache;
-    // Lock for concurrency
-    private final ReadWriteLock readWriteLock;
-    // Holds the map keys using the given lifetime for expiration.
-    private final DelayQueue<DelayedCacheKey<K>> delayQueue;
-    // Holds delayedKey object for particular key for accessing.
-    private final Map<K, DelayedCacheKey<K>> expiringKeys;
-    // The default max lifetime in milliseconds.
+    private final ConcurrentHashMap<K, Node<K, V>> cache;
+    // The loads of missing values running, shared by the threads missing the same key.
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    // Segments holding the access order and timer wheel of their keys, each one with its own lock.
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    // The default max lifetime in the default expiry unit.
     private final long defaultExpiryAfter;
-    // The default unit of date-time.
-    private final TemporalUnit defaultExpiryUnit;
+    // Nanoseconds in one default expiry unit.
+    private final long expiryUnitNanos;
+    // Serializer of the values stored off-heap, null if they are kept on the heap.
+    private final Serializer<V> serializer;
+    // Second tier of the entries evicted for size, null if none.
+    private final DiskOverflow<K, V> overflow;
+    // null unless recording statistics
+    private final StatsCounter statsCounter;
+    // Counts the most read keys, null unless tracking them.
+    private final HotKeyTracker<K> hotKeyTracker;
+    // Weigher of the entries, null if the cache is bounded by its size.
+    private final Weigher<? super K, ? super V> weigher;
+    // Nanoseconds after a write the next read reloads the value, zero if values are not refreshed.
+    private final long refreshAfterWriteNanos;
+    // Runs the refreshes.
+    private final Executor executor;
+    // Delivers the removals to the listener, null if none.
+    private final RemovalNotifier<K, V> notifier;
+    // The name of the cache in its events and MBean.
+    private final String name;
+    // The MBean of the cache, null unless registered.
+    private final CacheMBeans.Registration mbean;
 
 
-    private InMemoryCache(Map<K, SoftReference<V>> cache, Function<K, V> valueLoader,
-                          long defaultExpiryAfter, TemporalUnit defaultExpiryUnit) {
-        this.cache = cache;
-        this.valueLoader = valueLoader;
-        this.readWriteLock = new ReentrantReadWriteLock();
-        this.delayQueue = new DelayQueue<>();
-        this.expiringKeys = new HashMap<>();
-        this.defaultExpiryAfter = defaultExpiryAfter;
-        this.defaultExpiryUnit = (null != defaultExpiryUnit) ? defaultExpiryUnit : FALL_BACK_EXPIRY_UNIT;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private InMemoryCache(CacheBuilder<? super K, ? super V> builder, Function<K, V> valueLoader,
+                          Function<Set<K>, Map<K, V>> bulkLoader) {
+        int segmentCount = builder.segmentCount();
+        this.name = (null != builder.mbeanName) ? builder.mbeanName
+                : "InMemoryCache@" + Integer.toHexString(System.identityHashCode(this));
+        // the maximum size is the maximum weight of entries which all weigh 1
+        long maximumWeight = (builder.maximumWeight > 0) ? builder.maximumWeight : builder.maximumSize;
+        this.cache = new ConcurrentHashMap<>(Math.max(builder.initialCapacity, 0), 0.75f, segmentCount);
+        this.bulkLoader = bulkLoader;
+        this.serializer = (Serializer<V>) builder.serializer;
+        this.weigher = (builder.maximumWeight > 0) ? (Weigher<? super K, ? super V>) builder.weigher : null;
+        this.statsCounter = builder.recordStats ? new StatsCounter() : null;
+        this.hotKeyTracker = (builder.hotKeyCapacity > 0)
+                ? new HotKeyTracker<>(builder.hotKeyCapacity, builder.hotKeySampleRate) : null;
+        this.notifier = (null != builder.removalListener) ? new RemovalNotifier<>(
+                (RemovalListener<? super K, ? super V>) builder.removalListener, builder.executor) : null;
+        this.overflow = (null != builder.overflowDirectory) ? new DiskOverflow<>(builder.overflowDirectory,
+                builder.maximumOverflowBytes, (Serializer<V>) builder.overflowSerializer, builder.executor) : null;
+        // a bulk loader alone also loads single misses
+        this.valueLoader = (null != valueLoader || null == bulkLoader) ? valueLoader
+                : key -> bulkLoader.apply(Collections.singleton(key)).get(key);
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            // spread the maximum weight over the segments, the first ones take the remainder
+            long segmentMaximumWeight = maximumWeight > 0
+                    ? maximumWeight / segmentCount + (i < maximumWeight % segmentCount ? 1 : 0) : -1;
+            this.segments[i] = new Segment<>(name, cache,
+                    segmentMaximumWeight > 0 ? builder.evictionPolicy.<K>newEviction(segmentMaximumWeight,
+                            this::clearReferenced) : null,
+                    serializer, builder.maximumOffHeapBytes / segmentCount, overflow, statsCounter, notifier);
+        }
+        this.defaultExpiryAfter = builder.defaultExpiryAfter;
+        TemporalUnit expiryUnit = (null != builder.defaultExpiryUnit)
+                ? builder.defaultExpiryUnit : FALL_BACK_EXPIRY_UNIT;
+        this.expiryUnitNanos = expiryUnit.getDuration().toNanos();
+        this.refreshAfterWriteNanos = (null != this.valueLoader) ? builder.refreshAfterWriteNanos : 0;
+        this.executor = builder.executor;
+        if (null != builder.snapshotPath) {
+            restore(builder.snapshotPath, (Serializer<K>) builder.snapshotKeySerializer,
+                    (Serializer<V>) builder.snapshotValueSerializer);
+        }
+        this.mbean = (null != builder.mbeanName)
+                ? CacheMBeans.register(name, this, () -> Math.max(maximumWeight, 0)) : null;
     }
 
     /**
@@ -64,55 +143,171 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
     @Override
     public void put(K key, V value, long ttl) {
         Objects.requireNonNull(key);
-        readWriteLock.writeLock().lock();
-        try {
-            doCleanup();
-            doPutValue(key, value, Optional.of(ttl));
-        } finally {
-            readWriteLock.writeLock().unlock();
-        }
+        doPutValue(key, value, ttl);
     }
 
     @Override
     public void put(K key, V value) {
         Objects.requireNonNull(key);
-        readWriteLock.writeLock().lock();
-        try {
-            doCleanup();
-            doPutValue(key, value, Optional.empty());
-        } finally {
-            readWriteLock.writeLock().unlock();
-        }
+        doPutValue(key, value, defaultExpiryAfter);
     }
 
     @Override
     public V remove(K key) {
         Objects.requireNonNull(key);
-        readWriteLock.writeLock().lock();
-        try {
-            doCleanup();
-            delayQueue.remove(new DelayedCacheKey<>(key));
-            expiringKeys.remove(key);
-            return this.cache.remove(key).get();
-        } finally {
-            readWriteLock.writeLock().unlock();
-        }
+        return segmentFor(key).remove(key, System.nanoTime());
     }
 
     @Override
     public V get(K key) {
-        return doGetValue(key, true);
+        return doGetValue(key, true, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock of every segment once. Misses are promoted from the disk tier, if configured, the others are
+     * loaded with one call of the bulk loader, if configured, otherwise one by one with the value loader.
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        long now = System.nanoTime();
+        List<K> requested = new ArrayList<>();
+        for (K key : keys) {
+            requested.add(Objects.requireNonNull(key));
+            if (null != hotKeyTracker) {
+                hotKeyTracker.record(key);
+            }
+        }
+        List<K>[] keysBySegment = groupBySegment(requested, Function.identity());
+        Map<K, V> found = new HashMap<>();
+        Set<K> misses = new LinkedHashSet<>();
+        List<Node<K, V>> hits = (refreshAfterWriteNanos > 0) ? new ArrayList<>() : null;
+        for (int i = 0; i < segments.length; i++) {
+            if (null != keysBySegment[i]) {
+                segments[i].getAll(keysBySegment[i], now, found, misses, hits);
+            }
+        }
+        if (null != hits) {
+            for (Node<K, V> node : hits) {
+                refreshIfDue(node, now);
+            }
+        }
+        List<Node<K, V>> loaded = new ArrayList<>();
+        if (null != overflow) {
+            for (Iterator<K> iterator = misses.iterator(); iterator.hasNext(); ) {
+                K key = iterator.next();
+                DiskOverflow.Entry<V> entry = overflow.take(key);
+                if (null != entry) {
+                    iterator.remove();
+                    found.put(key, entry.value);
+                    loaded.add(createNode(key, entry.value, entry.expireAfterNanos, now));
+                }
+            }
+        }
+        if (null != statsCounter) {
+            statsCounter.recordHits(found.size());
+            statsCounter.recordMisses(misses.size());
+        }
+        if (!misses.isEmpty() && (null != bulkLoader || null != valueLoader)) {
+            loadAll(misses).forEach((key, value) -> {
+                if (null != key && null != value) {
+                    found.put(key, value);
+                    loaded.add(newNode(key, value, defaultExpiryAfter, now));
+                }
+            });
+        }
+        if (!loaded.isEmpty()) {
+            putAll(loaded, now, found);
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : requested) {
+            V value = found.get(key);
+            if (null != value) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock of every segment once.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        long now = System.nanoTime();
+        List<Node<K, V>> nodes = new ArrayList<>(entries.size());
+        List<K> removed = new ArrayList<>();
+        entries.forEach((key, value) -> {
+            if (null != value) {
+                nodes.add(newNode(Objects.requireNonNull(key), value, ttl, now));
+            } else { // like the other caches, a null value removes the key
+                removed.add(Objects.requireNonNull(key));
+            }
+        });
+        if (!removed.isEmpty()) {
+            invalidateAll(removed);
+        }
+        List<Node<K, V>>[] nodesBySegment = groupBySegment(nodes, node -> node.key);
+        for (int i = 0; i < segments.length; i++) {
+            if (null != nodesBySegment[i]) {
+                segments[i].putAll(nodesBySegment[i], now, null);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock of every segment once.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        long now = System.nanoTime();
+        List<K> removed = new ArrayList<>();
+        for (K key : keys) {
+            removed.add(Objects.requireNonNull(key));
+        }
+        List<K>[] keysBySegment = groupBySegment(removed, Function.identity());
+        for (int i = 0; i < segments.length; i++) {
+            if (null != keysBySegment[i]) {
+                segments[i].removeAll(keysBySegment[i], now);
+            }
+        }
     }
 
     @Override
     public void clear() {
-        readWriteLock.writeLock().lock();
+        for (Segment<K, V> segment : segments) {
+            segment.lock();
+        }
         try {
+            if (null != statsCounter) {
+                statsCounter.recordRemovals(RemovalCause.EXPLICIT, this.cache.size());
+            }
+            if (null != notifier) { // before the off-heap memory is freed
+                for (Node<K, V> node : this.cache.values()) {
+                    notifier.notify(node.key, segmentFor(node.key).valueOf(node), RemovalCause.EXPLICIT);
+                }
+            }
+            if (null != serializer) { // readers still holding a node must see its off-heap memory is freed
+                for (Node<K, V> node : this.cache.values()) {
+                    node.address = SlabAllocator.NULL;
+                }
+            }
             this.cache.clear();
-            this.delayQueue.clear();
-            this.expiringKeys.clear();
+            for (Segment<K, V> segment : segments) {
+                segment.clear();
+            }
+            if (null != overflow) {
+                overflow.clear();
+            }
         } finally {
-            readWriteLock.writeLock().unlock();
+            for (Segment<K, V> segment : segments) {
+                segment.unlock();
+            }
         }
     }
 
@@ -123,7 +318,10 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
 
     @Override
     public long size() {
-        // TODO : need to cleanup before finding actual size.
+        long now = System.nanoTime();
+        for (Segment<K, V> segment : segments) {
+            segment.cleanup(now);
+        }
         return this.cache.size();
     }
 
@@ -133,117 +331,990 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
         return 0;
     }
 
-    private V doGetValue(K key, boolean loadIfAbsent) {
-        Objects.requireNonNull(key);
-        readWriteLock.readLock().lock();
+    /**
+     * Unregister the MBean of the cache, if registered with {@link CacheBuilder#registerMBean(String)}. The cache
+     * remains usable.
+     */
+    @Override
+    public void close() {
+        if (null != mbean) {
+            mbean.close();
+        }
+    }
+
+    /**
+     * Get the total weight of the entries, as computed by the {@link Weigher} of a cache built with
+     * {@link CacheBuilder#maximumWeight(long)}. Every entry weighs 1 otherwise, so this is the size of a bounded
+     * cache. Expired entries not yet removed are included.
+     *
+     * @return the weighted size, 0 if the cache is unbounded
+     */
+    public long weightedSize() {
+        long weightedSize = 0;
+        for (Segment<K, V> segment : segments) {
+            weightedSize += segment.weightedSize();
+        }
+        return weightedSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Statistics are only recorded if enabled with {@link CacheBuilder#recordStats()}.
+     */
+    @Override
+    public CacheStats stats() {
+        return (null != statsCounter) ? statsCounter.snapshot() : CacheStats.empty();
+    }
+
+    /**
+     * Get the most read keys with their estimated reads, hits and misses alike, to replicate or split the keys hot
+     * enough to make their segment a bottleneck. Keys are only tracked if enabled with
+     * {@link CacheBuilder#trackHotKeys(int, double)}.
+     *
+     * @return the most read keys, the most read first; empty if not tracking
+     */
+    public List<HotKeyTracker.HotKey<K>> hotKeys() {
+        return (null != hotKeyTracker) ? hotKeyTracker.hotKeys() : Collections.emptyList();
+    }
+
+    /**
+     * Write the live entries to a snapshot file with their remaining ttl and, with
+     * {@link EvictionPolicy#WINDOW_TINY_LFU}, their estimated access frequency, see
+     * {@link CacheBuilder#restoreFrom(Path, Serializer, Serializer)}. Reads and writes go on while the snapshot is
+     * written, entries changed meanwhile may be in it with their old or new value. Entries spilled to the disk tier
+     * are not included. The snapshot replaces the file once complete.
+     *
+     * @param path            the snapshot file
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     * @throws IOException if the snapshot cannot be written, a previous snapshot is kept then
+     */
+    public void snapshotTo(Path path, Serializer<? super K> keySerializer, Serializer<? super V> valueSerializer)
+            throws IOException {
+        try (Snapshot.Writer<K, V> writer = new Snapshot.Writer<>(path, keySerializer, valueSerializer)) {
+            for (Node<K, V> node : this.cache.values()) {
+                long now = System.nanoTime();
+                Segment<K, V> segment = segmentFor(node.key);
+                V value = node.isExpired(now) ? null : segment.valueOf(node);
+                if (null != value) {
+                    long remainingNanos = (node.expireAfterNanos > 0) ? node.currentExpiryTime() - now : 0;
+                    writer.write(node.key, value, node.expireAfterNanos, remainingNanos, segment.frequency(node.key));
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Put the entries of a snapshot which are not present, with their remaining ttl. A missing snapshot leaves the
+     * cache empty, a broken one is logged and leaves the entries restored so far.
+     */
+    private void restore(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (!Files.exists(path)) { // nothing to warm up with, like on the first start
+            return;
+        }
+        long now = System.nanoTime();
         try {
-            doCleanup();
-            V value = getReferenceValue(key);
-
-            if (value == null && loadIfAbsent && valueLoader != null) { // cache miss
-                readWriteLock.readLock().unlock();// must release read lock before acquiring write lock
-                readWriteLock.writeLock().lock();
-                try {// recheck state because another thread might have
-                    // acquired write lock and changed state before we did.
-                    value = getReferenceValue(key);
-                    if (value == null) { // not present in the cache
-                        value = valueLoader.apply(key);
-                        doPutValue(key, value, Optional.empty());
-                    }
-                } finally { // downgrade by acquiring read lock before releasing write lock
-                    readWriteLock.readLock().lock();
-                    readWriteLock.writeLock().unlock(); // unlock write, still hold read
+            Snapshot.read(path, keySerializer, valueSerializer, executor,
+                    (key, value, expireAfterNanos, remainingNanos, frequency) -> {
+                        // back-date the access, so the node expires after the remaining time
+                        long accessTime = now - (expireAfterNanos - remainingNanos);
+                        segmentFor(key).restore(createNode(key, value, expireAfterNanos, accessTime), frequency, now);
+                    });
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "cannot restore the snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Get the value of the key without loading it or recording statistics.
+     */
+    V getQuietly(K key) {
+        return doGetValue(key, false, false);
+    }
+
+    /**
+     * @return the counters of the statistics, null unless recording them
+     */
+    StatsCounter statsCounter() {
+        return statsCounter;
+    }
+
+    /**
+     * @return the name of the cache in its events and MBean
+     */
+    String name() {
+        return name;
+    }
+
+    private V doGetValue(K key, boolean loadIfAbsent, boolean recordStats) {
+        Objects.requireNonNull(key);
+        if (recordStats && null != hotKeyTracker) {
+            hotKeyTracker.record(key);
+        }
+        long now = System.nanoTime();
+        Segment<K, V> segment = segmentFor(key);
+        segment.tryCleanup(now);
+
+        V value = null;
+        Node<K, V> node = this.cache.get(key);
+        if (null != node) {
+            if (node.isExpired(now)) {
+                segment.expire(node, now);
+            } else {
+                value = segment.valueOf(node);
+                if (null != value) {
+                    node.accessTime = now; // renew the ttl
+                    segment.recordAccess(node);
+                    refreshIfDue(node, now);
+                } else if (null == serializer) { // the soft reference was cleared
+                    segment.collect(node, now);
                 }
+            }
+        }
+        if (null == value) {
+            segment.recordMiss(key);
+            if (null != overflow) {
+                value = promote(segment, key, now);
+            }
+        }
+        if (recordStats && null != statsCounter) {
+            if (null != value) {
+                statsCounter.recordHits(1);
             } else {
-                renewKey(key);
+                statsCounter.recordMisses(1);
+            }
+        }
+
+        if (value == null && loadIfAbsent && valueLoader != null) { // cache miss
+            value = loadOnce(key, segment, now);
+        }
+        return value;
+    }
+
+    /**
+     * Load and store the value of a missing key, outside of any lock. The threads missing the same key meanwhile
+     * wait for that load instead of calling the loader again, and get its value or failure.
+     */
+    private V loadOnce(K key, Segment<K, V> segment, long now) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, created);
+        if (null != running) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            // a load which just ended may have stored the value
+            Node<K, V> node = cache.get(key);
+            V value = (null != node && !node.isExpired(now)) ? segment.valueOf(node) : null;
+            if (null == value) {
+                V loaded = load(key);
+                if (null != loaded) { // keep the value of a thread which stored one meanwhile
+                    V current = segment.putIfAbsent(newNode(key, loaded, defaultExpiryAfter, now), now);
+                    value = (null != current) ? current : loaded;
+                }
             }
+            created.complete(value);
             return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
         } finally {
-            readWriteLock.readLock().unlock();
+            loading.remove(key, created);
         }
     }
 
-    private SoftReference<V> doPutValue(K key, V value, Optional<Long> ttl) {
+    /**
+     * Reload the value of a node written more than the refresh interval ago on the executor, unless a reload of the
+     * node is running. Readers get the old value until the new one is stored.
+     */
+    private void refreshIfDue(Node<K, V> node, long now) {
+        if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos && node.startRefresh()) {
+            try {
+                executor.execute(() -> refresh(node));
+            } catch (RuntimeException e) { // rejected by the executor, the next read tries again
+                node.refreshing = false;
+            }
+        }
+    }
 
-        long timeToLeave = (ttl.isPresent()) ? ttl.get() : defaultExpiryAfter;
-        if (timeToLeave > 0) {
-            DelayedCacheKey<K> delayedKey = new DelayedCacheKey<>(key, timeToLeave, defaultExpiryUnit);
-            //  previous value associated with key, or null if there was no mapping for key
-            DelayedCacheKey<K> oldKey = expiringKeys.put(key, delayedKey);
-            if (null != oldKey) {
-                delayQueue.remove(oldKey);
+    /**
+     * Store the reloaded value, unless the node was replaced or removed meanwhile. A failed reload keeps the old
+     * value, which a later read retries to refresh.
+     */
+    private void refresh(Node<K, V> node) {
+        V loaded;
+        try {
+            loaded = load(node.key); // counts the failures if recording statistics
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "cannot refresh the value of " + node.key, e);
+            node.refreshing = false;
+            return;
+        }
+        if (null == loaded) { // nothing to replace the old value with
+            node.refreshing = false;
+            return;
+        }
+        long now = System.nanoTime();
+        segmentFor(node.key).replace(node, createNode(node.key, loaded, node.expireAfterNanos, now), now);
+    }
+
+    /**
+     * Take the entry of the key out of the disk tier and put it back into its segment.
+     */
+    private V promote(Segment<K, V> segment, K key, long now) {
+        DiskOverflow.Entry<V> entry = overflow.take(key);
+        if (null == entry) {
+            return null;
+        }
+        V current = segment.putIfAbsent(createNode(key, entry.value, entry.expireAfterNanos, now), now);
+        return (null != current) ? current : entry.value;
+    }
+
+    /**
+     * Load the value with the value loader. A loader which throws or returns null counts as a failed load.
+     */
+    private V load(K key) {
+        CacheEvents.SlowLoad event = new CacheEvents.SlowLoad();
+        event.begin();
+        if (null == statsCounter) {
+            V loaded = null;
+            try {
+                loaded = valueLoader.apply(key);
+            } finally {
+                event.complete(name, key, null == loaded);
             }
-            delayQueue.offer(delayedKey);
+            return loaded;
+        }
+        long start = System.nanoTime();
+        V loaded;
+        try {
+            loaded = valueLoader.apply(key);
+        } catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            event.complete(name, key, true);
+            throw e;
         }
-        return this.cache.put(key, new SoftReference<>(value));
+        if (null != loaded) {
+            statsCounter.recordLoadSuccess(System.nanoTime() - start);
+        } else {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+        }
+        event.complete(name, key, null == loaded);
+        return loaded;
     }
 
-    private boolean renewKey(K key) {
-        // TODO : need to check
-        DelayedCacheKey<K> delayedKey = expiringKeys.get(key);
-        if (null != delayedKey) {
-            delayedKey.renew();
-            return true;
+    /**
+     * Load the values with one call of the bulk loader, counted as one load, or else one by one.
+     */
+    private Map<K, V> loadAll(Set<K> keys) {
+        if (null != bulkLoader) {
+            CacheEvents.SlowLoad event = new CacheEvents.SlowLoad();
+            event.begin();
+            long start = System.nanoTime();
+            Map<K, V> loaded;
+            try {
+                loaded = bulkLoader.apply(Collections.unmodifiableSet(keys));
+            } catch (RuntimeException | Error e) {
+                if (null != statsCounter) {
+                    statsCounter.recordLoadFailure(System.nanoTime() - start);
+                }
+                event.complete(name, keys, true);
+                throw e;
+            }
+            if (null != statsCounter) {
+                statsCounter.recordLoadSuccess(System.nanoTime() - start);
+            }
+            event.complete(name, keys, false);
+            return (null != loaded) ? loaded : Collections.emptyMap();
         }
-        return false;
+        Map<K, V> loaded = new HashMap<>();
+        for (K key : keys) {
+            loaded.put(key, load(key));
+        }
+        return loaded;
     }
 
     /**
-     * Get actual value from cache wrapped in {@code SoftReference} object.
+     * Store the loaded nodes unless a value was stored meanwhile, replacing the loaded values by those.
+     */
+    private void putAll(List<Node<K, V>> nodes, long now, Map<K, V> values) {
+        List<Node<K, V>>[] nodesBySegment = groupBySegment(nodes, node -> node.key);
+        for (int i = 0; i < segments.length; i++) {
+            if (null != nodesBySegment[i]) {
+                segments[i].putAll(nodesBySegment[i], now, values);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> List<T>[] groupBySegment(Collection<T> items, Function<T, K> keyOf) {
+        List<T>[] itemsBySegment = new List[segments.length];
+        for (T item : items) {
+            int index = spread(keyOf.apply(item).hashCode()) & segmentMask;
+            if (null == itemsBySegment[index]) {
+                itemsBySegment[index] = new ArrayList<>();
+            }
+            itemsBySegment[index].add(item);
+        }
+        return itemsBySegment;
+    }
+
+    private void doPutValue(K key, V value, long ttl) {
+        long now = System.nanoTime();
+        if (null == value) { // like the other caches, a null value removes the key
+            segmentFor(key).remove(key, now);
+            return;
+        }
+        segmentFor(key).put(newNode(key, value, ttl, now), now);
+    }
+
+    private Node<K, V> newNode(K key, V value, long ttl, long now) {
+        long expireAfterNanos = (ttl > 0) ? saturatedMultiply(ttl, expiryUnitNanos) : 0;
+        return createNode(key, value, expireAfterNanos, now);
+    }
+
+    private Node<K, V> createNode(K key, V value, long expireAfterNanos, long now) {
+        // weigh outside of the segment lock too
+        int weight = (null != weigher && null != value) ? weigh(key, value) : 1;
+        if (null == serializer) {
+            return new Node<>(key, new SoftReference<>(value), null, expireAfterNanos, weight, now);
+        }
+        // serialize outside of the segment lock, the segment copies the bytes off-heap
+        return new Node<>(key, null, (null != value) ? serializer.serialize(value) : null, expireAfterNanos, weight,
+                now);
+    }
+
+    private int weigh(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight of " + key + " should not be negative");
+        }
+        return weight;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        return segments[spread(key.hashCode()) & segmentMask];
+    }
+
+    /**
+     * Clear the reference bit of the entry of the key, read by the {@link EvictionPolicy#CLOCK} sweep.
      *
-     * @param key the key
-     * @return V the actual value
+     * @return whether the entry was read since the bit was last cleared
      */
-    private V getReferenceValue(K key) {
-        return Optional.ofNullable(this.cache.get(key)).map(SoftReference::get).orElse(null);
+    private boolean clearReferenced(K key) {
+        Node<K, V> node = this.cache.get(key);
+        return null != node && node.clearReferenced();
     }
 
     /**
-     * Clean up cache and queue w.r.t ttl.
+     * Applies a supplemental hash so keys with similar hash codes do not pile up in one segment.
      */
-    private void doCleanup() {
-        DelayedCacheKey<K> delayedKey = delayQueue.poll();
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
 
-        while (null != delayedKey) {
-           // System.out.println("--- " + delayedKey.getKey());
-            this.cache.remove(delayedKey.getKey());
-            this.expiringKeys.remove(delayedKey.getKey());
-            delayedKey = delayQueue.poll();
-        }
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        return (high == 0 && low >= 0) ? Math.min(low, MAX_EXPIRY_NANOS) : MAX_EXPIRY_NANOS;
     }
 
-    private static class DelayedCacheKey<K> implements Delayed {
-        @Getter
+    /**
+     * A cache entry. A new node is created on every write, so apart from the access time only the off-heap location
+     * of the value is mutable, set once by the segment storing it and reset when it is freed.
+     */
+    private static final class Node<K, V> extends TimerWheel.Node {
+        private static final VarHandle REFRESHING;
+
+        static {
+            try {
+                REFRESHING = MethodHandles.lookup().findVarHandle(Node.class, "refreshing", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
         private final K key;
-        private long expireAfter;
-        private TemporalUnit expiryUnit;
-        private Instant startTime;
+        // null if the value is stored off-heap
+        private final SoftReference<V> valueReference;
+        // time-to-live in nanoseconds, zero if the entry never expires
+        private final long expireAfterNanos;
+        // computed by the weigher, 1 without one
+        private final int weight;
+        // in System.nanoTime(), the refresh interval starts from it
+        private final long writeTime;
+        // whether a reload of the value is running
+        private volatile boolean refreshing;
+        // last read or write in System.nanoTime(), reading renews the ttl
+        private volatile long accessTime;
+        // set by a hit, cleared by the sweep of the CLOCK eviction
+        private volatile boolean referenced;
+        // the serialized value until the segment copies it off-heap
+        private byte[] serializedValue;
+        // location of the serialized value in the slabs of the segment
+        private volatile long address = SlabAllocator.NULL;
+        private int length;
 
-        public DelayedCacheKey(K key) {
+        private Node(K key, SoftReference<V> valueReference, byte[] serializedValue, long expireAfterNanos,
+                     int weight, long now) {
             this.key = key;
+            this.valueReference = valueReference;
+            this.serializedValue = serializedValue;
+            this.expireAfterNanos = expireAfterNanos;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        /**
+         * @return whether this thread is the one to refresh the value
+         */
+        private boolean startRefresh() {
+            return !refreshing && REFRESHING.compareAndSet(this, false, true);
+        }
+
+        private V getValue() {
+            return valueReference.get();
         }
 
-        public DelayedCacheKey(K key, long expireAfter, TemporalUnit expiryUnit) {
-            this(key);
-            this.expiryUnit = expiryUnit;
-            this.startTime = Instant.now();
-            this.expireAfter = expireAfter;
+        /**
+         * Set the reference bit, written only if not set yet so reads of a hot entry do not bounce its cache line.
+         */
+        private void markReferenced() {
+            if (!referenced) {
+                referenced = true;
+            }
         }
 
-        public void renew() {
-            this.startTime = Instant.now();
+        private boolean clearReferenced() {
+            if (referenced) {
+                referenced = false;
+                return true;
+            }
+            return false;
         }
 
-        @Override
-        public long getDelay(TimeUnit timeUnit) {
-            long diff = startTime == null ? 0 : Duration.between(Instant.now(),
-                    startTime.plus(expireAfter, expiryUnit)).toMillis();
-            return timeUnit.convert(diff, TimeUnit.MILLISECONDS);
+        private boolean isExpired(long now) {
+            return expireAfterNanos > 0 && now - accessTime >= expireAfterNanos;
         }
 
-        @Override
-        public int compareTo(Delayed that) {
-            return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), that.getDelay(TimeUnit.NANOSECONDS));
+        private long currentExpiryTime() {
+            return accessTime + expireAfterNanos;
+        }
+    }
+
+    /**
+     * A part of the cache owning the LRU order and timer wheel of the keys hashed to it, and the off-heap memory of
+     * their values. Every change of those keys in the shared map is done while holding the segment lock.
+     */
+    private static final class Segment<K, V> extends MonitoredLock {
+        private static final long serialVersionUID = 2137518404932153318L;
+
+        private final transient ConcurrentHashMap<K, Node<K, V>> cache;
+        // Eviction order of the keys, null if unbounded
+        private final transient Eviction<K> eviction;
+        // Holds the nodes with a ttl by their expiry time.
+        private final transient TimerWheel<Node<K, V>> timerWheel;
+        // Read without the lock by readers to skip needless cleanups.
+        private volatile boolean hasExpiringNodes;
+        private volatile long cleanupTime;
+        // Off-heap memory of the values and their serializer, null if the values are kept on the heap.
+        private final transient SlabAllocator offHeap;
+        private final transient Serializer<V> serializer;
+        // Tier the evicted entries spill into, null if none.
+        private final transient DiskOverflow<K, V> overflow;
+        // null unless recording statistics
+        private final transient StatsCounter statsCounter;
+        // null without a removal listener
+        private final transient RemovalNotifier<K, V> notifier;
+        // Entries evicted and expired by the current write or cleanup, reported in its event.
+        private int evictions;
+        private int expirations;
+
+        private Segment(String cacheName, ConcurrentHashMap<K, Node<K, V>> cache, Eviction<K> eviction,
+                        Serializer<V> serializer, long maximumOffHeapBytes, DiskOverflow<K, V> overflow,
+                        StatsCounter statsCounter, RemovalNotifier<K, V> notifier) {
+            super(cacheName);
+            this.cache = cache;
+            this.notifier = notifier;
+            this.eviction = eviction;
+            this.overflow = overflow;
+            this.statsCounter = statsCounter;
+            this.serializer = serializer;
+            this.offHeap = (null != serializer) ? new SlabAllocator(maximumOffHeapBytes) : null;
+            this.cleanupTime = System.nanoTime();
+            this.timerWheel = new TimerWheel<>(cleanupTime);
+        }
+
+        private void put(Node<K, V> node, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                doPut(node);
+            } finally {
+                unlock();
+            }
+        }
+
+        private V putIfAbsent(Node<K, V> node, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                return doPutIfAbsent(node, now);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Put a node of a snapshot unless its key is present, with the frequency of its key.
+         */
+        private void restore(Node<K, V> node, int frequency, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                if (null != eviction && frequency > 0) {
+                    eviction.restoreFrequency(node.key, frequency);
+                }
+                doPutIfAbsent(node, now);
+            } finally {
+                unlock();
+            }
+        }
+
+        private int frequency(K key) {
+            if (null == eviction) {
+                return 0;
+            }
+            lock();
+            try {
+                return eviction.frequency(key);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Put the node in place of the old one, unless that one was replaced or removed meanwhile.
+         */
+        private void replace(Node<K, V> old, Node<K, V> node, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                if (cache.get(node.key) == old) {
+                    doPut(node);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Put all nodes, or only the absent ones collecting the current values if a map is given.
+         */
+        private void putAll(List<Node<K, V>> nodes, long now, Map<K, V> values) {
+            lock();
+            try {
+                doCleanup(now);
+                for (Node<K, V> node : nodes) {
+                    if (null == values) {
+                        doPut(node);
+                    } else {
+                        V current = doPutIfAbsent(node, now);
+                        if (null != current) {
+                            values.put(node.key, current);
+                        }
+                    }
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Collect the values of the keys present and the missing keys, and the nodes of the hits if a list is given.
+         */
+        private void getAll(List<K> keys, long now, Map<K, V> values, Set<K> misses, List<Node<K, V>> hits) {
+            lock();
+            try {
+                doCleanup(now);
+                for (K key : keys) {
+                    Node<K, V> node = cache.get(key);
+                    V value = null;
+                    if (null != node) {
+                        if (node.isExpired(now)) {
+                            removeNode(node, RemovalCause.EXPIRED);
+                        } else {
+                            value = valueOf(node);
+                        }
+                    }
+                    if (null != value) {
+                        node.accessTime = now; // renew the ttl
+                        if (null != eviction) {
+                            eviction.recordAccess(key);
+                        }
+                        values.put(key, value);
+                        if (null != hits) {
+                            hits.add(node);
+                        }
+                    } else {
+                        if (null != eviction && eviction.recordsMisses()) {
+                            eviction.recordMiss(key);
+                        }
+                        misses.add(key);
+                    }
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        private V remove(K key, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                Node<K, V> node = cache.get(key);
+                // read the value before its off-heap memory is freed
+                V value = (null != node) ? valueOf(node) : null;
+                if (null == value && null != overflow) { // may have been evicted to the disk tier
+                    DiskOverflow.Entry<V> entry = overflow.take(key);
+                    value = (null != entry) ? entry.value : null;
+                }
+                doRemove(key, RemovalCause.EXPLICIT);
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void removeAll(List<K> keys, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                for (K key : keys) {
+                    doRemove(key, RemovalCause.EXPLICIT);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Remove an expired node found by a reader, unless it was replaced meanwhile.
+         */
+        private void expire(Node<K, V> node, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                removeNode(node, RemovalCause.EXPIRED);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Remove a node of which a reader found the value collected, unless it was replaced meanwhile.
+         */
+        private void collect(Node<K, V> node, long now) {
+            lock();
+            try {
+                doCleanup(now);
+                removeNode(node, RemovalCause.COLLECTED);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Record the hit in the eviction order, dropped if another thread holds the lock. An order reading reference
+         * bits only has the bit of the node set, without the lock.
+         */
+        private void recordAccess(Node<K, V> node) {
+            if (null != eviction && !eviction.recordsAccess()) {
+                node.markReferenced();
+            } else if (null != eviction && tryLock()) {
+                try {
+                    if (cache.get(node.key) == node) {
+                        eviction.recordAccess(node.key);
+                    }
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        /**
+         * Record the miss in the eviction order, dropped if another thread holds the lock.
+         */
+        private void recordMiss(K key) {
+            if (null != eviction && eviction.recordsMisses() && tryLock()) {
+                try {
+                    eviction.recordMiss(key);
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        private long weightedSize() {
+            if (null == eviction) {
+                return 0;
+            }
+            lock();
+            try {
+                return eviction.weightedSize();
+            } finally {
+                unlock();
+            }
+        }
+
+        private void cleanup(long now) {
+            if (hasExpiringNodes) {
+                lock();
+                try {
+                    doCleanup(now);
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        private void tryCleanup(long now) {
+            if (hasExpiringNodes && now - cleanupTime >= CLEANUP_INTERVAL_NANOS && tryLock()) {
+                try {
+                    doCleanup(now);
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        /**
+         * Must be called with all segment locks held, after the shared map is cleared.
+         */
+        private void clear() {
+            if (null != eviction) {
+                eviction.clear();
+            }
+            timerWheel.clear();
+            hasExpiringNodes = false;
+            if (null != offHeap) {
+                offHeap.clear();
+            }
+        }
+
+        /**
+         * Read the value of the node, safe without holding the lock.
+         *
+         * @return the value, null if it was collected or its off-heap memory freed
+         */
+        private V valueOf(Node<K, V> node) {
+            if (null == offHeap) {
+                return node.getValue();
+            }
+            long address = node.address;
+            if (SlabAllocator.NULL == address) {
+                return null;
+            }
+            byte[] bytes = offHeap.read(address, node.length);
+            // the memory may have been freed and reused while copying, which resets the address first
+            VarHandle.loadLoadFence();
+            return (null != bytes && node.address == address) ? serializer.deserialize(ByteBuffer.wrap(bytes)) : null;
+        }
+
+        private void doPut(Node<K, V> node) {
+            CacheEvents.EvictionBatch event = new CacheEvents.EvictionBatch();
+            event.begin();
+            evictions = 0;
+            if (null != offHeap && !store(node)) { // the value does not fit, the present one stays
+                return;
+            }
+            if (null != overflow) { // the new value supersedes the one on disk, or the one just spilled to free memory
+                overflow.invalidate(node.key);
+            }
+            Node<K, V> old = cache.put(node.key, node);
+            if (null != old) {
+                timerWheel.cancel(old);
+                removed(old, RemovalCause.REPLACED);
+                release(old);
+            }
+            if (node.expireAfterNanos > 0) {
+                schedule(node);
+            }
+            if (null != eviction) {
+                if (null != old) {
+                    eviction.update(node.key, node.weight, this::evict);
+                } else { // evict while the segment exceeds its share of the maximum weight
+                    eviction.add(node.key, node.weight, this::evict);
+                }
+            }
+            if (evictions > 0) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.cache = cacheName();
+                    event.evicted = evictions;
+                    event.commit();
+                }
+            }
+        }
+
+        /**
+         * Put the node unless a live value is present.
+         *
+         * @return the present value, null if the node was put
+         */
+        private V doPutIfAbsent(Node<K, V> node, long now) {
+            Node<K, V> current = cache.get(node.key);
+            if (null != current && current.isExpired(now)) {
+                removeNode(current, RemovalCause.EXPIRED);
+                current = null;
+            }
+            V value = (null != current) ? valueOf(current) : null;
+            if (null == value) {
+                doPut(node);
+            }
+            return value;
+        }
+
+        private Node<K, V> doRemove(K key, RemovalCause cause) {
+            if (null != overflow) {
+                overflow.invalidate(key);
+            }
+            Node<K, V> node = cache.remove(key);
+            if (null != node) {
+                timerWheel.cancel(node);
+                removed(node, cause);
+                release(node);
+                if (null != eviction) {
+                    eviction.remove(key);
+                }
+            }
+            return node;
+        }
+
+        private void evict(K key) {
+            Node<K, V> evicted = cache.remove(key);
+            if (null != evicted) {
+                evictions++;
+                timerWheel.cancel(evicted);
+                V value = (null != overflow || null != notifier) ? valueOf(evicted) : null;
+                if (null != statsCounter) {
+                    statsCounter.recordRemovals(RemovalCause.SIZE, 1);
+                }
+                if (null != notifier) {
+                    notifier.notify(key, value, RemovalCause.SIZE);
+                }
+                if (null != overflow && null != value) {
+                    overflow.spill(key, value, evicted.currentExpiryTime(), evicted.expireAfterNanos);
+                }
+                release(evicted);
+            }
+        }
+
+        private void removeNode(Node<K, V> node, RemovalCause cause) {
+            if (cache.remove(node.key, node)) {
+                timerWheel.cancel(node);
+                removed(node, cause);
+                release(node);
+                if (null != eviction) {
+                    eviction.remove(node.key);
+                }
+            }
+        }
+
+        /**
+         * Record the removal of a node which left the map, before its off-heap memory is freed.
+         */
+        private void removed(Node<K, V> node, RemovalCause cause) {
+            if (null != statsCounter) {
+                statsCounter.recordRemovals(cause, 1);
+            }
+            if (null != notifier) {
+                notifier.notify(node.key, valueOf(node), cause);
+            }
+        }
+
+        /**
+         * Copy the serialized value of the node off-heap, evicting entries until their freed memory fits it.
+         *
+         * @return false if there is no value, it is larger than the off-heap memory of the segment, or the segment
+         * is unbounded and its memory full
+         */
+        private boolean store(Node<K, V> node) {
+            byte[] bytes = node.serializedValue;
+            if (null == bytes || !offHeap.fits(bytes.length)) {
+                return false;
+            }
+            long address;
+            while (SlabAllocator.NULL == (address = offHeap.allocate(bytes.length))) {
+                if (null == eviction || !eviction.evictNext(this::evict)) {
+                    return false;
+                }
+            }
+            offHeap.write(address, bytes);
+            node.serializedValue = null;
+            node.length = bytes.length;
+            node.address = address;
+            return true;
+        }
+
+        /**
+         * Free the off-heap memory of a node which left the map.
+         */
+        private void release(Node<K, V> node) {
+            long address = node.address;
+            if (null != offHeap && SlabAllocator.NULL != address) {
+                node.address = SlabAllocator.NULL; // readers copying the value see it was freed
+                offHeap.free(address, node.length);
+            }
+        }
+
+        private void schedule(Node<K, V> node) {
+            node.expiryTime = node.currentExpiryTime();
+            timerWheel.schedule(node);
+            hasExpiringNodes = true;
+        }
+
+        /**
+         * Clean up cache and timer wheel w.r.t ttl.
+         */
+        private void doCleanup(long now) {
+            if (timerWheel.size() > 0) {
+                CacheEvents.ExpirySweep event = new CacheEvents.ExpirySweep();
+                event.begin();
+                expirations = 0;
+                timerWheel.advance(now, node -> {
+                    if (node.isExpired(now)) {
+                        removeNode(node, RemovalCause.EXPIRED);
+                        expirations++;
+                    } else { // renewed by a read, schedule it again with the new expiry time
+                        schedule(node);
+                    }
+                });
+                if (expirations > 0) { // most advances find nothing due
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.cache = cacheName();
+                        event.expired = expirations;
+                        event.commit();
+                    }
+                }
+            }
+            cleanupTime = now;
+            hasExpiringNodes = timerWheel.size() > 0;
         }
     }
 
@@ -253,8 +1324,27 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
     public static final class CacheBuilder<K, V> {
         private int initialCapacity = -1;
         private long maximumSize = -1;
+        private long maximumWeight = -1;
+        private Weigher<?, ?> weigher;
+        private long refreshAfterWriteNanos = 0;
+        private RemovalListener<?, ?> removalListener;
+        private Path snapshotPath;
+        private Serializer<?> snapshotKeySerializer;
+        private Serializer<?> snapshotValueSerializer;
+        private int concurrencyLevel = 1;
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
         private long defaultExpiryAfter = 0;
         private TemporalUnit defaultExpiryUnit;
+        private Executor executor = ForkJoinPool.commonPool();
+        private long maximumOffHeapBytes = -1;
+        private Serializer<?> serializer;
+        private boolean recordStats;
+        private String mbeanName;
+        private int hotKeyCapacity;
+        private double hotKeySampleRate;
+        private Path overflowDirectory;
+        private long maximumOverflowBytes = -1;
+        private Serializer<?> overflowSerializer;
 
         /**
          * Sets the minimum total size for the internal hash tables.
@@ -282,10 +1372,79 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
             if (maximumSize <= 0) {
                 throw new IllegalArgumentException("maximumSize should be greater than zero");
             }
+            if (maximumWeight > 0) {
+                throw new IllegalStateException("maximumWeight was already set");
+            }
             this.maximumSize = maximumSize;
             return this;
         }
 
+        /**
+         * Sets the maximum total weight of the entries, as computed by the {@link #weigher(Weigher)}, instead of a
+         * {@code maximumSize}. Like the size the weight is split over the segments. An entry heavier than the share
+         * of its segment is evicted right away, an entry heavier than the admission window of
+         * {@link EvictionPolicy#WINDOW_TINY_LFU} skips the window.
+         *
+         * @param maximumWeight the maximum weight
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code maximumWeight} is zero or negative
+         * @throws IllegalStateException    if a {@code maximumSize} was already set
+         */
+        public CacheBuilder<K, V> maximumWeight(long maximumWeight)
+                throws IllegalArgumentException, IllegalStateException {
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("maximumWeight should be greater than zero");
+            }
+            if (maximumSize > 0) {
+                throw new IllegalStateException("maximumSize was already set");
+            }
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * Sets the weigher of the entries, used with a {@code maximumWeight}. Without one every entry weighs 1.
+         *
+         * @param weigher the weigher
+         * @param <K1>    the key type
+         * @param <V1>    the value type
+         * @return {@code this} instance to support method chaining
+         */
+        @SuppressWarnings("unchecked")
+        public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> weigher(Weigher<? super K1, ? super V1> weigher) {
+            this.weigher = Objects.requireNonNull(weigher);
+            return (CacheBuilder<K1, V1>) this;
+        }
+
+        /**
+         * Sets the policy choosing the entry to evict once the {@code maximumSize} is reached, defaults to
+         * {@link EvictionPolicy#LRU}.
+         *
+         * @param evictionPolicy the eviction policy
+         * @return {@code this} instance to support method chaining
+         */
+        public CacheBuilder<K, V> evictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = Objects.requireNonNull(evictionPolicy);
+            return this;
+        }
+
+        /**
+         * Sets the number of segments the cache is split into, rounded up to a power of two. Writes to keys of
+         * different segments do not block each other. With a {@code maximumSize} every segment evicts on its own
+         * share of it, so the LRU order is kept per segment. Defaults to 1, which keeps a single LRU order.
+         *
+         * @param concurrencyLevel the estimated number of concurrently writing threads
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code concurrencyLevel} is zero or negative
+         */
+        public CacheBuilder<K, V> concurrencyLevel(int concurrencyLevel) throws IllegalArgumentException {
+            if (concurrencyLevel <= 0) {
+                throw new IllegalArgumentException("concurrencyLevel should be greater than zero");
+            }
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
         /**
          * Sets the default time-to-live, in the given unit, for all keys in this cache.
          *
@@ -303,6 +1462,182 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
             return this;
         }
 
+        /**
+         * Sets the time after a write of an entry at which its next read reloads the value with the value loader on
+         * the configured executor. The old value is served until the new one is stored, so readers of hot keys do
+         * not wait for the loader. A failed reload is logged and counted as a load failure, the old value stays and
+         * a later read tries again. Expiry stays the upper bound: an expired value is never served, even while its
+         * reload runs. Only used if the cache is built with a value loader.
+         *
+         * @param refreshAfter the time after a write
+         * @param refreshUnit  the temporal unit of the refresh amount
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code refreshAfter} is zero or negative
+         */
+        public CacheBuilder<K, V> refreshAfterWrite(long refreshAfter, TemporalUnit refreshUnit)
+                throws IllegalArgumentException {
+            if (refreshAfter <= 0) {
+                throw new IllegalArgumentException("value for refreshAfter should be greater than zero");
+            }
+            this.refreshAfterWriteNanos = saturatedMultiply(refreshAfter, refreshUnit.getDuration().toNanos());
+            return this;
+        }
+
+        /**
+         * Sets the executor running asynchronous loads, refreshes, removal notifications and restores, defaults to {@link ForkJoinPool#commonPool()}.
+         *
+         * @param executor the executor
+         * @return {@code this} instance to support method chaining
+         */
+        public CacheBuilder<K, V> executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Runs the asynchronous loads and refreshes each on a thread of its own, a virtual thread on Java 21 and later,
+         * so many loads waiting on a slow backend do not hold up each other. See {@link LoaderExecutors}.
+         *
+         * @return {@code this} instance to support method chaining
+         */
+        public CacheBuilder<K, V> threadPerLoad() {
+            return executor(LoaderExecutors.threadPerLoad());
+        }
+
+        /**
+         * Stores the values serialized in direct memory of at most the given size, split over the segments, instead of
+         * on the heap. Only the keys and a small index stay on the heap, so the number of cached values does not add to
+         * garbage collection pauses, but every read deserializes its value. A bounded cache evicts entries until the
+         * memory they free fits a new value. An unbounded cache does not cache a value which does not fit in the memory
+         * left, so bound the number of entries with a {@code maximumSize} or a ttl. A value larger than the memory of a
+         * segment is never cached, its put leaves the present value in place. The JVM must allow that much direct
+         * memory, see {@code -XX:MaxDirectMemorySize}.
+         *
+         * @param maximumBytes the maximum number of bytes of direct memory
+         * @param serializer   the serializer of the values
+         * @param <V1>         the value type
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code maximumBytes} is zero or negative
+         */
+        @SuppressWarnings("unchecked")
+        public <V1 extends V> CacheBuilder<K, V1> offHeap(long maximumBytes, Serializer<V1> serializer)
+                throws IllegalArgumentException {
+            if (maximumBytes <= 0) {
+                throw new IllegalArgumentException("maximumBytes should be greater than zero");
+            }
+            this.maximumOffHeapBytes = maximumBytes;
+            this.serializer = Objects.requireNonNull(serializer);
+            return (CacheBuilder<K, V1>) this;
+        }
+
+        /**
+         * Spills the entries evicted for size into memory-mapped files of at most the given size in the directory,
+         * see {@link DiskOverflow}. A miss on a spilled key promotes it back from disk instead of loading it again.
+         * Writes and removals drop the spilled entry of their key. Compactions run on the configured executor.
+         *
+         * @param directory    the directory of the segment files
+         * @param maximumBytes the maximum number of bytes of all segment files
+         * @param serializer   the serializer of the values
+         * @param <V1>         the value type
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code maximumBytes} is zero or negative
+         */
+        @SuppressWarnings("unchecked")
+        public <V1 extends V> CacheBuilder<K, V1> overflowTo(Path directory, long maximumBytes,
+                                                             Serializer<V1> serializer)
+                throws IllegalArgumentException {
+            if (maximumBytes <= 0) {
+                throw new IllegalArgumentException("maximumBytes should be greater than zero");
+            }
+            this.overflowDirectory = Objects.requireNonNull(directory);
+            this.maximumOverflowBytes = maximumBytes;
+            this.overflowSerializer = Objects.requireNonNull(serializer);
+            return (CacheBuilder<K, V1>) this;
+        }
+
+        /**
+         * Sets the listener notified of every entry leaving the cache, with the cause of its removal. Notifications
+         * are queued and delivered in order on the configured executor, so the listener never runs under a lock of
+         * the cache.
+         *
+         * @param removalListener the removal listener
+         * @param <K1>            the key type
+         * @param <V1>            the value type
+         * @return {@code this} instance to support method chaining
+         */
+        @SuppressWarnings("unchecked")
+        public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> removalListener(
+                RemovalListener<? super K1, ? super V1> removalListener) {
+            this.removalListener = Objects.requireNonNull(removalListener);
+            return (CacheBuilder<K1, V1>) this;
+        }
+
+        /**
+         * Puts the entries of a snapshot written by {@link InMemoryCache#snapshotTo(Path, Serializer, Serializer)}
+         * into the cache when it is built, with their remaining ttl. Entries which expired since the snapshot was
+         * taken are skipped. The blocks of the snapshot are read and deserialized in parallel on the configured
+         * executor. A missing snapshot builds an empty cache, a broken one is logged and keeps the entries restored
+         * so far.
+         *
+         * @param path            the snapshot file
+         * @param keySerializer   the serializer of the keys
+         * @param valueSerializer the serializer of the values
+         * @param <K1>            the key type
+         * @param <V1>            the value type
+         * @return {@code this} instance to support method chaining
+         */
+        @SuppressWarnings("unchecked")
+        public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> restoreFrom(Path path, Serializer<K1> keySerializer,
+                                                                             Serializer<V1> valueSerializer) {
+            this.snapshotPath = Objects.requireNonNull(path);
+            this.snapshotKeySerializer = Objects.requireNonNull(keySerializer);
+            this.snapshotValueSerializer = Objects.requireNonNull(valueSerializer);
+            return (CacheBuilder<K1, V1>) this;
+        }
+
+        /**
+         * Enables recording the statistics returned by {@link InMemoryCache#stats()}. Counters are striped, so
+         * recording adds no contention between threads.
+         *
+         * @return {@code this} instance to support method chaining
+         */
+        public CacheBuilder<K, V> recordStats() {
+            this.recordStats = true;
+            return this;
+        }
+
+        /**
+         * Registers the cache with the platform MBean server as a {@link CacheMXBean}, see {@link CacheMBeans}. The
+         * name also names the cache in its flight recorder events. {@link InMemoryCache#close()} unregisters it.
+         *
+         * @param name the name of the cache, unique among the registered caches
+         * @return {@code this} instance to support method chaining
+         */
+        public CacheBuilder<K, V> registerMBean(String name) {
+            this.mbeanName = Objects.requireNonNull(name);
+            return this;
+        }
+
+        /**
+         * Tracks the most read keys with a {@link HotKeyTracker}, queried with {@link InMemoryCache#hotKeys()}.
+         *
+         * @param capacity   the number of keys tracked
+         * @param sampleRate the fraction of the reads counted, 1 counts all
+         * @return {@code this} instance to support method chaining
+         * @throws IllegalArgumentException if {@code capacity} is zero or negative or {@code sampleRate} not in (0, 1]
+         */
+        public CacheBuilder<K, V> trackHotKeys(int capacity, double sampleRate) throws IllegalArgumentException {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity should be greater than zero");
+            }
+            if (!(sampleRate > 0 && sampleRate <= 1)) {
+                throw new IllegalArgumentException("sampleRate should be greater than zero and at most one");
+            }
+            this.hotKeyCapacity = capacity;
+            this.hotKeySampleRate = sampleRate;
+            return this;
+        }
+
         /**
          * Build a new instance of the {@link InMemoryCache}.
          *
@@ -323,21 +1658,75 @@ public class InMemoryCache<K, V> implements Cache<K, V> {
          * @return a new instance of the cache
          */
         public <K1 extends K, V1 extends V> InMemoryCache<K1, V1> build(Function<K1, V1> valueLoader) {
-            initialCapacity = Math.max(initialCapacity, 0);
-            Map<K1, SoftReference<V1>> cacheMap;
-            if (maximumSize > 0) {
-                // LinkedHashMap as LRU map which uses access order instead of insertion order
-                cacheMap = new LinkedHashMap<>(initialCapacity, 0.75f, true) {
-                    @Override
-                    protected boolean removeEldestEntry(Map.Entry<K1, SoftReference<V1>> eldest) {
-                        // remove the eldest entry when map size exceeds the maximum allowed limit
-                        return size() > maximumSize;
-                    }
-                };
-            } else {
-                cacheMap = new HashMap<>(initialCapacity);
+            return new InMemoryCache<>(this, valueLoader, null);
+        }
+
+        /**
+         * Build a new instance of the {@link InMemoryCache} with all configured parameters, value loader and bulk
+         * loader. {@link InMemoryCache#getAll(Iterable)} loads all its misses with one call of the bulk loader, which
+         * also loads single misses if no value loader is given.
+         *
+         * @param valueLoader the value loader, can be {@code null}
+         * @param bulkLoader  the bulk loader, returning the values of the keys it found
+         * @param <K1>        the key type
+         * @param <V1>        the value type
+         * @return a new instance of the cache
+         */
+        public <K1 extends K, V1 extends V> InMemoryCache<K1, V1> build(Function<K1, V1> valueLoader,
+                                                                        Function<Set<K1>, Map<K1, V1>> bulkLoader) {
+            return new InMemoryCache<>(this, valueLoader, Objects.requireNonNull(bulkLoader));
+        }
+
+        /**
+         * Build a new instance of the {@link AsyncInMemoryCache} with all configured parameters, which loads missing
+         * values with the given asynchronous loader on the configured executor.
+         *
+         * @param asyncLoader the asynchronous value loader
+         * @param <K1>        the key type
+         * @param <V1>        the value type
+         * @return a new instance of the cache
+         */
+        public <K1 extends K, V1 extends V> AsyncInMemoryCache<K1, V1> buildAsync(
+                Function<K1, CompletableFuture<V1>> asyncLoader) {
+            Objects.requireNonNull(asyncLoader);
+            return new AsyncInMemoryCache<>(build(), asyncLoader, executor);
+        }
+
+        /**
+         * Build a new instance of the {@link ShardedCache}, partitioning the keys over {@code concurrencyLevel}
+         * segments created by the factory. The {@code maximumSize} is split over the segments, a segment gets its
+         * share as the capacity argument. The other parameters do not apply, the factory configures the segments.
+         * <pre>
+         * InMemoryCache.builder().maximumSize(10_000).concurrencyLevel(8)
+         *         .buildSharded(InMemoryCacheWithLFUEviction::new);
+         * </pre>
+         *
+         * @param segmentFactory creates a segment holding the given number of entries, like the constructor of a
+         *                       cache of the wanted policy
+         * @param <K1>           the key type
+         * @param <V1>           the value type
+         * @return a new instance of the cache
+         * @throws IllegalStateException if no {@code maximumSize} was set or it exceeds {@link Integer#MAX_VALUE}
+         */
+        public <K1 extends K, V1 extends V> ShardedCache<K1, V1> buildSharded(
+                IntFunction<? extends Cache<K1, V1>> segmentFactory) {
+            if (maximumSize <= 0 || maximumSize > Integer.MAX_VALUE) {
+                throw new IllegalStateException("maximumSize should be set and at most " + Integer.MAX_VALUE);
+            }
+            return new ShardedCache<>(segmentCount(), (int) maximumSize, segmentFactory);
+        }
+
+        private int segmentCount() {
+            int segmentCount = 1;
+            while (segmentCount < concurrencyLevel && segmentCount < MAX_SEGMENTS) {
+                segmentCount <<= 1;
+            }
+            // every segment should be able to hold at least one entry
+            long maximum = Math.max(maximumSize, maximumWeight);
+            while (maximum > 0 && segmentCount > maximum) {
+                segmentCount >>= 1;
             }
-            return new InMemoryCache<>(cacheMap, valueLoader, defaultExpiryAfter, defaultExpiryUnit);
+            return segmentCount;
         }
     }
 }
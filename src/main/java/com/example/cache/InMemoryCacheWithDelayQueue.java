@@ -1,42 +1,48 @@
 package com.example.cache;
 
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
-
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
-import java.util.Optional;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * InMemory cache without cache eviction policy.
+ * Expiring keys are kept in a {@link TimerWheel}, swept by the shared {@link MaintenanceScheduler}.
+ * Removals can be delivered to a {@link RemovalListener}.
  * @author vishnu.g
  */
 public class InMemoryCacheWithDelayQueue<K, V> implements Cache<K, V>, Serializable {
     private static final long serialVersionUID = -162114643488955218L;
 
-    private final ConcurrentHashMap<K, SoftReference<Object>> cache = new ConcurrentHashMap<>();
-    private final DelayQueue<DelayedCacheObject> cleaningUpQueue = new DelayQueue<>();
+    private final ConcurrentHashMap<K, CacheEntry<K>> cache = new ConcurrentHashMap<>();
+    private final transient TimerWheel<CacheEntry<K>> timerWheel = new TimerWheel<>(System.nanoTime());
+    // guards the timer wheel, the map itself is read without locking
+    private final ReentrantLock lock = new ReentrantLock();
     private transient int maxSize;
     private static final int DEFAULT_TTL = 1000;
+    // in milliseconds
+    private static final long CLEANUP_INTERVAL = 10;
+    // Runs the cleanup, cancelled on close.
+    private final transient MaintenanceScheduler.Registration maintenance;
+
+    // Delivers the removals to the listener, null if none.
+    private final transient RemovalNotifier<K, V> notifier;
 
     public InMemoryCacheWithDelayQueue() {
-        Thread cleanerThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    DelayedCacheObject delayedCacheObject = cleaningUpQueue.take();
-                    cache.remove(delayedCacheObject.getKey(), delayedCacheObject.getReference());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        });
-        cleanerThread.setDaemon(true);
-        cleanerThread.start();
+        this(null, null);
+    }
+
+    /**
+     * @param removalListener the listener of removed entries, {@code null} for none
+     * @param executor        the executor delivering the removals to the listener
+     */
+    public InMemoryCacheWithDelayQueue(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+        this.notifier = (null != removalListener) ? new RemovalNotifier<>(removalListener, executor) : null;
+        this.maintenance = MaintenanceScheduler.SHARED.register(this, InMemoryCacheWithDelayQueue::cleanup,
+                CLEANUP_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -45,12 +51,21 @@ public class InMemoryCacheWithDelayQueue<K, V> implements Cache<K, V>, Serializa
             return;
         }
         if (value == null) {
-            this.cache.remove(key);
+            remove(key);
         } else {
-            long expiryTime = System.currentTimeMillis() + periodInMillis;
-            SoftReference<Object> reference = new SoftReference<>(value);
-            this.cache.put(key, reference);
-            cleaningUpQueue.put(new DelayedCacheObject(key, reference, expiryTime));
+            long expiryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodInMillis);
+            CacheEntry<K> entry = new CacheEntry<>(key, new SoftReference<>(value), expiryTime);
+            lock.lock();
+            try {
+                CacheEntry<K> old = this.cache.put(key, entry);
+                if (null != old) {
+                    timerWheel.cancel(old);
+                    notifyRemoval(old, RemovalCause.REPLACED);
+                }
+                timerWheel.schedule(entry);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -61,17 +76,77 @@ public class InMemoryCacheWithDelayQueue<K, V> implements Cache<K, V>, Serializa
 
     @Override
     public V remove(K key) {
-        return (V) this.cache.remove(key).get();
+        lock.lock();
+        try {
+            CacheEntry<K> entry = this.cache.remove(key);
+            if (null == entry) {
+                return null;
+            }
+            timerWheel.cancel(entry);
+            notifyRemoval(entry, RemovalCause.EXPLICIT);
+            return (V) entry.reference.get();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public V get(K key) {
-        return (V) Optional.ofNullable(this.cache.get(key)).map(SoftReference::get).orElse(null);
+        CacheEntry<K> entry = this.cache.get(key);
+        // the wheel sweeps with a resolution of a few milliseconds, so check the expiry time as well
+        if (null == entry || entry.isExpired(System.nanoTime())) {
+            return null;
+        }
+        return (V) entry.reference.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock of the timer wheel once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        lock.lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock of the timer wheel once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            Cache.super.invalidateAll(keys);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void clear() {
-        this.cache.clear();
+        lock.lock();
+        try {
+            for (CacheEntry<K> entry : this.cache.values()) {
+                notifyRemoval(entry, RemovalCause.EXPLICIT);
+            }
+            this.cache.clear();
+            timerWheel.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        maintenance.cancel();
     }
 
     @Override
@@ -81,6 +156,7 @@ public class InMemoryCacheWithDelayQueue<K, V> implements Cache<K, V>, Serializa
 
     @Override
     public long size() {
+        cleanup();
         return cache.size();
     }
 
@@ -89,24 +165,38 @@ public class InMemoryCacheWithDelayQueue<K, V> implements Cache<K, V>, Serializa
         return 0;
     }
 
-    @AllArgsConstructor
-    @EqualsAndHashCode
-    private static class DelayedCacheObject<K> implements Delayed {
+    private void cleanup() {
+        lock.lock();
+        try {
+            timerWheel.advance(System.nanoTime(), entry -> {
+                if (cache.remove(entry.key, entry)) {
+                    notifyRemoval(entry, RemovalCause.EXPIRED);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void notifyRemoval(CacheEntry<K> entry, RemovalCause cause) {
+        if (null != notifier) {
+            notifier.notify(entry.key, (V) entry.reference.get(), cause);
+        }
+    }
+
+    private static class CacheEntry<K> extends TimerWheel.Node {
 
-        @Getter
         private final K key;
-        @Getter
         private final SoftReference<Object> reference;
-        private final long expiryTime;
 
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return unit.convert(expiryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        private CacheEntry(K key, SoftReference<Object> reference, long expiryTime) {
+            super(expiryTime);
+            this.key = key;
+            this.reference = reference;
         }
 
-        @Override
-        public int compareTo(Delayed o) {
-            return Long.compare(expiryTime, ((DelayedCacheObject) o).expiryTime);
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
         }
     }
 }
@@ -1,55 +1,47 @@
 package com.example.cache;
 
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
-
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * Expiring keys are kept in a {@link TimerWheel}, swept by the shared {@link MaintenanceScheduler}.
  * @author vishnu.g
  */
-public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serializable {
+public class InMemoryCacheWithFIFOEviction<K, V> implements Cache<K, V>, Serializable {
 
     private static final long serialVersionUID = -162114643488955218L;
 
     protected static final int DEFAULT_MAX_SIZE = 100;
     // in milliseconds
     private static final int DEFAULT_TTL = 1000;
+    // in milliseconds
+    private static final long CLEANUP_INTERVAL = 10;
+    // Runs the cleanup, cancelled on close.
+    private final transient MaintenanceScheduler.Registration maintenance;
     private final transient int initialCapacity;
 
-    private final LinkedHashMap<K, SoftReference<Object>> cache;
-    private final DelayQueue<DelayedCacheObject> cleaningUpQueue = new DelayQueue<>();
+    private final LinkedHashMap<K, CacheEntry<K>> cache;
+    private final transient TimerWheel<CacheEntry<K>> timerWheel = new TimerWheel<>(System.nanoTime());
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 
     public InMemoryCacheWithFIFOEviction(int capacity) {
         this.initialCapacity = capacity;
-        cache = new LinkedHashMap<K, SoftReference<Object>>(capacity, 0.75f, false) {
-            protected boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > capacity;
-            }
-        };
-        Thread cleanerThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    DelayedCacheObject delayedCacheObject = cleaningUpQueue.take();
-                    cache.remove(delayedCacheObject.getKey(), delayedCacheObject.getReference());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+        cache = new LinkedHashMap<K, CacheEntry<K>>(capacity, 0.75f, false) {
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<K>> eldest) {
+                if (size() > capacity) {
+                    timerWheel.cancel(eldest.getValue());
+                    return true;
                 }
+                return false;
             }
-        });
-        cleanerThread.setDaemon(true);
-        cleanerThread.start();
+        };
+        this.maintenance = MaintenanceScheduler.SHARED.register(this, InMemoryCacheWithFIFOEviction::cleanup,
+                CLEANUP_INTERVAL, TimeUnit.MILLISECONDS);
 
     }
 
@@ -65,12 +57,15 @@ public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serial
         readWriteLock.writeLock().lock();
         try {
             if (value == null) {
-                cache.remove(key);
+                removeEntry(key);
             } else {
-                long expiryTime = System.currentTimeMillis() + periodInMillis;
-                SoftReference<Object> reference = new SoftReference<>(value);
-                cache.put(key, reference);
-                cleaningUpQueue.put(new DelayedCacheObject(key, reference, expiryTime));
+                long expiryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodInMillis);
+                CacheEntry<K> entry = new CacheEntry<>(key, new SoftReference<>(value), expiryTime);
+                CacheEntry<K> old = cache.put(key, entry);
+                if (null != old) {
+                    timerWheel.cancel(old);
+                }
+                timerWheel.schedule(entry);
             }
         } finally {
             readWriteLock.writeLock().unlock();
@@ -87,7 +82,8 @@ public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serial
     public V remove(K key) {
         readWriteLock.writeLock().lock();
         try {
-            return (V) this.cache.remove(key).get();
+            CacheEntry<K> entry = removeEntry(key);
+            return (null != entry) ? (V) entry.reference.get() : null;
         } finally {
             readWriteLock.writeLock().unlock();
         }
@@ -97,24 +93,79 @@ public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serial
     public V get(K key) {
         readWriteLock.readLock().lock();
         try {
-            return (V) Optional.ofNullable(cache.get(key)).map(SoftReference::get).orElse(null);
+            CacheEntry<K> entry = cache.get(key);
+            // the wheel sweeps with a resolution of a few milliseconds, so check the expiry time as well
+            if (null == entry || entry.isExpired(System.nanoTime())) {
+                return null;
+            }
+            return (V) entry.reference.get();
             // need to renew. now for simplicity key is not renewed.
         } finally {
             readWriteLock.readLock().unlock();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the read lock once for all keys.
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        readWriteLock.readLock().lock();
+        try {
+            return Cache.super.getAll(keys);
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the write lock once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        readWriteLock.writeLock().lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the write lock once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        readWriteLock.writeLock().lock();
+        try {
+            Cache.super.invalidateAll(keys);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
     @Override
     public void clear() {
         readWriteLock.writeLock().lock();
         try {
             cache.clear();
-            cleaningUpQueue.clear();
+            timerWheel.clear();
         } finally {
             readWriteLock.writeLock().unlock();
         }
     }
 
+    @Override
+    public void close() {
+        maintenance.cancel();
+    }
+
     @Override
     public boolean isEmpty() {
         return this.cache.isEmpty();
@@ -122,6 +173,7 @@ public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serial
 
     @Override
     public long size() {
+        cleanup();
         return this.cache.size();
     }
 
@@ -130,24 +182,36 @@ public class InMemoryCacheWithFIFOEviction <K, V> implements Cache<K, V>, Serial
         return this.initialCapacity;
     }
 
-    @AllArgsConstructor
-    @EqualsAndHashCode
-    private static class DelayedCacheObject<K> implements Delayed {
+    private CacheEntry<K> removeEntry(K key) {
+        CacheEntry<K> entry = cache.remove(key);
+        if (null != entry) {
+            timerWheel.cancel(entry);
+        }
+        return entry;
+    }
+
+    private void cleanup() {
+        readWriteLock.writeLock().lock();
+        try {
+            timerWheel.advance(System.nanoTime(), entry -> cache.remove(entry.key, entry));
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private static class CacheEntry<K> extends TimerWheel.Node {
 
-        @Getter
         private final K key;
-        @Getter
         private final SoftReference<Object> reference;
-        private final long expiryTime;
 
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return unit.convert(expiryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        private CacheEntry(K key, SoftReference<Object> reference, long expiryTime) {
+            super(expiryTime);
+            this.key = key;
+            this.reference = reference;
         }
 
-        @Override
-        public int compareTo(Delayed o) {
-            return Long.compare(expiryTime, ((DelayedCacheObject) o).expiryTime);
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
         }
     }
 }
@@ -2,14 +2,33 @@ package com.example.cache;
 
 import lombok.Getter;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * LFU cache with constant time eviction.
+ * <p>
+ * Entries are kept in a list of frequency buckets ordered by ascending frequency, each bucket holding its entries
+ * in the order they reached that frequency. A hit moves the entry to the next bucket and eviction takes the oldest
+ * entry of the first bucket, both in O(1). After {@code 10 * capacity} hits all frequencies are halved, so keys
+ * which were hot a long time ago do not pin the cache forever.
+ * <p>
+ * An entry found expired on access is removed. The cleanup removes the others by sampling random entries with an
+ * {@link ExpirySampler} instead of scanning the whole map, so its pauses stay short however large the cache is.
+ * <p>
+ * Entries evicted for size can spill into a {@link DiskOverflow} tier, which a miss promotes them back from. The
+ * entries and their frequencies can be written to a snapshot and restored from it after a restart, the maps of the
+ * cache are not serializable.
+ *
  * @author vishnu.g
  */
 public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializable {
@@ -19,10 +38,28 @@ public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializ
     protected static final int DEFAULT_MAX_SIZE = 100;
     // in milliseconds
     private static final int DEFAULT_TTL = 1000;
+    // ttl of restored entries which never expire, in milliseconds, small enough to add the access time to
+    private static final long NEVER = Long.MAX_VALUE >>> 1;
+    // frequencies are halved after this many hits per entry the cache can hold
+    private static final int AGING_FACTOR = 10;
     private final transient int initialCapacity;
 
-    private final LinkedHashMap<K, CacheEntry<V>> cache;
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final HashMap<K, CacheEntry> cache;
+    // the entries again, to sample them for expiry
+    private final transient ExpirySampler<CacheEntry> expirySampler = new ExpirySampler<>();
+    // sentinel of the circular list of frequency buckets
+    private final transient FrequencyBucket buckets = new FrequencyBucket(-1);
+    // a hit changes the bucket of the entry, so every access is done holding this lock
+    private final MonitoredLock lock = new MonitoredLock(
+            "InMemoryCacheWithLFUEviction@" + Integer.toHexString(System.identityHashCode(this)));
+    private final long agingPeriod;
+    private long hitCount;
+    // Tier the evicted entries spill into, null if none.
+    private final transient DiskOverflow<K, V> overflow;
+    // Runs the cleanup, null if there is none.
+    private final transient MaintenanceScheduler.Registration maintenance;
+    // Counts the most read keys, null unless tracking them.
+    private final transient HotKeyTracker<K> hotKeyTracker;
 
     /**
      * Clean up interval is multiple of 1sec, by default is 1 sec.
@@ -46,28 +83,36 @@ public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializ
      * @param initialCapacity
      */
     public InMemoryCacheWithLFUEviction(final long timerInterval, int initialCapacity) {
+        this(timerInterval, initialCapacity, null);
+    }
 
-        this.initialCapacity = initialCapacity;
-        cache = new LinkedHashMap<>(initialCapacity);
-
-        if (timerInterval > 0) {
-
-            Thread t = new Thread(new Runnable() {
-                public void run() {
-                    while (true) {
-                        try {
-                            Thread.sleep(timerInterval * 1000);
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                        cleanup();
-                    }
-                }
-            });
+    /**
+     * Clean up interval is multiple of 1sec
+     * @param initialCapacity
+     * @param overflow the tier evicted entries spill into, {@code null} for none
+     */
+    public InMemoryCacheWithLFUEviction(final long timerInterval, int initialCapacity, DiskOverflow<K, V> overflow) {
+        this(timerInterval, initialCapacity, overflow, null);
+    }
 
-            t.setDaemon(true);
-            t.start();
-        }
+    /**
+     * Clean up interval is multiple of 1sec
+     * @param initialCapacity
+     * @param overflow the tier evicted entries spill into, {@code null} for none
+     * @param hotKeyTracker counts the reads, queried with {@link #hotKeys()}, {@code null} for none
+     */
+    public InMemoryCacheWithLFUEviction(final long timerInterval, int initialCapacity, DiskOverflow<K, V> overflow,
+                                        HotKeyTracker<K> hotKeyTracker) {
+
+        this.initialCapacity = initialCapacity;
+        this.overflow = overflow;
+        this.hotKeyTracker = hotKeyTracker;
+        this.agingPeriod = Math.max((long) initialCapacity * AGING_FACTOR, 16L);
+        cache = new HashMap<>(initialCapacity);
+
+        // cleaned up every timerInterval seconds by the shared scheduler, never if zero
+        this.maintenance = (timerInterval > 0) ? MaintenanceScheduler.SHARED.register(this,
+                InMemoryCacheWithLFUEviction::cleanup, timerInterval, TimeUnit.SECONDS) : null;
     }
 
     @Override
@@ -75,21 +120,33 @@ public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializ
         if (null == key) {
             return;
         }
-        readWriteLock.writeLock().lock();
+        lock.lock();
         try {
             if (null == value) {
-                this.cache.remove(key);
+                removeEntry(key);
                 return;
             }
-            if (isFull()) {
-                K entryKeyToBeRemoved = getLFUKey();
-                cache.remove(entryKeyToBeRemoved);
+            if (null != overflow) { // the new value supersedes the one on disk
+                overflow.invalidate(key);
+            }
+            CacheEntry entry = this.cache.get(key);
+            if (null != entry) { // an update counts as an access and keeps the frequency
+                entry.value = value;
+                entry.timeToLive = ttl;
+                entry.lastAccessed = System.currentTimeMillis();
+                recordHit(entry);
+                return;
             }
-            CacheEntry entry = new CacheEntry(value, ttl);
+            if (isFull() && !cache.isEmpty()) { // a capacity of zero holds one entry, as it always did
+                spill(removeEntry(buckets.next.head.key));
+            }
+            entry = new CacheEntry(key, value, ttl);
             cache.put(key, entry);
+            expirySampler.add(entry);
+            addToBucket(entry, firstBucket(0));
 
         } finally {
-            readWriteLock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -100,34 +157,108 @@ public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializ
 
     @Override
     public V remove(K key) {
-        readWriteLock.writeLock().lock();
+        lock.lock();
         try {
-            return this.cache.remove(key).getValue();
+            DiskOverflow.Entry<V> spilled = (null != overflow) ? overflow.take(key) : null;
+            CacheEntry entry = removeEntry(key);
+            return (null != entry) ? entry.getValue() : (null != spilled) ? spilled.value : null;
         } finally {
-            readWriteLock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
     @Override
     public V get(K key) {
-        readWriteLock.readLock().lock();
+        if (null != hotKeyTracker) { // before the lock, the tracker never waits
+            hotKeyTracker.record(key);
+        }
+        lock.lock();
         try {
-            if (this.cache.containsKey(key))  // cache hit
+            CacheEntry entry = this.cache.get(key);
+            if (null != entry && entry.isExpired(System.currentTimeMillis())) { // expire lazily
+                removeEntry(key);
+                entry = null;
+            }
+            if (null != entry)  // cache hit
             {
-                CacheEntry entry = this.cache.get(key);
-                entry.frequency++;
-                this.cache.put(key, entry);
-                return (V) entry.getValue();
+                recordHit(entry);
+                return entry.getValue();
+            }
+            if (null != overflow) {
+                return promote(key);
             }
         } finally {
-            readWriteLock.readLock().unlock();
+            lock.unlock();
         }
         return null; // cache miss
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            return Cache.super.getAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        lock.lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            Cache.super.invalidateAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void clear() {
-        this.cache.clear();
+        lock.lock();
+        try {
+            this.cache.clear();
+            expirySampler.clear();
+            buckets.next = buckets;
+            buckets.previous = buckets;
+            if (null != overflow) {
+                overflow.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (null != maintenance) {
+            maintenance.cancel();
+        }
     }
 
     @Override
@@ -140,71 +271,320 @@ public class InMemoryCacheWithLFUEviction<K, V> implements Cache<K, V>, Serializ
         return this.cache.size();
     }
 
+    /**
+     * Get the most read keys with their estimated reads, hits and misses alike, to replicate or split the keys hot
+     * enough to make the lock of this cache a bottleneck.
+     *
+     * @return the most read keys, the most read first; empty if not tracking
+     */
+    public List<HotKeyTracker.HotKey<K>> hotKeys() {
+        return (null != hotKeyTracker) ? hotKeyTracker.hotKeys() : Collections.emptyList();
+    }
+
     @Override
     public int capacity() {
         return this.initialCapacity;
     }
 
-    private K getLFUKey() {
-        K key = null;
-        int minFreq = Integer.MAX_VALUE;
-
-        for (Map.Entry<K, CacheEntry<V>> entry : this.cache.entrySet()) {
-            if (minFreq > entry.getValue().getFrequency()) {
-                key = entry.getKey();
-                minFreq = entry.getValue().getFrequency();
+    /**
+     * Write the live entries to a snapshot file with their remaining ttl and frequency. The entries are copied
+     * holding the lock, they are serialized and written after releasing it. The snapshot replaces the file once
+     * complete.
+     *
+     * @param path            the snapshot file
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     * @throws IOException if the snapshot cannot be written, a previous snapshot is kept then
+     */
+    public void snapshotTo(Path path, Serializer<? super K> keySerializer, Serializer<? super V> valueSerializer)
+            throws IOException {
+        List<CacheEntry> entries;
+        int[] frequencies;
+        lock.lock();
+        try {
+            entries = new ArrayList<>(this.cache.values());
+            frequencies = new int[entries.size()];
+            for (int i = 0; i < frequencies.length; i++) {
+                frequencies[i] = entries.get(i).getFrequency();
+            }
+        } finally {
+            lock.unlock();
+        }
+        long now = System.currentTimeMillis();
+        try (Snapshot.Writer<K, V> writer = new Snapshot.Writer<>(path, keySerializer, valueSerializer)) {
+            for (int i = 0; i < frequencies.length; i++) {
+                CacheEntry entry = entries.get(i);
+                long remaining = entry.timeToLive + entry.lastAccessed - now;
+                if (remaining > 0) {
+                    writer.write(entry.key, entry.value, TimeUnit.MILLISECONDS.toNanos(entry.timeToLive),
+                            TimeUnit.MILLISECONDS.toNanos(remaining), frequencies[i]);
+                }
             }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Put the entries of a snapshot written by {@link #snapshotTo(Path, Serializer, Serializer)} which are not
+     * present, with their remaining ttl and frequency. Entries which expired since the snapshot are skipped. Once
+     * the cache is full an entry is only restored if it is used more often than the least frequent one, which it
+     * evicts. The blocks of the snapshot are deserialized in parallel on the {@link ForkJoinPool#commonPool()}.
+     *
+     * @param path            the snapshot file
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     * @throws IOException if the snapshot cannot be read, the entries restored so far stay
+     */
+    public void restoreFrom(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        if (!Files.exists(path)) { // nothing to warm up with, like on the first start
+            return;
         }
+        long now = System.currentTimeMillis();
+        Snapshot.read(path, keySerializer, valueSerializer, ForkJoinPool.commonPool(),
+                (key, value, expireAfterNanos, remainingNanos, frequency) -> {
+                    // a ttl of zero never expires, like in the InMemoryCache
+                    long ttl = (expireAfterNanos > 0) ? TimeUnit.NANOSECONDS.toMillis(expireAfterNanos) : NEVER;
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(expireAfterNanos - remainingNanos);
+                    restore(key, value, ttl, now - elapsed, frequency);
+                });
+    }
 
-        return key;
+    private void restore(K key, V value, long ttl, long lastAccessed, int frequency) {
+        lock.lock();
+        try {
+            if (this.cache.containsKey(key)) {
+                return;
+            }
+            if (isFull()) {
+                FrequencyBucket least = buckets.next;
+                if (least == buckets || least.frequency >= frequency) {
+                    return;
+                }
+                spill(removeEntry(least.head.key));
+            }
+            CacheEntry entry = new CacheEntry(key, value, ttl);
+            entry.lastAccessed = lastAccessed;
+            cache.put(key, entry);
+            expirySampler.add(entry);
+            addToBucket(entry, bucketOf(frequency));
+        } finally {
+            lock.unlock();
+        }
     }
 
     private boolean isFull() {
-        return this.cache.size() == initialCapacity;
+        return this.cache.size() >= initialCapacity;
     }
 
-    private void cleanup() {
+    /**
+     * Move the entry to the bucket of the next higher frequency and age the cache when the period is over.
+     */
+    private void recordHit(CacheEntry entry) {
+        FrequencyBucket current = entry.bucket;
+        FrequencyBucket next = current.next;
+        if (next == buckets || next.frequency != current.frequency + 1) {
+            next = insertBucketAfter(current, current.frequency + 1);
+        }
+        unlink(entry);
+        addToBucket(entry, next);
 
-        long now = System.currentTimeMillis();
-        ArrayList<K> deleteKey = null;
+        if (++hitCount >= agingPeriod) {
+            hitCount = 0;
+            age();
+        }
+    }
 
-        CacheEntry c = null;
-        synchronized (cache) {
-            deleteKey = new ArrayList<K>((this.cache.size() / 2) + 1);
-            for (Map.Entry<K, CacheEntry<V>> entry : this.cache.entrySet()) {
-                c = entry.getValue();
+    /**
+     * Halve the frequency of every bucket, merging buckets which end up with the same frequency.
+     * Buckets keep their order, so only the entries of merged buckets have to be touched.
+     */
+    private void age() {
+        FrequencyBucket bucket = buckets.next;
+        while (bucket != buckets) {
+            FrequencyBucket next = bucket.next;
+            bucket.frequency >>>= 1;
+            FrequencyBucket previous = bucket.previous;
+            if (previous != buckets && previous.frequency == bucket.frequency) {
+                for (CacheEntry entry = bucket.head; null != entry; entry = entry.next) {
+                    entry.bucket = previous;
+                }
+                previous.tail.next = bucket.head;
+                bucket.head.previous = previous.tail;
+                previous.tail = bucket.tail;
+                removeBucket(bucket);
+            }
+            bucket = next;
+        }
+    }
+
+    /**
+     * @return the bucket of the frequency, inserted in order if there is none
+     */
+    private FrequencyBucket bucketOf(int frequency) {
+        FrequencyBucket bucket = buckets.next;
+        while (bucket != buckets && bucket.frequency < frequency) {
+            bucket = bucket.next;
+        }
+        return (bucket != buckets && bucket.frequency == frequency) ? bucket
+                : insertBucketAfter(bucket.previous, frequency);
+    }
 
-                if (c != null && (now > (c.timeToLive + c.lastAccessed))) {
+    private FrequencyBucket firstBucket(int frequency) {
+        FrequencyBucket first = buckets.next;
+        return (first != buckets && first.frequency == frequency) ? first : insertBucketAfter(buckets, frequency);
+    }
 
-                    deleteKey.add(entry.getKey());
-                }
+    /**
+     * Take the entry of the key out of the disk tier and put it back with its remaining ttl.
+     */
+    private V promote(K key) {
+        DiskOverflow.Entry<V> spilled = overflow.take(key);
+        if (null == spilled) {
+            return null;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(spilled.expiryTime - System.nanoTime());
+        put(key, spilled.value, Math.max(remaining, 1L));
+        return spilled.value;
+    }
+
+    private void spill(CacheEntry entry) {
+        if (null != overflow && null != entry) {
+            long remaining = entry.timeToLive + entry.lastAccessed - System.currentTimeMillis();
+            if (remaining > 0) {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(remaining);
+                overflow.spill(entry.key, entry.value, System.nanoTime() + remainingNanos, remainingNanos);
             }
         }
+    }
+
+    private CacheEntry removeEntry(K key) {
+        if (null != overflow) {
+            overflow.invalidate(key);
+        }
+        CacheEntry entry = this.cache.remove(key);
+        if (null != entry) {
+            unlink(entry);
+            expirySampler.remove(entry);
+        }
+        return entry;
+    }
+
+    private void addToBucket(CacheEntry entry, FrequencyBucket bucket) {
+        entry.bucket = bucket;
+        entry.previous = bucket.tail;
+        entry.next = null;
+        if (null == bucket.tail) {
+            bucket.head = entry;
+        } else {
+            bucket.tail.next = entry;
+        }
+        bucket.tail = entry;
+    }
+
+    /**
+     * Unlink the entry from its bucket, the bucket is dropped once it is empty.
+     */
+    private void unlink(CacheEntry entry) {
+        FrequencyBucket bucket = entry.bucket;
+        if (null == entry.previous) {
+            bucket.head = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (null == entry.next) {
+            bucket.tail = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        if (null == bucket.head) {
+            removeBucket(bucket);
+        }
+    }
+
+    private FrequencyBucket insertBucketAfter(FrequencyBucket previous, int frequency) {
+        FrequencyBucket bucket = new FrequencyBucket(frequency);
+        bucket.previous = previous;
+        bucket.next = previous.next;
+        previous.next.previous = bucket;
+        previous.next = bucket;
+        return bucket;
+    }
 
-        for (K key : deleteKey) {
-            synchronized (cache) {
-                this.cache.remove(key);
+    private void removeBucket(FrequencyBucket bucket) {
+        bucket.previous.next = bucket.next;
+        bucket.next.previous = bucket.previous;
+    }
+
+    /**
+     * Remove expired entries by sampling, holding the lock for one round at a time.
+     */
+    private void cleanup() {
+        CacheEvents.ExpirySweep event = new CacheEvents.ExpirySweep();
+        event.begin();
+        long deadline = System.nanoTime() + ExpirySampler.TIME_BUDGET_NANOS;
+        boolean mostlyExpired;
+        int expired = 0;
+        do {
+            lock.lock();
+            try {
+                long now = System.currentTimeMillis();
+                int size = cache.size();
+                mostlyExpired = expirySampler.sample(entry -> entry.isExpired(now), entry -> removeEntry(entry.key));
+                expired += size - cache.size();
+            } finally {
+                lock.unlock();
             }
-            Thread.yield();
+        } while (mostlyExpired && System.nanoTime() - deadline < 0);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = lock.cacheName();
+            event.expired = expired;
+            event.commit();
         }
     }
 
-    @Getter
-    protected class CacheEntry<V> {
+    protected class CacheEntry extends ExpirySampler.Node {
         public long lastAccessed = System.currentTimeMillis();
         // in sec
         public long timeToLive;
-        private final V value;
-        private int frequency;
+        private final K key;
+        @Getter
+        private V value;
+        // bucket of the current frequency and the neighbours within it
+        private FrequencyBucket bucket;
+        private CacheEntry previous;
+        private CacheEntry next;
+
+        protected CacheEntry(K key, V value, long ttl) {
+            this.key = key;
+            this.value = value;
+            this.timeToLive = ttl ;//* 1000;
+        }
 
-        protected CacheEntry(V value, long ttl) {
-            this(value, 0, ttl);
+        public int getFrequency() {
+            return bucket.frequency;
         }
 
-        protected CacheEntry(V value, int frequency, long ttl) {
-            this.value = value;
-            this.timeToLive = ttl ;//* 1000;
-            this.frequency = 0;
+        private boolean isExpired(long now) {
+            return now > timeToLive + lastAccessed;
+        }
+    }
+
+    /**
+     * Node of the frequency list holding the entries with the same frequency, oldest first.
+     */
+    private class FrequencyBucket {
+        private int frequency;
+        private FrequencyBucket previous = this;
+        private FrequencyBucket next = this;
+        private CacheEntry head;
+        private CacheEntry tail;
+
+        private FrequencyBucket(int frequency) {
+            this.frequency = frequency;
         }
     }
 }
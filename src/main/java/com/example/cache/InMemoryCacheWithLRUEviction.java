@@ -1,21 +1,23 @@
 package com.example.cache;
 
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
-
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Entries are kept in a {@link ConcurrentHashMap}, so reads take no lock. The LRU order is an access-ordered
+ * {@link LinkedHashMap} guarded by a lock, reads are recorded in a lossy {@link ReadBuffer} and replayed on it in
+ * batches by whichever thread gets the lock, so the order is eventually consistent and a few reads may be lost
+ * under contention. Writes replay the pending reads before they evict.
+ * <p>
+ * Expiring keys are kept in a {@link TimerWheel}, swept by the shared {@link MaintenanceScheduler}.
+ * Entries evicted for size can spill into a {@link DiskOverflow} tier, which a miss promotes them back from.
+ * Removals can be delivered to a {@link RemovalListener}.
  * @author vishnu.g
  */
 public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializable {
@@ -25,31 +27,61 @@ public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializ
     protected static final int DEFAULT_MAX_SIZE = 100;
     // in milliseconds
     private static final int DEFAULT_TTL = 1000;
+    // in milliseconds
+    private static final long CLEANUP_INTERVAL = 10;
+    // Runs the cleanup, cancelled on close.
+    private final transient MaintenanceScheduler.Registration maintenance;
     private final transient int initialCapacity;
 
-    private final LinkedHashMap<K, SoftReference<Object>> cache;
-    private final DelayQueue<DelayedCacheObject> cleaningUpQueue = new DelayQueue<>();
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<K, CacheEntry<K>> cache;
+    // LRU order of the entries, guarded by the eviction lock
+    private final LinkedHashMap<K, CacheEntry<K>> accessOrder;
+    private final transient TimerWheel<CacheEntry<K>> timerWheel = new TimerWheel<>(System.nanoTime());
+    private final transient ReadBuffer<CacheEntry<K>> readBuffer = new ReadBuffer<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Tier the evicted entries spill into, null if none.
+    private final transient DiskOverflow<K, V> overflow;
+    // Delivers the removals to the listener, null if none.
+    private final transient RemovalNotifier<K, V> notifier;
 
     public InMemoryCacheWithLRUEviction(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity the maximum number of entries in memory
+     * @param overflow the tier evicted entries spill into, {@code null} for none
+     */
+    public InMemoryCacheWithLRUEviction(int capacity, DiskOverflow<K, V> overflow) {
+        this(capacity, overflow, null, null);
+    }
+
+    /**
+     * @param capacity        the maximum number of entries in memory
+     * @param overflow        the tier evicted entries spill into, {@code null} for none
+     * @param removalListener the listener of removed entries, {@code null} for none
+     * @param executor        the executor delivering the removals to the listener
+     */
+    public InMemoryCacheWithLRUEviction(int capacity, DiskOverflow<K, V> overflow,
+                                        RemovalListener<? super K, ? super V> removalListener, Executor executor) {
         this.initialCapacity = capacity;
-        cache = new LinkedHashMap<K, SoftReference<Object>>(capacity, 0.75f, true) {
-            protected boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > capacity;
-            }
-        };
-        Thread cleanerThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    DelayedCacheObject delayedCacheObject = cleaningUpQueue.take();
-                    cache.remove(delayedCacheObject.getKey(), delayedCacheObject.getReference());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+        this.overflow = overflow;
+        this.notifier = (null != removalListener) ? new RemovalNotifier<>(removalListener, executor) : null;
+        cache = new ConcurrentHashMap<>(capacity);
+        accessOrder = new LinkedHashMap<K, CacheEntry<K>>(capacity, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<K>> eldest) {
+                if (size() > capacity) {
+                    cache.remove(eldest.getKey(), eldest.getValue());
+                    timerWheel.cancel(eldest.getValue());
+                    notifyRemoval(eldest.getValue(), RemovalCause.SIZE);
+                    spill(eldest.getValue());
+                    return true;
                 }
+                return false;
             }
-        });
-        cleanerThread.setDaemon(true);
-        cleanerThread.start();
+        };
+        this.maintenance = MaintenanceScheduler.SHARED.register(this, InMemoryCacheWithLRUEviction::cleanup,
+                CLEANUP_INTERVAL, TimeUnit.MILLISECONDS);
 
     }
 
@@ -62,18 +94,18 @@ public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializ
         if (key == null) {
             return;
         }
-        readWriteLock.writeLock().lock();
+        evictionLock.lock();
         try {
             if (value == null) {
-                cache.remove(key);
+                removeEntry(key);
             } else {
-                long expiryTime = System.currentTimeMillis() + periodInMillis;
-                SoftReference<Object> reference = new SoftReference<>(value);
-                cache.put(key, reference);
-                cleaningUpQueue.put(new DelayedCacheObject(key, reference, expiryTime));
+                if (null != overflow) { // the new value supersedes the one on disk
+                    overflow.invalidate(key);
+                }
+                insert(key, value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodInMillis));
             }
         } finally {
-            readWriteLock.writeLock().unlock();
+            evictionLock.unlock();
         }
 
     }
@@ -85,35 +117,95 @@ public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializ
 
     @Override
     public V remove(K key) {
-        readWriteLock.writeLock().lock();
+        if (key == null) {
+            return null;
+        }
+        evictionLock.lock();
         try {
-            return (V) this.cache.remove(key).get();
+            V value = (null != overflow) ? takeFromOverflow(key) : null;
+            CacheEntry<K> entry = removeEntry(key);
+            return (null != entry) ? (V) entry.reference.get() : value;
         } finally {
-            readWriteLock.writeLock().unlock();
+            evictionLock.unlock();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes no lock, the hit is recorded in the read buffer and replayed on the LRU order later.
+     */
     @Override
     public V get(K key) {
-        readWriteLock.readLock().lock();
+        if (key == null) {
+            return null;
+        }
+        V value = null;
+        CacheEntry<K> entry = cache.get(key);
+        // the wheel sweeps with a resolution of a few milliseconds, so check the expiry time as well
+        if (null != entry && !entry.isExpired(System.nanoTime())) {
+            value = (V) entry.reference.get();
+            if (readBuffer.offer(entry)) {
+                tryDrainReads();
+            }
+        }
+        return (null == value && null != overflow) ? promote(key) : value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        evictionLock.lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        evictionLock.lock();
         try {
-            return (V) Optional.ofNullable(cache.get(key)).map(SoftReference::get).orElse(null);
+            Cache.super.invalidateAll(keys);
         } finally {
-            readWriteLock.readLock().unlock();
+            evictionLock.unlock();
         }
     }
 
     @Override
     public void clear() {
-        readWriteLock.writeLock().lock();
+        evictionLock.lock();
         try {
+            for (CacheEntry<K> entry : cache.values()) {
+                notifyRemoval(entry, RemovalCause.EXPLICIT);
+            }
             cache.clear();
-            cleaningUpQueue.clear();
+            accessOrder.clear();
+            readBuffer.drain(entry -> { });
+            timerWheel.clear();
+            if (null != overflow) {
+                overflow.clear();
+            }
         } finally {
-            readWriteLock.writeLock().unlock();
+            evictionLock.unlock();
         }
     }
 
+    @Override
+    public void close() {
+        maintenance.cancel();
+    }
+
     @Override
     public boolean isEmpty() {
         return this.cache.isEmpty();
@@ -121,6 +213,7 @@ public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializ
 
     @Override
     public long size() {
+        cleanup();
         return cache.size();
     }
 
@@ -129,24 +222,129 @@ public class InMemoryCacheWithLRUEviction<K, V> implements Cache<K, V>, Serializ
         return this.initialCapacity;
     }
 
-    @AllArgsConstructor
-    @EqualsAndHashCode
-    private static class DelayedCacheObject<K> implements Delayed {
+    /**
+     * Take the entry of the key out of the disk tier and put it back, unless a value was stored meanwhile.
+     */
+    @SuppressWarnings("unchecked")
+    private V promote(K key) {
+        evictionLock.lock();
+        try {
+            DiskOverflow.Entry<V> spilled = overflow.take(key);
+            if (null == spilled) {
+                return null;
+            }
+            CacheEntry<K> entry = cache.get(key);
+            V value = (null != entry && !entry.isExpired(System.nanoTime())) ? (V) entry.reference.get() : null;
+            if (null != value) {
+                return value;
+            }
+            insert(key, spilled.value, spilled.expiryTime);
+            return spilled.value;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private V takeFromOverflow(K key) {
+        DiskOverflow.Entry<V> spilled = overflow.take(key);
+        return (null != spilled) ? spilled.value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void spill(CacheEntry<K> entry) {
+        V value = (null != overflow) ? (V) entry.reference.get() : null;
+        if (null != value) {
+            // the ttl is not renewed by reads, so the remaining time is all the tier needs
+            long remaining = entry.expiryTime - System.nanoTime();
+            overflow.spill(entry.key, value, entry.expiryTime, Math.max(remaining, 1L));
+        }
+    }
+
+    private void insert(K key, V value, long expiryTime) {
+        drainReads(); // the reads so far decide which entry is the eldest
+        CacheEntry<K> entry = new CacheEntry<>(key, new SoftReference<>(value), expiryTime);
+        CacheEntry<K> old = cache.put(key, entry);
+        accessOrder.put(key, entry);
+        if (null != old) {
+            timerWheel.cancel(old);
+            notifyRemoval(old, RemovalCause.REPLACED);
+        }
+        timerWheel.schedule(entry);
+    }
+
+    private CacheEntry<K> removeEntry(K key) {
+        if (null != overflow) {
+            overflow.invalidate(key);
+        }
+        CacheEntry<K> entry = cache.remove(key);
+        if (null != entry) {
+            accessOrder.remove(key);
+            timerWheel.cancel(entry);
+            notifyRemoval(entry, RemovalCause.EXPLICIT);
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyRemoval(CacheEntry<K> entry, RemovalCause cause) {
+        if (null != notifier) {
+            notifier.notify(entry.key, (V) entry.reference.get(), cause);
+        }
+    }
+
+    /**
+     * Replay the buffered reads if no other thread holds the lock, a busy lock holder drains them soon anyway.
+     */
+    private void tryDrainReads() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Move the entries read since the last drain to the end of the LRU order, unless they were removed since.
+     * Callers hold the lock.
+     */
+    private void drainReads() {
+        readBuffer.drain(entry -> {
+            if (cache.get(entry.key) == entry) {
+                accessOrder.get(entry.key);
+            }
+        });
+    }
+
+    private void cleanup() {
+        evictionLock.lock();
+        try {
+            drainReads();
+            timerWheel.advance(System.nanoTime(), entry -> {
+                if (cache.remove(entry.key, entry)) {
+                    accessOrder.remove(entry.key);
+                    notifyRemoval(entry, RemovalCause.EXPIRED);
+                }
+            });
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class CacheEntry<K> extends TimerWheel.Node {
 
-        @Getter
         private final K key;
-        @Getter
         private final SoftReference<Object> reference;
-        private final long expiryTime;
 
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return unit.convert(expiryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        private CacheEntry(K key, SoftReference<Object> reference, long expiryTime) {
+            super(expiryTime);
+            this.key = key;
+            this.reference = reference;
         }
 
-        @Override
-        public int compareTo(Delayed o) {
-            return Long.compare(expiryTime, ((DelayedCacheObject) o).expiryTime);
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
         }
     }
 }
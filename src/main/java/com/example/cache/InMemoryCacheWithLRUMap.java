@@ -1,11 +1,18 @@
 package com.example.cache;
 
-import org.apache.commons.collections4.MapIterator;
 import org.apache.commons.collections4.map.LRUMap;
 
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * LRU cache on the {@link LRUMap} of commons-collections, guarded by one lock. A {@link ReentrantLock} rather than
+ * {@code synchronized}, so a virtual thread waiting for it does not pin its carrier thread.
+ * <p>
+ * An entry found expired on access is removed. The cleanup removes the others by sampling random entries with an
+ * {@link ExpirySampler} instead of scanning the whole map, so its pauses stay short however large the cache is.
+ *
  * @author vishnu.g
  */
 public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
@@ -14,6 +21,12 @@ public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
     // in milliseconds
     private static final int DEFAULT_TTL = 1000;
     private final LRUMap cacheMap;
+    // the entries again, to sample them for expiry, guarded by the lock
+    private final ExpirySampler<CacheObject> expirySampler = new ExpirySampler<>();
+    private final MonitoredLock lock = new MonitoredLock(
+            "InMemoryCacheWithLRUMap@" + Integer.toHexString(System.identityHashCode(this)));
+    // Runs the cleanup, null if there is none.
+    private final MaintenanceScheduler.Registration maintenance;
 
 
     public InMemoryCacheWithLRUMap() {
@@ -25,32 +38,31 @@ public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
 
     public InMemoryCacheWithLRUMap(final long timerInterval, int capacity) {
 
-        cacheMap = new LRUMap(capacity);
-
-        if (timerInterval > 0) {
-
-            Thread t = new Thread(new Runnable() {
-                public void run() {
-                    while (true) {
-                        try {
-                            Thread.sleep(timerInterval * 1000);
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                        cleanup();
-                    }
-                }
-            });
-
-            t.setDaemon(true);
-            t.start();
-        }
+        cacheMap = new LRUMap(capacity) {
+            @Override
+            protected boolean removeLRU(LinkEntry entry) {
+                expirySampler.remove((CacheObject) entry.getValue());
+                return true;
+            }
+        };
+
+        // cleaned up every timerInterval seconds by the shared scheduler, never if zero
+        this.maintenance = (timerInterval > 0) ? MaintenanceScheduler.SHARED.register(this,
+                InMemoryCacheWithLRUMap::cleanup, timerInterval, TimeUnit.SECONDS) : null;
     }
 
     public void put(K key, V value, long ttl) {
-        synchronized (cacheMap) {
+        lock.lock();
+        try {
 
-            cacheMap.put(key, new CacheObject(value, ttl));
+            CacheObject c = new CacheObject(key, value, ttl);
+            CacheObject old = (CacheObject) cacheMap.put(key, c);
+            if (null != old) {
+                expirySampler.remove(old);
+            }
+            expirySampler.add(c);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -64,22 +76,87 @@ public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
     }
 
     public V get(K key) {
-        synchronized (cacheMap) {
+        lock.lock();
+        try {
             CacheObject c;
             c = (CacheObject) cacheMap.get(key);
 
             if (c == null)
                 return null;
-            else {
+            else if (c.isExpired(System.currentTimeMillis())) { // expire lazily
+                cacheMap.remove(key);
+                expirySampler.remove(c);
+                return null;
+            } else {
                 c.lastAccessed = System.currentTimeMillis();
                 return c.value;
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            return Cache.super.getAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        lock.lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            Cache.super.invalidateAll(keys);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void clear() {
-        this.cacheMap.clear();
+        lock.lock();
+        try {
+            this.cacheMap.clear();
+            expirySampler.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (null != maintenance) {
+            maintenance.cancel();
+        }
     }
 
     @Override
@@ -88,14 +165,25 @@ public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
     }
 
     public V remove(K key) {
-        synchronized (cacheMap) {
-            return (V) this.cacheMap.remove(key);
+        lock.lock();
+        try {
+            CacheObject c = (CacheObject) this.cacheMap.remove(key);
+            if (null == c) {
+                return null;
+            }
+            expirySampler.remove(c);
+            return c.value;
+        } finally {
+            lock.unlock();
         }
     }
 
     public long size() {
-        synchronized (cacheMap) {
+        lock.lock();
+        try {
             return cacheMap.size();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -104,48 +192,53 @@ public class InMemoryCacheWithLRUMap<K, V> implements Cache<K, V> {
         return 0;
     }
 
+    /**
+     * Remove expired entries by sampling, holding the lock for one round at a time.
+     */
     private void cleanup() {
-
-        long now = System.currentTimeMillis();
-        ArrayList<K> deleteKey = null;
-
-        synchronized (cacheMap) {
-            MapIterator itr = cacheMap.mapIterator();
-
-            deleteKey = new ArrayList<K>((cacheMap.size() / 2) + 1);
-            K key = null;
-            CacheObject c = null;
-
-            while (itr.hasNext()) {
-                key = (K) itr.next();
-                c = (CacheObject) itr.getValue();
-
-                if (c != null && (now > (c.timeToLive + c.lastAccessed))) {
-
-                    deleteKey.add(key);
-                }
+        CacheEvents.ExpirySweep event = new CacheEvents.ExpirySweep();
+        event.begin();
+        long deadline = System.nanoTime() + ExpirySampler.TIME_BUDGET_NANOS;
+        boolean mostlyExpired;
+        int expired = 0;
+        do {
+            lock.lock();
+            try {
+                long now = System.currentTimeMillis();
+                int size = cacheMap.size();
+                mostlyExpired = expirySampler.sample(c -> c.isExpired(now), c -> {
+                    cacheMap.remove(c.key);
+                    expirySampler.remove(c);
+                });
+                expired += size - cacheMap.size();
+            } finally {
+                lock.unlock();
             }
-        }
-
-        for (K key : deleteKey) {
-            synchronized (cacheMap) {
-
-                cacheMap.remove(key);
-            }
-            Thread.yield();
+        } while (mostlyExpired && System.nanoTime() - deadline < 0);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = lock.cacheName();
+            event.expired = expired;
+            event.commit();
         }
     }
 
-    protected class CacheObject {
+    protected class CacheObject extends ExpirySampler.Node {
 
         public long lastAccessed = System.currentTimeMillis();
         // in sec
         public long timeToLive;
         public V value;
+        private final K key;
 
-        protected CacheObject(V value, long ttl) {
+        protected CacheObject(K key, V value, long ttl) {
+            this.key = key;
             this.value = value;
             this.timeToLive = ttl;//* 1000;
         }
+
+        private boolean isExpired(long now) {
+            return now > timeToLive + lastAccessed;
+        }
     }
 }
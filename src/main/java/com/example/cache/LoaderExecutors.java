@@ -0,0 +1,42 @@
+package com.example.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the loads of a cache, see {@link InMemoryCache.CacheBuilder#threadPerLoad()}.
+ * <p>
+ * A cache runs its asynchronous loads and refreshes on its executor, by default the common fork-join pool, whose
+ * few threads are all taken by a few loads waiting on a slow backend. {@link #threadPerLoad()} runs every load on a
+ * thread of its own instead. On Java 21 and later the threads are virtual, so thousands of waiting loads cost some
+ * memory and no platform thread; this class is compiled again from {@code src/main/java21} into the versioned part
+ * of the multi-release jar. Before Java 21 the threads are platform threads, kept for a minute once idle.
+ *
+ * @author vishnu.g
+ */
+public final class LoaderExecutors {
+
+    private LoaderExecutors() {
+    }
+
+    /**
+     * @return an executor starting a daemon thread per task, unless an idle one can be reused; its threads end once
+     * idle, so it needs no shutdown
+     */
+    public static ExecutorService threadPerLoad() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cache-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return {@code true} if {@link #threadPerLoad()} runs the loads on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU cache with ttl for primitive {@code long} keys.
+ * <p>
+ * Keys are stored unboxed in an open-addressing table with linear probing, the values, expiry times and the links
+ * of the LRU order are held in arrays parallel to it, so an entry costs no objects apart from its value. The table
+ * is kept at most half full and removals shift the following entries back instead of leaving tombstones, so probe
+ * sequences stay short. {@link #get(long)} allocates nothing.
+ * <p>
+ * Like {@link InMemoryCacheWithLRUEviction} the ttl is counted from the write and not renewed by reads. Expired
+ * entries are removed when they are read and by {@link #size()}, the eldest entry is evicted when the cache is full.
+ * The {@link Cache} methods taking a {@link Long} key unbox it and delegate to the primitive ones.
+ *
+ * @author vishnu.g
+ */
+public class LongKeyCache<V> implements Cache<Long, V> {
+
+    protected static final int DEFAULT_MAX_SIZE = 100;
+    // in milliseconds
+    private static final int DEFAULT_TTL = 1000;
+    // index of no slot
+    private static final int NIL = -1;
+    // expiry time of the entries which never expire
+    private static final long NEVER = 0L;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private final int capacity;
+    private final int tableMask;
+    private final long[] keys;
+    // null marks a free slot
+    private final Object[] values;
+    // in System.nanoTime()
+    private final long[] expiryTimes;
+    // LRU order through the slots, from the eldest at the head to the most recently used at the tail
+    private final int[] previous;
+    private final int[] next;
+    private int head = NIL;
+    private int tail = NIL;
+    private int size;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LongKeyCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param capacity the maximum number of entries
+     * @throws IllegalArgumentException if {@code capacity} is zero, negative or larger than {@code 2^29}
+     */
+    public LongKeyCache(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0 || capacity > MAX_TABLE_SIZE / 2) {
+            throw new IllegalArgumentException("capacity should be greater than zero and at most " +
+                    MAX_TABLE_SIZE / 2);
+        }
+        int tableSize = 2;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        this.capacity = capacity;
+        this.tableMask = tableSize - 1;
+        this.keys = new long[tableSize];
+        this.values = new Object[tableSize];
+        this.expiryTimes = new long[tableSize];
+        this.previous = new int[tableSize];
+        this.next = new int[tableSize];
+    }
+
+    /**
+     * Put the given key and value into cache, evicting the least recently used entry if the cache is full.
+     *
+     * @param key   the key
+     * @param value the value, {@code null} removes the key
+     * @param ttl   time-to-live in milliseconds, zero or negative if the entry never expires
+     */
+    public void put(long key, V value, long ttl) {
+        if (null == value) {
+            remove(key);
+            return;
+        }
+        long expiryTime = NEVER;
+        if (ttl > 0) {
+            expiryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+            expiryTime = (NEVER == expiryTime) ? 1L : expiryTime;
+        }
+        lock.lock();
+        try {
+            int slot = find(key);
+            if (NIL == slot) {
+                if (size == capacity) {
+                    delete(head);
+                }
+                slot = insert(key);
+            } else {
+                unlink(slot);
+            }
+            values[slot] = value;
+            expiryTimes[slot] = expiryTime;
+            linkLast(slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(long key, V value) {
+        put(key, value, DEFAULT_TTL);
+    }
+
+    /**
+     * Get the value of the key and make it the most recently used one, without allocating.
+     *
+     * @param key the key
+     * @return the value, {@code null} if absent or expired
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        lock.lock();
+        try {
+            int slot = find(key);
+            if (NIL == slot) {
+                return null;
+            }
+            if (isExpired(slot, System.nanoTime())) {
+                delete(slot);
+                return null;
+            }
+            if (slot != tail) {
+                unlink(slot);
+                linkLast(slot);
+            }
+            return (V) values[slot];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the key and value from the cache, if present.
+     *
+     * @param key the key
+     * @return the removed value, {@code null} if absent or expired
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        lock.lock();
+        try {
+            int slot = find(key);
+            if (NIL == slot) {
+                return null;
+            }
+            V value = isExpired(slot, System.nanoTime()) ? null : (V) values[slot];
+            delete(slot);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        lock.lock();
+        try {
+            int slot = find(key);
+            return NIL != slot && !isExpired(slot, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Long key, V value, long ttl) {
+        if (null == key) {
+            return;
+        }
+        put(key.longValue(), value, ttl);
+    }
+
+    @Override
+    public void put(Long key, V value) {
+        put(key, value, DEFAULT_TTL);
+    }
+
+    @Override
+    public V remove(Long key) {
+        return (null != key) ? remove(key.longValue()) : null;
+    }
+
+    @Override
+    public V get(Long key) {
+        return (null != key) ? get(key.longValue()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public Map<Long, V> getAll(Iterable<? extends Long> keys) {
+        lock.lock();
+        try {
+            return Cache.super.getAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all entries.
+     */
+    @Override
+    public void putAll(Map<? extends Long, ? extends V> entries, long ttl) {
+        lock.lock();
+        try {
+            Cache.super.putAll(entries, ttl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Takes the lock once for all keys.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends Long> keys) {
+        lock.lock();
+        try {
+            Cache.super.invalidateAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            Arrays.fill(values, null);
+            head = NIL;
+            tail = NIL;
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Removes the expired entries first, which scans the whole table.
+     */
+    @Override
+    public long size() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            int slot = 0;
+            while (slot <= tableMask && size > 0) {
+                if (null != values[slot] && isExpired(slot, now)) {
+                    delete(slot); // may shift a following entry into this slot, so look at it again
+                } else {
+                    slot++;
+                }
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+
+    private int find(long key) {
+        int slot = indexOf(key);
+        while (null != values[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return NIL;
+    }
+
+    /**
+     * Take the first free slot of the probe sequence of a key known to be absent.
+     */
+    private int insert(long key) {
+        int slot = indexOf(key);
+        while (null != values[slot]) {
+            slot = (slot + 1) & tableMask;
+        }
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Free the slot and shift back the following entries of the cluster which probed past it, so lookups never
+     * stop early at the freed slot.
+     */
+    private void delete(int slot) {
+        unlink(slot);
+        values[slot] = null;
+        size--;
+        int free = slot;
+        int index = (slot + 1) & tableMask;
+        while (null != values[index]) {
+            int home = indexOf(keys[index]);
+            // the entry may move unless its home slot lies cyclically between the free slot and itself
+            if (((index - home) & tableMask) >= ((index - free) & tableMask)) {
+                move(index, free);
+                free = index;
+            }
+            index = (index + 1) & tableMask;
+        }
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+        expiryTimes[to] = expiryTimes[from];
+        previous[to] = previous[from];
+        next[to] = next[from];
+        if (NIL == previous[to]) {
+            head = to;
+        } else {
+            next[previous[to]] = to;
+        }
+        if (NIL == next[to]) {
+            tail = to;
+        } else {
+            previous[next[to]] = to;
+        }
+        values[from] = null;
+    }
+
+    private void linkLast(int slot) {
+        previous[slot] = tail;
+        next[slot] = NIL;
+        if (NIL == tail) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (NIL == previous[slot]) {
+            head = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+        if (NIL == next[slot]) {
+            tail = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+    }
+
+    private boolean isExpired(int slot, long now) {
+        long expiryTime = expiryTimes[slot];
+        return NEVER != expiryTime && now - expiryTime >= 0;
+    }
+
+    private int indexOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & tableMask;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Evicts the least recently used key.
+ *
+ * @author vishnu.g
+ */
+final class LruEviction<K> implements Eviction<K> {
+
+    private final long maximumWeight;
+    // LinkedHashMap as LRU order which uses access order instead of insertion order, holding the weights
+    private final LinkedHashMap<K, Integer> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightedSize;
+
+    LruEviction(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        accessOrder.get(key);
+    }
+
+    @Override
+    public void add(K key, int weight, Consumer<K> evictor) {
+        if (weight > maximumWeight) { // would evict every other key and still not fit
+            evictor.accept(key);
+            return;
+        }
+        accessOrder.put(key, weight);
+        weightedSize += weight;
+        evict(evictor);
+    }
+
+    @Override
+    public void update(K key, int weight, Consumer<K> evictor) {
+        Integer old = accessOrder.put(key, weight);
+        weightedSize += weight - ((null != old) ? old : 0);
+        if (weight > maximumWeight) {
+            remove(key);
+            evictor.accept(key);
+            return;
+        }
+        evict(evictor);
+    }
+
+    @Override
+    public void remove(K key) {
+        Integer weight = accessOrder.remove(key);
+        if (null != weight) {
+            weightedSize -= weight;
+        }
+    }
+
+    @Override
+    public void clear() {
+        accessOrder.clear();
+        weightedSize = 0;
+    }
+
+    @Override
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * Remove the eldest key, returning false if there is none.
+     */
+    @Override
+    public boolean evictNext(Consumer<K> evictor) {
+        Iterator<Map.Entry<K, Integer>> eldest = accessOrder.entrySet().iterator();
+        if (!eldest.hasNext()) {
+            return false;
+        }
+        Map.Entry<K, Integer> evicted = eldest.next();
+        eldest.remove();
+        weightedSize -= evicted.getValue();
+        evictor.accept(evicted.getKey());
+        return true;
+    }
+
+    /**
+     * Remove the eldest keys while the total weight exceeds the maximum allowed limit.
+     */
+    private void evict(Consumer<K> evictor) {
+        while (weightedSize > maximumWeight && evictNext(evictor)) {
+            // evicted the eldest
+        }
+    }
+}
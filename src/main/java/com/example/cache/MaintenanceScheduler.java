@@ -0,0 +1,122 @@
+package com.example.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Scheduler running the periodic cleanup of many caches on a small, fixed pool of daemon threads.
+ * <p>
+ * Caches register their maintenance with {@link #SHARED} instead of starting a thread each. A registration holds
+ * its cache only weakly, so a cache which became unreachable is collected and its registration cancelled by the
+ * next run. {@link Cache#close()} cancels the registration right away.
+ *
+ * @author vishnu.g
+ */
+final class MaintenanceScheduler {
+
+    private static final System.Logger LOGGER = System.getLogger(MaintenanceScheduler.class.getName());
+    // at most this many maintenance threads, however many caches are registered
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * The scheduler shared by all caches.
+     */
+    static final MaintenanceScheduler SHARED = new MaintenanceScheduler(
+            Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    MaintenanceScheduler(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "cache-maintenance-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        // cancelled registrations leave the queue instead of waiting for their next run
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Run the maintenance of the cache with a fixed delay until the registration is cancelled or the cache becomes
+     * unreachable. The maintenance must not hold a strong reference to the cache, it gets the cache as argument.
+     *
+     * @param cache       the cache
+     * @param maintenance the maintenance of the cache, like removing its expired entries
+     * @param delay       the delay between two runs
+     * @param unit        the unit of the delay
+     * @param <C>         the cache type
+     * @return the registration, to cancel it when the cache is closed
+     */
+    <C> Registration register(C cache, Consumer<? super C> maintenance, long delay, TimeUnit unit) {
+        Task<C> task = new Task<>(cache, maintenance);
+        task.future = executor.scheduleWithFixedDelay(task, delay, delay, unit);
+        return task;
+    }
+
+    /**
+     * @return the number of registrations not cancelled
+     */
+    int registrations() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop the threads, the registered maintenance no longer runs. Only for schedulers other than {@link #SHARED}.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A registered maintenance.
+     */
+    interface Registration {
+
+        /**
+         * Stop running the maintenance, it may still complete a run in progress.
+         */
+        void cancel();
+    }
+
+    private static final class Task<C> implements Runnable, Registration {
+        private final WeakReference<C> cache;
+        private final Consumer<? super C> maintenance;
+        private volatile ScheduledFuture<?> future;
+
+        private Task(C cache, Consumer<? super C> maintenance) {
+            this.cache = new WeakReference<>(Objects.requireNonNull(cache));
+            this.maintenance = Objects.requireNonNull(maintenance);
+        }
+
+        @Override
+        public void run() {
+            C target = cache.get();
+            if (null == target) { // collected, so nobody can close it
+                cancel();
+                return;
+            }
+            try {
+                maintenance.accept(target);
+            } catch (RuntimeException e) { // keep the registration, the next run may succeed
+                LOGGER.log(System.Logger.Level.WARNING, "maintenance of " + target.getClass().getName() + " failed",
+                        e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (null != scheduled) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
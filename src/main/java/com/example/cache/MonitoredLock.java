@@ -0,0 +1,40 @@
+package com.example.cache;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock of a cache recording the waits for it as {@link CacheEvents.LockWait} events. A free lock is taken with one
+ * {@link #tryLock()}, as {@link #lock()} would, only a thread finding it held times its wait.
+ *
+ * @author vishnu.g
+ */
+class MonitoredLock extends ReentrantLock {
+
+    private static final long serialVersionUID = -3349265287151916513L;
+
+    // the name of the cache in the events
+    private final String cacheName;
+
+    MonitoredLock(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    String cacheName() {
+        return cacheName;
+    }
+
+    @Override
+    public void lock() {
+        if (tryLock()) {
+            return;
+        }
+        CacheEvents.LockWait event = new CacheEvents.LockWait();
+        event.begin();
+        super.lock();
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = cacheName;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Striped, lossy ring buffers recording the reads of a cache, to replay them on its eviction order in batches.
+ * <p>
+ * A reader picks a stripe by its thread and claims a slot of its ring with a compare-and-set of the tail, so readers
+ * never block and rarely contend. A read finding its ring full is dropped, the eviction order is then only
+ * approximate, which an LRU tolerates. The single drainer, holding the lock of the eviction order, consumes the
+ * published reads of every ring and frees their slots.
+ *
+ * @author vishnu.g
+ */
+final class ReadBuffer<E> {
+
+    // slots per ring, a power of two
+    private static final int RING_SIZE = 16;
+    private static final int RING_MASK = RING_SIZE - 1;
+    // a ring this full asks for a drain
+    private static final int DRAIN_THRESHOLD = RING_SIZE / 2;
+    private static final int MAX_STRIPES = 64;
+
+    private final Ring<E>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReadBuffer() {
+        int count = 1;
+        while (count < 4 * Runtime.getRuntime().availableProcessors() && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        this.stripes = new Ring[count];
+        this.stripeMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Ring<>();
+        }
+    }
+
+    /**
+     * Record a read, dropping it if the ring of the calling thread is full.
+     *
+     * @param element the element read
+     * @return {@code true} if the ring should be drained soon
+     */
+    boolean offer(E element) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 32) & stripeMask].offer(element);
+    }
+
+    /**
+     * Consume the recorded reads. Only one thread may drain at a time.
+     *
+     * @param consumer replays a read
+     */
+    void drain(Consumer<? super E> consumer) {
+        for (Ring<E> ring : stripes) {
+            ring.drain(consumer);
+        }
+    }
+
+    private static final class Ring<E> {
+        private final AtomicReferenceArray<E> slots = new AtomicReferenceArray<>(RING_SIZE);
+        // next slot to claim, advanced by the readers
+        private final AtomicLong tail = new AtomicLong();
+        // next slot to drain, advanced by the drainer only
+        private volatile long head;
+
+        private boolean offer(E element) {
+            long t = tail.get();
+            long size = t - head;
+            if (size >= RING_SIZE) { // full, drop the read
+                return true;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) t & RING_MASK, element);
+                return size + 1 >= DRAIN_THRESHOLD;
+            }
+            return false; // lost against another reader of the stripe, drop the read as well
+        }
+
+        private void drain(Consumer<? super E> consumer) {
+            long h = head;
+            long t = tail.get();
+            for (; h != t; h++) {
+                int index = (int) h & RING_MASK;
+                E element = slots.get(index);
+                if (null == element) { // claimed but not yet published, the next drain takes it
+                    break;
+                }
+                slots.lazySet(index, null);
+                consumer.accept(element);
+            }
+            head = h;
+        }
+    }
+}
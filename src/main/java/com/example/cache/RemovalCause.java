@@ -0,0 +1,35 @@
+package com.example.cache;
+
+/**
+ * The reason an entry left a cache.
+ *
+ * @author vishnu.g
+ */
+public enum RemovalCause {
+
+    /**
+     * Removed by the user, with {@link Cache#remove(Object)}, {@link Cache#invalidateAll(Iterable)} or
+     * {@link Cache#clear()}.
+     */
+    EXPLICIT,
+
+    /**
+     * Its value was replaced by a write of the same key.
+     */
+    REPLACED,
+
+    /**
+     * Evicted to keep the cache within its maximum size.
+     */
+    SIZE,
+
+    /**
+     * Its time-to-live passed.
+     */
+    EXPIRED,
+
+    /**
+     * Its value was collected by the garbage collector, as it is held by a soft reference.
+     */
+    COLLECTED
+}
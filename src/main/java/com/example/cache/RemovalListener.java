@@ -0,0 +1,21 @@
+package com.example.cache;
+
+/**
+ * Listener of the entries leaving a cache, to release resources held by their values or to write them back.
+ * Notifications are delivered on an executor after the removal, never while the cache holds a lock, in the order
+ * the entries were removed.
+ *
+ * @author vishnu.g
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    /**
+     * Called once per removed entry. An exception thrown is logged and does not stop later notifications.
+     *
+     * @param key   the key
+     * @param value the value, {@code null} if it was collected
+     * @param cause the reason the entry was removed
+     */
+    void onRemoval(K key, V value, RemovalCause cause);
+}
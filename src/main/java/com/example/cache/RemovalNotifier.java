@@ -0,0 +1,83 @@
+package com.example.cache;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of removal notifications, delivered to a {@link RemovalListener} on an executor.
+ * <p>
+ * Caches add notifications while holding their locks, which only appends to a lock-free queue. One task at a time
+ * drains the queue on the executor, so the listener sees the removals in order and is never called concurrently.
+ * If the executor rejects the task the notifications stay queued until the next removal.
+ *
+ * @author vishnu.g
+ */
+final class RemovalNotifier<K, V> {
+
+    private static final System.Logger LOGGER = System.getLogger(RemovalNotifier.class.getName());
+
+    private final RemovalListener<? super K, ? super V> listener;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Notification<K, V>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    RemovalNotifier(RemovalListener<? super K, ? super V> listener, Executor executor) {
+        this.listener = Objects.requireNonNull(listener);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Queue the notification of a removal and make sure it is delivered.
+     *
+     * @param key   the key
+     * @param value the value, null if it was collected
+     * @param cause the reason of the removal
+     */
+    void notify(K key, V value, RemovalCause cause) {
+        queue.add(new Notification<>(key, value, cause));
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::dispatch);
+            } catch (RuntimeException e) { // rejected by the executor, the next removal tries again
+                dispatchScheduled.set(false);
+            }
+        }
+    }
+
+    private void dispatch() {
+        try {
+            Notification<K, V> notification;
+            while (null != (notification = queue.poll())) {
+                try {
+                    listener.onRemoval(notification.key, notification.value, notification.cause);
+                } catch (RuntimeException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "removal listener failed on " + notification.key, e);
+                }
+            }
+        } finally {
+            // also after an error thrown by the listener, or no dispatch would ever be scheduled again
+            dispatchScheduled.set(false);
+            if (!queue.isEmpty()) { // added after the last poll, or left behind by the error
+                scheduleDispatch();
+            }
+        }
+    }
+
+    private static final class Notification<K, V> {
+        private final K key;
+        private final V value;
+        private final RemovalCause cause;
+
+        private Notification(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+}
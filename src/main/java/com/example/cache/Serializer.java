@@ -0,0 +1,79 @@
+package com.example.cache;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts values to bytes and back, used by an {@link InMemoryCache} storing its values off-heap.
+ *
+ * @author vishnu.g
+ */
+public interface Serializer<V> {
+
+    /**
+     * Serialize the value.
+     *
+     * @param value the value, never {@code null}
+     * @return the bytes of the value
+     */
+    byte[] serialize(V value);
+
+    /**
+     * Deserialize a value.
+     *
+     * @param buffer the bytes written by {@link #serialize(Object)}, from its position to its limit
+     * @return the value
+     */
+    V deserialize(ByteBuffer buffer);
+
+    /**
+     * @return a serializer of strings encoded as UTF-8
+     */
+    static Serializer<String> string() {
+        return new Serializer<String>() {
+            @Override
+            public byte[] serialize(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String deserialize(ByteBuffer buffer) {
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            }
+        };
+    }
+
+    /**
+     * @param <V> the value type
+     * @return a serializer using Java serialization
+     */
+    static <V extends Serializable> Serializer<V> java() {
+        return new Serializer<V>() {
+            @Override
+            public byte[] serialize(V value) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V deserialize(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (V) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("class of the cached value not found", e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Cache partitioning its keys by hash over a power of two number of independent segments.
+ * <p>
+ * Every segment is a cache of its own, of any policy like {@link InMemoryCacheWithLRUEviction},
+ * {@link InMemoryCacheWithFIFOEviction}, {@link InMemoryCacheWithLFUEviction} or
+ * {@link InMemoryCacheWithDelayQueue}, created with its share of the capacity. A segment keeps its own lock, so
+ * threads writing keys of different segments do not contend, without changing the policy itself. The eviction
+ * order is kept per segment, a segment may evict while another one has room.
+ * <p>
+ * The size, statistics and clearing are aggregated over the segments, the bulk operations call every segment once
+ * with its keys. Build one with {@link InMemoryCache.CacheBuilder#buildSharded(IntFunction)} or the constructor.
+ *
+ * @author vishnu.g
+ */
+public class ShardedCache<K, V> implements Cache<K, V> {
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final Cache<K, V>[] segments;
+    // the segment of a key is taken from the top bits of its spread hash
+    private final int segmentShift;
+
+    /**
+     * @param segmentCount   the number of segments, rounded up to a power of two
+     * @param capacity       the total capacity, split over the segments
+     * @param segmentFactory creates a segment holding the given number of entries
+     * @throws IllegalArgumentException if {@code segmentCount} is zero or negative or {@code capacity} is less than
+     *                                  the number of segments
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedCache(int segmentCount, int capacity, IntFunction<? extends Cache<K, V>> segmentFactory)
+            throws IllegalArgumentException {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("segmentCount should be greater than zero");
+        }
+        Objects.requireNonNull(segmentFactory);
+        int count = 1;
+        while (count < segmentCount && count < MAX_SEGMENTS) {
+            count <<= 1;
+        }
+        if (capacity < count) {
+            throw new IllegalArgumentException("capacity should be at least the number of segments, " + count);
+        }
+        this.segments = new Cache[count];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            // the first segments take the remainder
+            int segmentCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = Objects.requireNonNull(segmentFactory.apply(segmentCapacity));
+        }
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (key == null) {
+            return;
+        }
+        segmentFor(key).put(key, value, ttl);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            return;
+        }
+        segmentFor(key).put(key, value);
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every segment gets its keys with one call.
+     */
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        List<K>[] keysBySegment = bySegment(keys);
+        Map<K, V> found = new LinkedHashMap<>();
+        for (int i = 0; i < segments.length; i++) {
+            if (null != keysBySegment[i]) {
+                found.putAll(segments[i].getAll(keysBySegment[i]));
+            }
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keys) { // back in the iteration order of the keys
+            V value = found.get(key);
+            if (null != value) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every segment gets its entries with one call.
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        Map<K, V>[] entriesBySegment = new Map[segments.length];
+        entries.forEach((key, value) -> {
+            if (key == null) {
+                return;
+            }
+            int index = indexOf(key);
+            if (null == entriesBySegment[index]) {
+                entriesBySegment[index] = new LinkedHashMap<>();
+            }
+            entriesBySegment[index].put(key, value);
+        });
+        for (int i = 0; i < segments.length; i++) {
+            if (null != entriesBySegment[i]) {
+                segments[i].putAll(entriesBySegment[i], ttl);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every segment gets its keys with one call.
+     */
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        List<K>[] keysBySegment = bySegment(keys);
+        for (int i = 0; i < segments.length; i++) {
+            if (null != keysBySegment[i]) {
+                segments[i].invalidateAll(keysBySegment[i]);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sum of the statistics of the segments, taken one segment after the other.
+     */
+    @Override
+    public CacheStats stats() {
+        CacheStats stats = CacheStats.empty();
+        for (Cache<K, V> segment : segments) {
+            stats = stats.plus(segment.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void clear() {
+        for (Cache<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Cache<K, V> segment : segments) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Cache<K, V> segment : segments) {
+            if (!segment.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Cache<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        long capacity = 0;
+        for (Cache<K, V> segment : segments) {
+            capacity += segment.capacity();
+        }
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of segments
+     */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<K>[] bySegment(Iterable<? extends K> keys) {
+        List<K>[] keysBySegment = new List[segments.length];
+        for (K key : keys) {
+            if (key == null) {
+                continue;
+            }
+            int index = indexOf(key);
+            if (null == keysBySegment[index]) {
+                keysBySegment[index] = new ArrayList<>();
+            }
+            keysBySegment[index].add(key);
+        }
+        return keysBySegment;
+    }
+
+    private Cache<K, V> segmentFor(K key) {
+        return segments[indexOf(key)];
+    }
+
+    /**
+     * Takes the top bits of the key's hash multiplied by the golden ratio. The hash tables of the segments index by
+     * the low bits, which stay evenly spread within a segment.
+     */
+    private int indexOf(K key) {
+        long h = (key.hashCode() * 0x9E3779B9) & 0xFFFFFFFFL;
+        return (int) (h >>> segmentShift);
+    }
+}
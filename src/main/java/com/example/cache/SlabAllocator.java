@@ -0,0 +1,295 @@
+package com.example.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Allocator of off-heap memory for serialized values.
+ * <p>
+ * Memory is reserved in direct {@link ByteBuffer} slabs, up to the configured maximum. Every slab is cut into chunks
+ * of one size class, the class sizes grow by a factor of 1.25 from 16 bytes up to the maximum, so a value wastes at
+ * most a fifth of its chunk. A slab holds 8 chunks of its class, at least 4 KiB and at most 1 MiB unless a single
+ * chunk is larger, so even a small maximum spreads over many slabs and every size class in use gets its own. A slab
+ * whose chunks are all freed is released, its memory then goes to whichever size class needs a slab next.
+ * <p>
+ * An address holds the slab index in the upper and the offset in the lower 32 bits. Not thread-safe, callers must
+ * guard allocations, writes and frees with their own lock. {@link #read(long, int)} may run concurrently, callers
+ * must validate the copied bytes were not freed meanwhile.
+ *
+ * @author vishnu.g
+ */
+final class SlabAllocator {
+
+    // address of no memory
+    static final long NULL = -1L;
+    // in bytes
+    private static final int MIN_SLAB_SIZE = 4 << 10;
+    private static final int MAX_SLAB_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_SLAB = 8;
+    private static final int MIN_CHUNK_SIZE = 16;
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private final long maximumBytes;
+    // chunk size of every size class, ascending, the last one is the largest value
+    private final int[] chunkSizes;
+    private final int[] slabSizes;
+    // slabs of each size class with a chunk left, linked through their next and prev
+    private final Slab[] partialSlabs;
+    // by index, null for a released slab, replaced when it grows so readers see it without the lock
+    private volatile Slab[] slabs = new Slab[16];
+    // indexes of the released slabs, taken before new ones
+    private int[] freeIndexes = new int[16];
+    private int freeIndexCount;
+    private int indexCount;
+    private long reservedBytes;
+    private long usedBytes;
+
+    /**
+     * @param maximumBytes the maximum number of bytes of all slabs, also the largest value
+     */
+    SlabAllocator(long maximumBytes) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("maximumBytes should be greater than zero");
+        }
+        this.maximumBytes = maximumBytes;
+        this.chunkSizes = chunkSizes((int) Math.min(maximumBytes, Integer.MAX_VALUE - 8));
+        this.slabSizes = new int[chunkSizes.length];
+        for (int i = 0; i < chunkSizes.length; i++) {
+            int chunkSize = chunkSizes[i];
+            long slabSize = Math.max(Math.min((long) chunkSize * CHUNKS_PER_SLAB, MAX_SLAB_SIZE), MIN_SLAB_SIZE);
+            // within the maximum, a chunk at least
+            slabSizes[i] = (int) Math.max(Math.min(slabSize, maximumBytes), chunkSize);
+        }
+        this.partialSlabs = new Slab[chunkSizes.length];
+    }
+
+    /**
+     * @param length the number of bytes
+     * @return whether a chunk of that length can be allocated once enough memory is freed
+     */
+    boolean fits(int length) {
+        return length <= chunkSizes[chunkSizes.length - 1];
+    }
+
+    /**
+     * Allocate a chunk of at least the given length.
+     *
+     * @param length the number of bytes
+     * @return the address of the chunk, {@link #NULL} if the value does not {@link #fits(int) fit} or there is no
+     * memory left for a slab of its size class
+     */
+    long allocate(int length) {
+        if (!fits(length)) {
+            return NULL;
+        }
+        int sizeClass = sizeClassOf(length);
+        Slab slab = partialSlabs[sizeClass];
+        if (null == slab) {
+            slab = reserve(sizeClass);
+            if (null == slab) {
+                return NULL;
+            }
+            link(slab);
+        }
+        int offset = slab.take();
+        if (slab.isFull()) {
+            unlink(slab);
+        }
+        usedBytes += slab.chunkSize;
+        return ((long) slab.index << 32) | offset;
+    }
+
+    /**
+     * Return the chunk of the given address to its slab, releasing the slab once all its chunks are free.
+     *
+     * @param address the address of the chunk
+     * @param length  the length it was allocated with
+     */
+    void free(long address, int length) {
+        Slab slab = slabs[(int) (address >>> 32)];
+        boolean wasFull = slab.isFull();
+        slab.give((int) address);
+        usedBytes -= slab.chunkSize;
+        if (0 == slab.live) {
+            if (!wasFull) {
+                unlink(slab);
+            }
+            release(slab);
+        } else if (wasFull) {
+            link(slab);
+        }
+    }
+
+    void write(long address, byte[] bytes) {
+        ByteBuffer slab = slabs[(int) (address >>> 32)].buffer.duplicate();
+        slab.position((int) address);
+        slab.put(bytes);
+    }
+
+    /**
+     * Copy the bytes at the given address. Safe to call concurrently with the other methods, the copy is only
+     * consistent if the chunk was not freed while copying.
+     *
+     * @param address the address of the chunk
+     * @param length  the number of bytes to copy
+     * @return the copied bytes, null if the slab of the chunk was released
+     */
+    byte[] read(long address, int length) {
+        Slab[] slabs = this.slabs;
+        int index = (int) (address >>> 32);
+        Slab slab = (index < slabs.length) ? slabs[index] : null;
+        int offset = (int) address;
+        if (null == slab || offset + length > slab.buffer.capacity()) { // released and maybe taken again since
+            return null;
+        }
+        ByteBuffer buffer = slab.buffer.duplicate();
+        buffer.position(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Free all chunks and release all slabs.
+     */
+    void clear() {
+        slabs = new Slab[16];
+        Arrays.fill(partialSlabs, null);
+        freeIndexCount = 0;
+        indexCount = 0;
+        reservedBytes = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * @return the number of bytes of the allocated chunks
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return the number of bytes of the slabs taken from the direct memory
+     */
+    long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return a new slab of the size class, null if it would exceed the maximum
+     */
+    private Slab reserve(int sizeClass) {
+        int slabSize = slabSizes[sizeClass];
+        if (reservedBytes + slabSize > maximumBytes) {
+            return null;
+        }
+        int index = (freeIndexCount > 0) ? freeIndexes[--freeIndexCount] : indexCount++;
+        Slab[] slabs = this.slabs;
+        if (index == slabs.length) {
+            slabs = Arrays.copyOf(slabs, slabs.length << 1);
+            this.slabs = slabs;
+        }
+        Slab slab = new Slab(ByteBuffer.allocateDirect(slabSize), index, chunkSizes[sizeClass], sizeClass);
+        slabs[index] = slab;
+        reservedBytes += slabSize;
+        return slab;
+    }
+
+    private void release(Slab slab) {
+        slabs[slab.index] = null;
+        if (freeIndexCount == freeIndexes.length) {
+            freeIndexes = Arrays.copyOf(freeIndexes, freeIndexes.length << 1);
+        }
+        freeIndexes[freeIndexCount++] = slab.index;
+        reservedBytes -= slab.buffer.capacity();
+    }
+
+    private void link(Slab slab) {
+        Slab head = partialSlabs[slab.sizeClass];
+        slab.prev = null;
+        slab.next = head;
+        if (null != head) {
+            head.prev = slab;
+        }
+        partialSlabs[slab.sizeClass] = slab;
+    }
+
+    private void unlink(Slab slab) {
+        if (null != slab.prev) {
+            slab.prev.next = slab.next;
+        } else {
+            partialSlabs[slab.sizeClass] = slab.next;
+        }
+        if (null != slab.next) {
+            slab.next.prev = slab.prev;
+        }
+        slab.prev = null;
+        slab.next = null;
+    }
+
+    private int sizeClassOf(int length) {
+        int index = Arrays.binarySearch(chunkSizes, length);
+        return (index >= 0) ? index : -index - 1;
+    }
+
+    private static int[] chunkSizes(int largest) {
+        int[] sizes = new int[128];
+        int count = 0;
+        long size = MIN_CHUNK_SIZE;
+        while (size < largest) {
+            sizes[count++] = (int) size;
+            // keep chunks aligned to 8 bytes
+            size = Math.max(size + 8, ((long) (size * GROWTH_FACTOR) + 7) & ~7L);
+        }
+        sizes[count++] = largest;
+        return Arrays.copyOf(sizes, count);
+    }
+
+    /**
+     * A slab and its chunks of one size class. The buffer is final, so readers racing with the allocation of the
+     * slab see it whole.
+     */
+    private static final class Slab {
+        private final ByteBuffer buffer;
+        private final int index;
+        private final int chunkSize;
+        private final int sizeClass;
+        // offset of the next chunk never handed out
+        private int carved;
+        private int[] freeOffsets;
+        private int freeCount;
+        // chunks handed out and not freed
+        private int live;
+        private Slab prev;
+        private Slab next;
+
+        private Slab(ByteBuffer buffer, int index, int chunkSize, int sizeClass) {
+            this.buffer = buffer;
+            this.index = index;
+            this.chunkSize = chunkSize;
+            this.sizeClass = sizeClass;
+        }
+
+        private int take() {
+            live++;
+            if (freeCount > 0) {
+                return freeOffsets[--freeCount];
+            }
+            int offset = carved;
+            carved += chunkSize;
+            return offset;
+        }
+
+        private void give(int offset) {
+            live--;
+            if (null == freeOffsets) {
+                freeOffsets = new int[buffer.capacity() / chunkSize];
+            }
+            freeOffsets[freeCount++] = offset;
+        }
+
+        private boolean isFull() {
+            return 0 == freeCount && carved + chunkSize > buffer.capacity();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.cache;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary snapshot of the entries of a cache, to restart warm.
+ * <p>
+ * A snapshot starts with a header of a magic number, the format version and the wall-clock time it was taken at.
+ * The entries follow in blocks of about 1 MiB, each starting with its length and number of entries. An entry is
+ * the length of its serialized key and value, its ttl and remaining time in nanoseconds, its access frequency and
+ * the key and value bytes. The remaining time of an entry is counted down by the time between taking and restoring
+ * the snapshot.
+ * <p>
+ * Blocks are independent, so a snapshot is restored by indexing the block headers and then reading and
+ * deserializing the blocks in parallel with positional reads of one {@link FileChannel}. A snapshot is written to a
+ * temporary file moved in place once complete, so a crash never leaves a partial snapshot behind.
+ *
+ * @author vishnu.g
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x53435348;
+    private static final int VERSION = 1;
+    // in bytes
+    private static final int BLOCK_SIZE = 1 << 20;
+    // magic, version and snapshot time
+    private static final int FILE_HEADER = 4 + 4 + 8;
+    // length and number of entries
+    private static final int BLOCK_HEADER = 4 + 4;
+    // key length, value length, ttl, remaining time and frequency
+    private static final int ENTRY_HEADER = 4 + 4 + 8 + 8 + 4;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Receives the entries of a snapshot, concurrently from several threads.
+     */
+    @FunctionalInterface
+    interface EntryConsumer<K, V> {
+
+        /**
+         * @param key              the key
+         * @param value            the value
+         * @param expireAfterNanos the ttl of the entry in nanoseconds, zero if it never expires
+         * @param remainingNanos   the time left until the entry expires, counted down since the snapshot
+         * @param frequency        the access frequency of the entry, zero if the cache does not track it
+         */
+        void accept(K key, V value, long expireAfterNanos, long remainingNanos, int frequency);
+    }
+
+    /**
+     * Read a snapshot, deserializing its blocks in parallel on the executor. Expired entries are skipped.
+     *
+     * @param path            the snapshot file
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     * @param executor        the executor reading the blocks
+     * @param consumer        receives the entries
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static <K, V> void read(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor executor,
+                            EntryConsumer<? super K, ? super V> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("not a cache snapshot of version " + VERSION + ": " + path);
+            }
+            long elapsedNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(System.currentTimeMillis() - header.getLong(8),
+                    0L));
+            // index the blocks, the headers are all that is read sequentially
+            List<CompletableFuture<Void>> blocks = new ArrayList<>();
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER);
+            long size = channel.size();
+            for (long position = FILE_HEADER; position < size; ) {
+                readFully(channel, blockHeader, position);
+                int length = blockHeader.getInt(0);
+                int count = blockHeader.getInt(4);
+                long offset = position + BLOCK_HEADER;
+                if (length < 0 || count < 0 || offset + length > size) {
+                    throw new IOException("truncated cache snapshot: " + path);
+                }
+                blocks.add(CompletableFuture.runAsync(() -> readBlock(channel, offset, length, count, keySerializer,
+                        valueSerializer, elapsedNanos, consumer), executor));
+                position = offset + length;
+            }
+            try {
+                CompletableFuture.allOf(blocks.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static <K, V> void readBlock(FileChannel channel, long offset, int length, int count,
+                                         Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                         long elapsedNanos, EntryConsumer<? super K, ? super V> consumer) {
+        ByteBuffer block = ByteBuffer.allocate(length);
+        try {
+            readFully(channel, block, offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < count; i++) {
+            int keyLength = block.getInt();
+            int valueLength = block.getInt();
+            long expireAfterNanos = block.getLong();
+            long remainingNanos = block.getLong() - elapsedNanos;
+            int frequency = block.getInt();
+            if (expireAfterNanos > 0 && remainingNanos <= 0) { // expired since the snapshot, skip deserializing
+                block.position(block.position() + keyLength + valueLength);
+                continue;
+            }
+            K key = keySerializer.deserialize(slice(block, keyLength));
+            V value = valueSerializer.deserialize(slice(block, valueLength));
+            if (expireAfterNanos > 0) {
+                consumer.accept(key, value, expireAfterNanos, Math.min(remainingNanos, expireAfterNanos), frequency);
+            } else {
+                consumer.accept(key, value, 0, 0, frequency);
+            }
+        }
+    }
+
+    /**
+     * @return the next bytes of the buffer as a buffer of their own, moving past them
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("truncated cache snapshot");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Writes a snapshot to a temporary file in the directory of the target, moved in place by {@link #commit()}.
+     * Closing a writer which was not committed deletes the temporary file.
+     */
+    static final class Writer<K, V> implements Closeable {
+        private final Path path;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final Serializer<? super K> keySerializer;
+        private final Serializer<? super V> valueSerializer;
+        private ByteBuffer block = newBlock(BLOCK_SIZE);
+        private int count;
+        private boolean committed;
+
+        Writer(Path path, Serializer<? super K> keySerializer, Serializer<? super V> valueSerializer)
+                throws IOException {
+            this.path = path.toAbsolutePath();
+            this.keySerializer = Objects.requireNonNull(keySerializer);
+            this.valueSerializer = Objects.requireNonNull(valueSerializer);
+            this.temporary = Files.createTempFile(this.path.getParent(), ".snapshot-", ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).flip();
+            writeFully(header);
+        }
+
+        /**
+         * Append an entry.
+         *
+         * @param key              the key
+         * @param value            the value
+         * @param expireAfterNanos the ttl of the entry in nanoseconds, zero if it never expires
+         * @param remainingNanos   the time left until the entry expires
+         * @param frequency        the access frequency of the entry, zero if the cache does not track it
+         */
+        void write(K key, V value, long expireAfterNanos, long remainingNanos, int frequency) throws IOException {
+            byte[] keyBytes = keySerializer.serialize(key);
+            byte[] valueBytes = valueSerializer.serialize(value);
+            int length = ENTRY_HEADER + keyBytes.length + valueBytes.length;
+            if (block.remaining() < length) {
+                flush();
+                if (block.remaining() < length) { // an entry larger than a block gets a block of its own
+                    block = newBlock(BLOCK_HEADER + length);
+                }
+            }
+            block.putInt(keyBytes.length).putInt(valueBytes.length).putLong(expireAfterNanos).putLong(remainingNanos)
+                    .putInt(frequency).put(keyBytes).put(valueBytes);
+            count++;
+        }
+
+        /**
+         * Write the last block and move the snapshot in place of the target, replacing a previous one.
+         */
+        void commit() throws IOException {
+            flush();
+            channel.force(false);
+            channel.close();
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void flush() throws IOException {
+            if (0 == count) {
+                return;
+            }
+            block.putInt(0, block.position() - BLOCK_HEADER).putInt(4, count).flip();
+            writeFully(block);
+            block = (block.capacity() == BLOCK_SIZE) ? block.clear().position(BLOCK_HEADER) : newBlock(BLOCK_SIZE);
+            count = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private static ByteBuffer newBlock(int size) {
+            ByteBuffer block = ByteBuffer.allocate(size);
+            block.position(BLOCK_HEADER);
+            return block;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters of a cache recording statistics. Every counter is a {@link LongAdder}, so threads recording
+ * concurrently update different cells instead of contending on one field.
+ *
+ * @author vishnu.g
+ */
+final class StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder collectedCount = new LongAdder();
+    private final LongAdder explicitRemovalCount = new LongAdder();
+
+    void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    /**
+     * @param loadTime the time of the load in nanoseconds
+     */
+    void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * @param loadTime the time of the load in nanoseconds
+     */
+    void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordRemovals(RemovalCause cause, long count) {
+        switch (cause) {
+            case SIZE:
+                evictionCount.add(count);
+                break;
+            case EXPIRED:
+                expiredCount.add(count);
+                break;
+            case COLLECTED:
+                collectedCount.add(count);
+                break;
+            case EXPLICIT:
+                explicitRemovalCount.add(count);
+                break;
+            default: // replaced values are not counted
+                break;
+        }
+    }
+
+    CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), evictionCount.sum(), expiredCount.sum(), collectedCount.sum(),
+                explicitRemovalCount.sum());
+    }
+}
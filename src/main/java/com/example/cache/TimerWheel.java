@@ -0,0 +1,192 @@
+package com.example.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel to expire cache entries.
+ * <p>
+ * Every level is an array of buckets, each bucket a circular doubly linked list of nodes. A node is put into the
+ * level whose span covers its delay, so schedule, reschedule and cancel are O(1). Advancing the wheel walks only the
+ * buckets whose time has passed, expires their due nodes and moves the others down to a finer level.
+ * <p>
+ * Times are {@link System#nanoTime()} values. The finest level has a resolution of about one millisecond, callers
+ * which need an exact expiry should also check the expiry time on access. Not thread-safe, callers must guard the
+ * wheel with their own lock.
+ *
+ * @author vishnu.g
+ */
+final class TimerWheel<N extends TimerWheel.Node> {
+
+    // bucket spans of ~1.05ms, ~67ms, ~4.3s, ~4.6min, ~4.9h and ~13d, the last level catches all longer delays
+    private static final int[] SHIFT = {20, 26, 32, 38, 44, 50};
+    private static final int[] BUCKETS = {64, 64, 64, 64, 64, 1};
+
+    private final Node[][] wheel;
+    // time of the last advance
+    private long nanos;
+    private int size;
+
+    TimerWheel(long now) {
+        this.nanos = now;
+        this.wheel = new Node[SHIFT.length][];
+        for (int level = 0; level < SHIFT.length; level++) {
+            wheel[level] = new Node[BUCKETS[level]];
+            for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+                wheel[level][bucket] = Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Add the node to the bucket of its {@link Node#expiryTime}.
+     *
+     * @param node the node, must not be scheduled already
+     */
+    void schedule(N node) {
+        link(node);
+    }
+
+    /**
+     * Move the node to the bucket of its new expiry time.
+     *
+     * @param node       the node, scheduled or not
+     * @param expiryTime the new expiry time
+     */
+    void reschedule(N node, long expiryTime) {
+        cancel(node);
+        node.expiryTime = expiryTime;
+        link(node);
+    }
+
+    /**
+     * Remove the node from the wheel, does nothing if it is not scheduled.
+     *
+     * @param node the node
+     */
+    void cancel(N node) {
+        unlink(node);
+    }
+
+    private void link(Node node) {
+        long time = Math.max(node.expiryTime - nanos, 0L) + nanos;
+        long delay = time - nanos;
+        int level = 0;
+        while (level < SHIFT.length - 1 && delay >= (1L << SHIFT[level + 1])) {
+            level++;
+        }
+        Node[] buckets = wheel[level];
+        Node sentinel = buckets[(int) (time >>> SHIFT[level]) & (buckets.length - 1)];
+        node.previousInWheel = sentinel.previousInWheel;
+        node.nextInWheel = sentinel;
+        sentinel.previousInWheel.nextInWheel = node;
+        sentinel.previousInWheel = node;
+        size++;
+    }
+
+    private void unlink(Node node) {
+        if (null != node.nextInWheel) {
+            node.previousInWheel.nextInWheel = node.nextInWheel;
+            node.nextInWheel.previousInWheel = node.previousInWheel;
+            node.previousInWheel = null;
+            node.nextInWheel = null;
+            size--;
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time and hand every due node to the consumer. The node is removed from the
+     * wheel before the consumer sees it, so the consumer may schedule it again, but it must not cancel other nodes.
+     *
+     * @param now       the current time
+     * @param onExpired consumer of the due nodes
+     */
+    void advance(long now, Consumer<N> onExpired) {
+        long previous = nanos;
+        nanos = now;
+        for (int level = 0; level < SHIFT.length; level++) {
+            long previousTicks = previous >>> SHIFT[level];
+            long delta = (now >>> SHIFT[level]) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(level, previousTicks, delta, onExpired);
+        }
+    }
+
+    /**
+     * Time of the last advance.
+     */
+    long nanos() {
+        return nanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                sentinel.previousInWheel = sentinel;
+                sentinel.nextInWheel = sentinel;
+            }
+        }
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expire(int level, long previousTicks, long delta, Consumer<N> onExpired) {
+        Node[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        // the bucket of the previous tick may still hold nodes which were not due at that time
+        long steps = Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node sentinel = buckets[i & mask];
+            Node node = sentinel.nextInWheel;
+            // detach the bucket, its nodes are either expired or scheduled again
+            sentinel.previousInWheel = sentinel;
+            sentinel.nextInWheel = sentinel;
+            while (node != sentinel) {
+                Node next = node.nextInWheel;
+                node.previousInWheel = null;
+                node.nextInWheel = null;
+                size--;
+                if (node.expiryTime - nanos <= 0) {
+                    onExpired.accept((N) node);
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * An element of the wheel, extended by the cache entries.
+     */
+    static class Node {
+        // expiry time in System.nanoTime()
+        long expiryTime;
+        private Node previousInWheel;
+        private Node nextInWheel;
+
+        Node() {
+        }
+
+        Node(long expiryTime) {
+            this.expiryTime = expiryTime;
+        }
+
+        private static Node sentinel() {
+            Node sentinel = new Node();
+            sentinel.previousInWheel = sentinel;
+            sentinel.nextInWheel = sentinel;
+            return sentinel;
+        }
+
+        boolean isScheduled() {
+            return null != nextInWheel;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.cache;
+
+/**
+ * Computes the weight of a cache entry, which an {@link InMemoryCache} built with a maximum weight sums up to bound
+ * its contents instead of counting the entries. See {@link InMemoryCache.CacheBuilder#maximumWeight(long)}.
+ *
+ * @author vishnu.g
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * Weigh an entry. The weight is computed once, when the entry is written.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the weight of the entry, never negative
+     */
+    int weigh(K key, V value);
+}
@@ -0,0 +1,224 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Window TinyLFU eviction.
+ * <p>
+ * New keys enter an LRU admission window of 1% of the maximum weight. The main region is a segmented LRU: keys from
+ * the window enter its probation part, a hit in probation promotes a key to the protected part, which holds up to
+ * 80% of the main region. When the cache is full each key leaving the window competes with the eldest key of
+ * probation and the one with the lower estimated frequency in the {@link FrequencySketch} is evicted. A key heavier
+ * than the window passes through it right away and competes like any other.
+ *
+ * @author vishnu.g
+ */
+final class WindowTinyLfuEviction<K> implements Eviction<K> {
+
+    private static final double WINDOW_PERCENTAGE = 0.01;
+    private static final double PROTECTED_PERCENTAGE = 0.8;
+    // the sketch starts at most this large and grows with the number of keys, which weights do not tell
+    private static final long MAXIMUM_INITIAL_SKETCH_SIZE = 1 << 16;
+
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final FrequencySketch sketch;
+    // LinkedHashMaps as LRU orders which use access order instead of insertion order, holding the weights
+    private final LinkedHashMap<K, Integer> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Integer> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Integer> protectedRegion = new LinkedHashMap<>(16, 0.75f, true);
+    // keys which left the window by the current write, reused to not allocate on every write
+    private final ArrayList<K> candidates = new ArrayList<>();
+    private long windowWeight;
+    private long protectedWeight;
+    private long weightedSize;
+
+    WindowTinyLfuEviction(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+        this.maximumWindowWeight = Math.max(1L, (long) (maximumWeight * WINDOW_PERCENTAGE));
+        this.maximumProtectedWeight = (long) ((maximumWeight - maximumWindowWeight) * PROTECTED_PERCENTAGE);
+        this.sketch = new FrequencySketch(Math.min(maximumWeight, MAXIMUM_INITIAL_SKETCH_SIZE));
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        sketch.increment(key);
+        if (null != window.get(key) || null != protectedRegion.get(key)) {
+            return; // moved to the most recently used position of its region
+        }
+        Integer weight = probation.remove(key);
+        if (null != weight) {
+            protectedRegion.put(key, weight);
+            protectedWeight += weight;
+            // demote the eldest protected keys to probation
+            Iterator<Map.Entry<K, Integer>> eldest = protectedRegion.entrySet().iterator();
+            while (protectedWeight > maximumProtectedWeight && eldest.hasNext()) {
+                Map.Entry<K, Integer> demoted = eldest.next();
+                eldest.remove();
+                protectedWeight -= demoted.getValue();
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void recordMiss(K key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public boolean recordsMisses() {
+        return true;
+    }
+
+    @Override
+    public int frequency(K key) {
+        return sketch.frequency(key);
+    }
+
+    @Override
+    public void restoreFrequency(K key, int frequency) {
+        for (int i = 0; i < frequency; i++) {
+            sketch.increment(key);
+        }
+    }
+
+    @Override
+    public void add(K key, int weight, Consumer<K> evictor) {
+        sketch.increment(key);
+        if (weight > maximumWeight) { // would evict every other key and still not fit
+            evictor.accept(key);
+            return;
+        }
+        window.put(key, weight);
+        windowWeight += weight;
+        weightedSize += weight;
+        sketch.ensureCapacity(size());
+        evict(evictor);
+    }
+
+    @Override
+    public void update(K key, int weight, Consumer<K> evictor) {
+        recordAccess(key);
+        Integer old;
+        if (null != (old = window.get(key))) {
+            window.put(key, weight);
+            windowWeight += weight - old;
+        } else if (null != (old = protectedRegion.get(key))) {
+            protectedRegion.put(key, weight);
+            protectedWeight += weight - old;
+        } else if (null != (old = probation.get(key))) {
+            probation.put(key, weight);
+        } else {
+            return;
+        }
+        weightedSize += weight - old;
+        if (weight > maximumWeight) {
+            evict(key, evictor);
+            return;
+        }
+        evict(evictor);
+    }
+
+    @Override
+    public void remove(K key) {
+        Integer weight;
+        if (null != (weight = window.remove(key))) {
+            windowWeight -= weight;
+        } else if (null != (weight = protectedRegion.remove(key))) {
+            protectedWeight -= weight;
+        } else {
+            weight = probation.remove(key);
+        }
+        if (null != weight) {
+            weightedSize -= weight;
+        }
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        probation.clear();
+        protectedRegion.clear();
+        windowWeight = 0;
+        protectedWeight = 0;
+        weightedSize = 0;
+    }
+
+    @Override
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    private long size() {
+        return (long) window.size() + probation.size() + protectedRegion.size();
+    }
+
+    /**
+     * Move the eldest keys of an overweight window to probation, then evict while the cache is overweight. Every
+     * key which left the window gets one duel with the eldest key of probation.
+     */
+    private void evict(Consumer<K> evictor) {
+        candidates.clear();
+        Iterator<Map.Entry<K, Integer>> eldest = window.entrySet().iterator();
+        while (windowWeight > maximumWindowWeight && eldest.hasNext()) {
+            Map.Entry<K, Integer> candidate = eldest.next();
+            eldest.remove();
+            windowWeight -= candidate.getValue();
+            probation.put(candidate.getKey(), candidate.getValue());
+            candidates.add(candidate.getKey());
+        }
+        int next = 0;
+        while (weightedSize > maximumWeight) {
+            K candidate = null;
+            while (null == candidate && next < candidates.size()) {
+                K key = candidates.get(next);
+                if (probation.containsKey(key)) {
+                    candidate = key;
+                } else { // evicted as a victim of an earlier duel
+                    next++;
+                }
+            }
+            K victim = eldestOf(probation.isEmpty() ? (protectedRegion.isEmpty() ? window : protectedRegion)
+                    : probation);
+            if (null == candidate || candidate.equals(victim)) {
+                evict(victim, evictor);
+            } else if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                evict(victim, evictor);
+            } else { // not admitted
+                evict(candidate, evictor);
+            }
+            if (null != candidate) {
+                next++;
+            }
+        }
+        candidates.clear();
+    }
+
+    /**
+     * Evict the eldest key of the probation region, else of the protected region, else of the window, without a duel.
+     */
+    @Override
+    public boolean evictNext(Consumer<K> evictor) {
+        if (probation.isEmpty() && protectedRegion.isEmpty() && window.isEmpty()) {
+            return false;
+        }
+        evict(eldestOf(probation.isEmpty() ? (protectedRegion.isEmpty() ? window : protectedRegion) : probation),
+                evictor);
+        return true;
+    }
+
+    private void evict(K key, Consumer<K> evictor) {
+        remove(key);
+        evictor.accept(key);
+    }
+
+    private static <K> K eldestOf(LinkedHashMap<K, Integer> region) {
+        return region.keySet().iterator().next();
+    }
+}
@@ -6,6 +6,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author vishnu.g
@@ -58,5 +59,12 @@ public class Main {
         simpleCache.remove("3");
         simpleCache.clear();
 
+        /* How {@com.example.cache.AsyncInMemoryCache} is used */
+        AsyncInMemoryCache<String, String> asyncCache = InMemoryCache.builder()
+                .maximumSize(100)
+                .buildAsync(s -> CompletableFuture.supplyAsync(() -> UUID.randomUUID().toString()));
+        asyncCache.getAsync("1").thenAccept(System.out::println); // loads once for concurrent misses
+        asyncCache.clear();
+
     }
 }
@@ -0,0 +1,53 @@
+package com.example.cache.remote;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct buffers of one size, so writing responses allocates no buffers in the steady state. Direct
+ * buffers are written to a socket without the copy the JDK makes of heap buffers. A buffer larger than the pooled
+ * size is allocated for the one response needing it and not pooled. Not thread-safe, every reactor of the server
+ * owns a pool.
+ *
+ * @author vishnu.g
+ */
+final class BufferPool {
+
+    private final int bufferSize;
+    private final int maximumPooled;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+    /**
+     * @param bufferSize    the size of the pooled buffers in bytes
+     * @param maximumPooled the number of free buffers kept, the others are left to the garbage collector
+     */
+    BufferPool(int bufferSize, int maximumPooled) {
+        this.bufferSize = bufferSize;
+        this.maximumPooled = maximumPooled;
+    }
+
+    /**
+     * @param minimumSize the bytes the buffer should hold at least
+     * @return a cleared buffer, pooled unless larger than the pooled size
+     */
+    ByteBuffer acquire(int minimumSize) {
+        if (minimumSize > bufferSize) {
+            return ByteBuffer.allocateDirect(minimumSize);
+        }
+        ByteBuffer buffer = buffers.pollFirst();
+        return (null != buffer) ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Give a buffer back, a buffer not of the pooled size is dropped.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffers.size() < maximumPooled) {
+            buffers.addFirst(buffer.clear()); // the most recently used buffer is reused first, likely still cached
+        }
+    }
+
+    int pooled() {
+        return buffers.size();
+    }
+}
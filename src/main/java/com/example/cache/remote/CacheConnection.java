@@ -0,0 +1,101 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A connection to one cache node, as used by a {@link ConsistentHashCache}. The operations return futures, so the
+ * router can have requests in flight on many nodes at once; a connection shared by many threads pipelines their
+ * requests, like a {@link RemoteCache}.
+ *
+ * @author vishnu.g
+ */
+public interface CacheConnection<K, V> extends AutoCloseable {
+
+    CompletableFuture<V> getAsync(K key);
+
+    /**
+     * @param ttl time-to-live in the unit of the node cache, negative for its default ttl
+     */
+    CompletableFuture<Void> putAsync(K key, V value, long ttl);
+
+    CompletableFuture<V> removeAsync(K key);
+
+    /**
+     * @return the values by key in the iteration order of the keys; keys without a value are absent
+     */
+    CompletableFuture<Map<K, V>> getAllAsync(Iterable<? extends K> keys);
+
+    CompletableFuture<Long> sizeAsync();
+
+    CompletableFuture<Void> clearAsync();
+
+    /**
+     * Close the connection, the node cache is left as it is.
+     */
+    @Override
+    void close();
+
+    /**
+     * @param cache the cache standing in for a node
+     * @return a connection running the operations on the cache in the calling thread
+     */
+    static <K, V> CacheConnection<K, V> local(Cache<K, V> cache) {
+        return new CacheConnection<K, V>() {
+            @Override
+            public CompletableFuture<V> getAsync(K key) {
+                return call(() -> cache.get(key));
+            }
+
+            @Override
+            public CompletableFuture<Void> putAsync(K key, V value, long ttl) {
+                return call(() -> {
+                    if (ttl < 0) {
+                        cache.put(key, value);
+                    } else {
+                        cache.put(key, value, ttl);
+                    }
+                    return null;
+                });
+            }
+
+            @Override
+            public CompletableFuture<V> removeAsync(K key) {
+                return call(() -> cache.remove(key));
+            }
+
+            @Override
+            public CompletableFuture<Map<K, V>> getAllAsync(Iterable<? extends K> keys) {
+                return call(() -> cache.getAll(keys));
+            }
+
+            @Override
+            public CompletableFuture<Long> sizeAsync() {
+                return call(cache::size);
+            }
+
+            @Override
+            public CompletableFuture<Void> clearAsync() {
+                return call(() -> {
+                    cache.clear();
+                    return null;
+                });
+            }
+
+            @Override
+            public void close() {
+            }
+
+            private <R> CompletableFuture<R> call(Supplier<R> operation) {
+                try {
+                    return CompletableFuture.completedFuture(operation.get());
+                } catch (RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+        };
+    }
+}
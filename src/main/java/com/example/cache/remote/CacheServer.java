@@ -0,0 +1,474 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+import com.example.cache.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves a {@link Cache}, like one built by {@code InMemoryCache.CacheBuilder}, to {@link RemoteCache} clients over
+ * TCP with the binary {@link Protocol}.
+ * <p>
+ * An acceptor thread hands the connections round robin to a few reactor threads, each multiplexing its connections
+ * with a {@link java.nio.channels.Selector}. A reactor decodes every complete request a read brought in, runs it on
+ * the cache and appends the response to pooled direct buffers, which are written once all those requests are done.
+ * So a client pipelining its requests gets many responses with one write. A connection whose responses are not
+ * read stops being read until they are written. The requests run on the reactor threads, a cache with a slow value
+ * loader should load asynchronously or be given more reactors.
+ *
+ * @author vishnu.g
+ */
+public class CacheServer<K, V> implements Closeable {
+
+    private static final System.Logger LOGGER = System.getLogger(CacheServer.class.getName());
+    // in bytes
+    private static final int WRITE_BUFFER_SIZE = 64 << 10;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    // in bytes, grown for larger requests
+    private static final int READ_BUFFER_SIZE = 16 << 10;
+    // a connection with this many buffers of responses not written stops decoding requests
+    private static final int MAX_PENDING_BUFFERS = 16;
+    private static final int MAX_REACTORS = 4;
+
+    private final Cache<K, V> cache;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int reactorCount;
+    // guards starting and closing, held while waiting for the threads to end
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private final List<Reactor> reactors = new ArrayList<>();
+
+    /**
+     * @param cache           the cache to serve
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     */
+    public CacheServer(Cache<K, V> cache, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cache, keySerializer, valueSerializer,
+                Math.min(Runtime.getRuntime().availableProcessors(), MAX_REACTORS));
+    }
+
+    /**
+     * @param cache           the cache to serve
+     * @param keySerializer   the serializer of the keys
+     * @param valueSerializer the serializer of the values
+     * @param reactorCount    the number of threads serving the connections
+     * @throws IllegalArgumentException if {@code reactorCount} is zero or negative
+     */
+    public CacheServer(Cache<K, V> cache, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                       int reactorCount) throws IllegalArgumentException {
+        if (reactorCount <= 0) {
+            throw new IllegalArgumentException("reactorCount should be greater than zero");
+        }
+        this.cache = Objects.requireNonNull(cache);
+        this.keySerializer = Objects.requireNonNull(keySerializer);
+        this.valueSerializer = Objects.requireNonNull(valueSerializer);
+        this.reactorCount = reactorCount;
+    }
+
+    /**
+     * Listen on the address and start serving.
+     *
+     * @param address the address, a port of zero binds an ephemeral port
+     * @return the address listened on
+     * @throws IOException           if the address cannot be bound
+     * @throws IllegalStateException if the server was already started
+     */
+    public InetSocketAddress start(SocketAddress address) throws IOException {
+        lifecycleLock.lock();
+        try {
+            if (null != serverChannel) {
+                throw new IllegalStateException("already started");
+            }
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address);
+            for (int i = 0; i < reactorCount; i++) {
+                Reactor reactor = new Reactor(Selector.open());
+                reactors.add(reactor);
+                reactor.thread = startThread(reactor, "cache-server-reactor-" + (i + 1));
+            }
+            acceptor = startThread(this::accept, "cache-server-acceptor");
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting connections and close the open ones. The cache is left as it is.
+     */
+    @Override
+    public void close() throws IOException {
+        lifecycleLock.lock();
+        try {
+            if (null == serverChannel) {
+                return;
+            }
+            serverChannel.close();
+            for (Reactor reactor : reactors) {
+                reactor.stop();
+            }
+            try {
+                acceptor.join();
+                for (Reactor reactor : reactors) {
+                    reactor.thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private Thread startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void accept() {
+        int next = 0;
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                reactors.get(next++ % reactors.size()).register(channel);
+            } catch (AsynchronousCloseException e) { // closed
+                return;
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "accepting a connection failed", e);
+            }
+        }
+    }
+
+    /**
+     * Serves its connections on one thread, which owns the buffers.
+     */
+    private final class Reactor implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        private final BufferPool pool = new BufferPool(WRITE_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        private Thread thread;
+        private volatile boolean stopped;
+
+        private Reactor(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Wake the reactor up to close its connections and end.
+         */
+        private void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+
+        private void register(SocketChannel channel) {
+            registrations.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    selector.select();
+                    for (SocketChannel channel; null != (channel = registrations.poll()); ) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel, this));
+                    }
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        ((CacheServer<?, ?>.Connection) key.attachment()).handle(key);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "cache server reactor failed", e);
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                ((CacheServer<?, ?>.Connection) key.attachment()).close();
+            }
+            for (SocketChannel channel; null != (channel = registrations.poll()); ) {
+                closeQuietly(channel);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.DEBUG, "closing the selector failed", e);
+            }
+        }
+    }
+
+    /**
+     * A client connection, only used by the thread of its reactor.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Reactor reactor;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // responses to write, flipped, oldest first
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        // the buffer responses are appended to, not flipped
+        private ByteBuffer current;
+
+        private Connection(SocketChannel channel, Reactor reactor) {
+            this.channel = channel;
+            this.reactor = reactor;
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    flush(key);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    if (channel.read(in) < 0) {
+                        close();
+                        return;
+                    }
+                }
+                // a batch of responses cut short leaves requests behind, which the client waits on without
+                // sending more, so go on while the socket takes the responses
+                boolean requestsLeft = true;
+                while (requestsLeft && out.isEmpty()) {
+                    requestsLeft = process();
+                    flush(key);
+                }
+            } catch (Protocol.ProtocolException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "closing " + channel + ": " + e.getMessage());
+                close();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.DEBUG, "closing " + channel, e);
+                close();
+            }
+        }
+
+        /**
+         * Run the complete requests in the read buffer, until the responses not written pile up.
+         *
+         * @return true if stopped by the responses piling up, with requests possibly left
+         */
+        private boolean process() throws Protocol.ProtocolException {
+            in.flip();
+            boolean cutShort = false;
+            while (in.remaining() >= Protocol.LENGTH_SIZE) {
+                if (out.size() >= MAX_PENDING_BUFFERS) {
+                    cutShort = true;
+                    break;
+                }
+                int length = in.getInt(in.position());
+                if (length <= 0 || length > Protocol.MAX_FRAME_LENGTH) {
+                    throw new Protocol.ProtocolException("bad frame length " + length);
+                }
+                int frameSize = Protocol.LENGTH_SIZE + length;
+                if (in.remaining() < frameSize) {
+                    break;
+                }
+                ByteBuffer frame = in.slice();
+                frame.limit(frameSize).position(Protocol.LENGTH_SIZE);
+                execute(frame);
+                in.position(in.position() + frameSize);
+            }
+            in.compact();
+            // make room for a request larger than the buffer
+            if (in.position() >= Protocol.LENGTH_SIZE) {
+                int frameSize = Protocol.LENGTH_SIZE + in.getInt(0);
+                if (frameSize > in.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocate(frameSize);
+                    in.flip();
+                    larger.put(in);
+                    in = larger;
+                }
+            }
+            return cutShort;
+        }
+
+        private void execute(ByteBuffer frame) throws Protocol.ProtocolException {
+            byte opcode = frame.get();
+            try {
+                switch (opcode) {
+                    case Protocol.GET:
+                        K key = key(frame);
+                        end(frame);
+                        respondValue(cache.get(key));
+                        break;
+                    case Protocol.PUT:
+                        long ttl = Protocol.getLong(frame);
+                        key = key(frame);
+                        ByteBuffer value = Protocol.getBytes(frame);
+                        end(frame);
+                        if (null == value || (ttl < 0 && Protocol.DEFAULT_TTL != ttl)) {
+                            throw new Protocol.ProtocolException("bad put");
+                        }
+                        if (Protocol.DEFAULT_TTL == ttl) {
+                            cache.put(key, valueSerializer.deserialize(value));
+                        } else {
+                            cache.put(key, valueSerializer.deserialize(value), ttl);
+                        }
+                        respondEmpty();
+                        break;
+                    case Protocol.REMOVE:
+                        key = key(frame);
+                        end(frame);
+                        respondValue(cache.remove(key));
+                        break;
+                    case Protocol.MULTI_GET:
+                        int count = Protocol.getInt(frame);
+                        if (count < 0 || count > frame.remaining() / Protocol.LENGTH_SIZE) {
+                            throw new Protocol.ProtocolException("bad key count " + count);
+                        }
+                        List<K> keys = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            keys.add(key(frame));
+                        }
+                        end(frame);
+                        respondValues(keys, cache.getAll(keys));
+                        break;
+                    case Protocol.SIZE:
+                        end(frame);
+                        respondSize(cache.size());
+                        break;
+                    case Protocol.CLEAR:
+                        end(frame);
+                        cache.clear();
+                        respondEmpty();
+                        break;
+                    default:
+                        throw new Protocol.ProtocolException("unknown opcode " + opcode);
+                }
+            } catch (RuntimeException e) { // the cache failed, the connection goes on
+                LOGGER.log(System.Logger.Level.DEBUG, "request failed", e);
+                respondError(e.toString());
+            }
+        }
+
+        private K key(ByteBuffer frame) throws Protocol.ProtocolException {
+            ByteBuffer key = Protocol.getBytes(frame);
+            if (null == key) {
+                throw new Protocol.ProtocolException("missing key");
+            }
+            return keySerializer.deserialize(key);
+        }
+
+        private void end(ByteBuffer frame) throws Protocol.ProtocolException {
+            if (frame.hasRemaining()) {
+                throw new Protocol.ProtocolException("trailing bytes");
+            }
+        }
+
+        private void respondValue(V value) {
+            byte[] bytes = (null != value) ? valueSerializer.serialize(value) : null;
+            reserve(Protocol.sizeOf(bytes) + 1).putInt(Protocol.sizeOf(bytes) + 1).put(Protocol.OK);
+            Protocol.putBytes(current, bytes);
+        }
+
+        private void respondValues(List<K> keys, Map<K, V> values) {
+            byte[][] serialized = new byte[keys.size()][];
+            int length = 1 + Integer.BYTES;
+            for (int i = 0; i < serialized.length; i++) {
+                V value = values.get(keys.get(i));
+                serialized[i] = (null != value) ? valueSerializer.serialize(value) : null;
+                length += Protocol.sizeOf(serialized[i]);
+            }
+            reserve(length).putInt(length).put(Protocol.OK).putInt(serialized.length);
+            for (byte[] bytes : serialized) {
+                Protocol.putBytes(current, bytes);
+            }
+        }
+
+        private void respondSize(long size) {
+            reserve(1 + Long.BYTES).putInt(1 + Long.BYTES).put(Protocol.OK).putLong(size);
+        }
+
+        private void respondEmpty() {
+            reserve(1).putInt(1).put(Protocol.OK);
+        }
+
+        private void respondError(String message) {
+            byte[] bytes = Protocol.utf8(message);
+            reserve(1 + bytes.length).putInt(1 + bytes.length).put(Protocol.ERROR).put(bytes);
+        }
+
+        /**
+         * @return the buffer to append a response with a body of the given length to
+         */
+        private ByteBuffer reserve(int length) {
+            int size = Protocol.LENGTH_SIZE + length;
+            if (null == current || current.remaining() < size) {
+                if (null != current) {
+                    out.add(current.flip());
+                }
+                current = reactor.pool.acquire(size);
+            }
+            return current;
+        }
+
+        /**
+         * Write the responses, registering for writability if the socket does not take them all.
+         */
+        private void flush(SelectionKey key) throws IOException {
+            if (null != current && current.position() > 0) {
+                out.add(current.flip());
+                current = null;
+            }
+            while (!out.isEmpty()) {
+                ByteBuffer buffer = out.peekFirst();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                reactor.pool.release(out.pollFirst());
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close() {
+            closeQuietly(channel);
+            for (ByteBuffer buffer; null != (buffer = out.pollFirst()); ) {
+                reactor.pool.release(buffer);
+            }
+            if (null != current) {
+                reactor.pool.release(current);
+                current = null;
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "closing " + channel + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+import com.example.cache.Serializer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Opens the connections of a {@link ConsistentHashCache} to its nodes. A node is named by a string, the transport
+ * decides what the name means: an address for {@link #tcp(Serializer, Serializer)}, a key of a map of caches for
+ * {@link #local(Map)}.
+ *
+ * @author vishnu.g
+ */
+@FunctionalInterface
+public interface CacheTransport<K, V> {
+
+    /**
+     * @param node the name of the node
+     * @return a connection to the node, used by all the threads of the router
+     * @throws IOException if the node cannot be reached
+     */
+    CacheConnection<K, V> connect(String node) throws IOException;
+
+    /**
+     * @return a transport connecting to {@link CacheServer}s named {@code host:port}
+     */
+    static <K, V> CacheTransport<K, V> tcp(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return node -> {
+            int colon = node.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("node should be host:port, was " + node);
+            }
+            InetSocketAddress address = new InetSocketAddress(node.substring(0, colon),
+                    Integer.parseInt(node.substring(colon + 1)));
+            return new RemoteCache<>(address, keySerializer, valueSerializer);
+        };
+    }
+
+    /**
+     * @param caches the in-process caches standing in for the nodes, by node name
+     * @return a transport connecting to the caches without a network
+     */
+    static <K, V> CacheTransport<K, V> local(Map<String, ? extends Cache<K, V>> caches) {
+        return node -> {
+            Cache<K, V> cache = caches.get(node);
+            if (null == cache) {
+                throw new IOException("unknown node " + node);
+            }
+            return CacheConnection.local(cache);
+        };
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Cache} spread over several cache nodes by consistent hashing.
+ * <p>
+ * Every node owns {@code virtualNodes} points on a ring of 64-bit hashes, a key belongs to the node of the first point
+ * at or after the hash of the key. Adding or removing one of N nodes so moves only about 1/N of the keys, and the
+ * many points per node even out the share of each node. The keys moved are not copied over: they are missing from
+ * their new node until put again, and left to expire on their old one.
+ * <p>
+ * The nodes are reached through a {@link CacheTransport}, which opens one connection per node shared by all threads,
+ * so the requests of the threads are pipelined on it. The bulk operations group the keys by node and send all the
+ * batches before waiting for any, so the nodes serve them in parallel.
+ *
+ * @author vishnu.g
+ */
+public class ConsistentHashCache<K, V> implements Cache<K, V> {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final CacheTransport<K, V> transport;
+    private final int virtualNodes;
+    private final Map<String, CacheConnection<K, V>> connections = new ConcurrentHashMap<>();
+    // serializes the changes of the nodes, held while connecting
+    private final ReentrantLock nodesLock = new ReentrantLock();
+    // replaced as a whole when the nodes change
+    private volatile Ring ring = new Ring(new long[0], new String[0]);
+
+    /**
+     * @param nodes     the names of the nodes
+     * @param transport connects to the nodes
+     * @throws IOException if a node cannot be reached, the nodes connected are closed
+     */
+    public ConsistentHashCache(Collection<String> nodes, CacheTransport<K, V> transport) throws IOException {
+        this(nodes, transport, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param nodes        the names of the nodes
+     * @param transport    connects to the nodes
+     * @param virtualNodes the number of points of every node on the ring
+     * @throws IOException              if a node cannot be reached, the nodes connected are closed
+     * @throws IllegalArgumentException if {@code virtualNodes} is zero or negative
+     */
+    public ConsistentHashCache(Collection<String> nodes, CacheTransport<K, V> transport, int virtualNodes)
+            throws IOException, IllegalArgumentException {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes should be greater than zero");
+        }
+        this.transport = Objects.requireNonNull(transport);
+        this.virtualNodes = virtualNodes;
+        try {
+            for (String node : nodes) {
+                addNode(node);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connect to a node and give it its share of the keys.
+     *
+     * @param node the name of the node
+     * @throws IOException if the node cannot be reached
+     */
+    public void addNode(String node) throws IOException {
+        nodesLock.lock();
+        try {
+            if (connections.containsKey(node)) {
+                return;
+            }
+            connections.put(node, transport.connect(node));
+            ring = ring.with(node, virtualNodes);
+        } finally {
+            nodesLock.unlock();
+        }
+    }
+
+    /**
+     * Give the keys of a node to the other nodes and close its connection. Its entries are not moved.
+     *
+     * @param node the name of the node
+     */
+    public void removeNode(String node) {
+        nodesLock.lock();
+        try {
+            CacheConnection<K, V> connection = connections.remove(node);
+            if (null != connection) {
+                ring = ring.without(node);
+                connection.close();
+            }
+        } finally {
+            nodesLock.unlock();
+        }
+    }
+
+    /**
+     * @return the names of the nodes
+     */
+    public Set<String> nodes() {
+        return Collections.unmodifiableSet(connections.keySet());
+    }
+
+    /**
+     * @return the name of the node owning the key
+     * @throws IllegalStateException if there is no node
+     */
+    public String nodeFor(K key) {
+        return ring.nodeFor(hash(key));
+    }
+
+    private CacheConnection<K, V> connectionFor(K key) {
+        return connection(nodeFor(key));
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        RemoteCache.join(connectionFor(key).putAsync(key, value, ttl));
+    }
+
+    @Override
+    public void put(K key, V value) {
+        RemoteCache.join(connectionFor(key).putAsync(key, value, Protocol.DEFAULT_TTL));
+    }
+
+    @Override
+    public V remove(K key) {
+        return RemoteCache.join(connectionFor(key).removeAsync(key));
+    }
+
+    @Override
+    public V get(K key) {
+        return RemoteCache.join(connectionFor(key).getAsync(key));
+    }
+
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        List<K> keyList = new ArrayList<>();
+        Map<String, List<K>> batches = new HashMap<>();
+        for (K key : keys) {
+            keyList.add(key);
+            batches.computeIfAbsent(nodeFor(key), node -> new ArrayList<>()).add(key);
+        }
+        List<CompletableFuture<Map<K, V>>> futures = new ArrayList<>(batches.size());
+        batches.forEach((node, batch) -> futures.add(connection(node).getAllAsync(batch)));
+        Map<K, V> found = new HashMap<>();
+        for (CompletableFuture<Map<K, V>> future : futures) {
+            found.putAll(RemoteCache.join(future));
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keyList) {
+            V value = found.get(key);
+            if (null != value) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        List<CompletableFuture<Void>> puts = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> puts.add(connectionFor(key).putAsync(key, value, ttl)));
+        puts.forEach(RemoteCache::join);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        List<CompletableFuture<V>> removes = new ArrayList<>();
+        keys.forEach(key -> removes.add(connectionFor(key).removeAsync(key)));
+        removes.forEach(RemoteCache::join);
+    }
+
+    @Override
+    public void clear() {
+        List<CompletableFuture<Void>> clears = new ArrayList<>();
+        connections.values().forEach(connection -> clears.add(connection.clearAsync()));
+        clears.forEach(RemoteCache::join);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public long size() {
+        List<CompletableFuture<Long>> sizes = new ArrayList<>();
+        connections.values().forEach(connection -> sizes.add(connection.sizeAsync()));
+        long size = 0;
+        for (CompletableFuture<Long> future : sizes) {
+            size += RemoteCache.join(future);
+        }
+        return size;
+    }
+
+    /**
+     * @return zero, the capacities of the nodes are not known to their clients
+     */
+    @Override
+    public int capacity() {
+        return 0;
+    }
+
+    /**
+     * Close the connections to the nodes. The node caches are left as they are.
+     */
+    @Override
+    public void close() {
+        nodesLock.lock();
+        try {
+            connections.values().forEach(CacheConnection::close);
+            connections.clear();
+            ring = new Ring(new long[0], new String[0]);
+        } finally {
+            nodesLock.unlock();
+        }
+    }
+
+    private CacheConnection<K, V> connection(String node) {
+        CacheConnection<K, V> connection = connections.get(node);
+        if (null == connection) { // removed since the ring was read
+            throw new IllegalStateException("node " + node + " was removed");
+        }
+        return connection;
+    }
+
+    private static long hash(Object key) {
+        return mix(key.hashCode());
+    }
+
+    /**
+     * @return the point of a virtual node, from the FNV-1a hash of its name
+     */
+    private static long hash(String node, int virtualNode) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (node + '#' + virtualNode).getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading close inputs over the whole ring.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9f2a81a3ab5L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * The points of the ring, sorted, and the node of each.
+     */
+    private static final class Ring {
+        private final long[] points;
+        private final String[] nodes;
+
+        private Ring(long[] points, String[] nodes) {
+            this.points = points;
+            this.nodes = nodes;
+        }
+
+        private String nodeFor(long hash) {
+            if (points.length == 0) {
+                throw new IllegalStateException("no cache node");
+            }
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1; // the first point after the hash
+            }
+            return nodes[(index == points.length) ? 0 : index];
+        }
+
+        private Ring with(String node, int virtualNodes) {
+            TreeMap<Long, String> sorted = toMap();
+            for (int i = 0; i < virtualNodes; i++) {
+                sorted.putIfAbsent(hash(node, i), node); // a colliding point stays with its node
+            }
+            return of(sorted);
+        }
+
+        private Ring without(String node) {
+            TreeMap<Long, String> sorted = toMap();
+            sorted.values().removeIf(node::equals);
+            return of(sorted);
+        }
+
+        private TreeMap<Long, String> toMap() {
+            TreeMap<Long, String> sorted = new TreeMap<>();
+            for (int i = 0; i < points.length; i++) {
+                sorted.put(points[i], nodes[i]);
+            }
+            return sorted;
+        }
+
+        private static Ring of(TreeMap<Long, String> sorted) {
+            long[] points = new long[sorted.size()];
+            String[] nodes = new String[sorted.size()];
+            int i = 0;
+            for (Map.Entry<Long, String> point : sorted.entrySet()) {
+                points[i] = point.getKey();
+                nodes[i++] = point.getValue();
+            }
+            return new Ring(points, nodes);
+        }
+    }
+}
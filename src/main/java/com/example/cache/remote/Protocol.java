@@ -0,0 +1,112 @@
+package com.example.cache.remote;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol between a {@link RemoteCache} and a {@link CacheServer}.
+ * <p>
+ * Every message is a frame of its length in bytes as an {@code int}, not counting the length itself, and its body.
+ * A request body is an opcode byte and its arguments, a response body a status byte and its result. Integers are
+ * big-endian, a key or value is its length as an {@code int} and its serialized bytes, a length of -1 stands for
+ * no value.
+ * <pre>
+ * GET       key                   -> value
+ * PUT       ttl (long) key value  -> (empty)
+ * REMOVE    key                   -> removed value
+ * MULTI_GET count (int) keys      -> count (int) values, in the order of the keys
+ * SIZE                            -> size (long)
+ * CLEAR                           -> (empty)
+ * </pre>
+ * A ttl of -1 puts with the default ttl of the cache, in the unit of the cache otherwise. A response has the status
+ * {@link #OK}, or {@link #ERROR} followed by a UTF-8 message if the cache failed. A client may send requests without
+ * waiting for the responses, which come back in the order of the requests.
+ *
+ * @author vishnu.g
+ */
+final class Protocol {
+
+    static final byte GET = 1;
+    static final byte PUT = 2;
+    static final byte REMOVE = 3;
+    static final byte MULTI_GET = 4;
+    static final byte SIZE = 5;
+    static final byte CLEAR = 6;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // ttl of a put with the default ttl of the cache
+    static final long DEFAULT_TTL = -1L;
+    // length of an absent value
+    static final int NO_VALUE = -1;
+    // in bytes, a larger frame is a protocol violation
+    static final int MAX_FRAME_LENGTH = 64 << 20;
+    // in bytes
+    static final int LENGTH_SIZE = 4;
+
+    private Protocol() {
+    }
+
+    /**
+     * @return the encoded size of the bytes, the length prefix alone if they are {@code null} for no value
+     */
+    static int sizeOf(byte[] bytes) {
+        return LENGTH_SIZE + ((null != bytes) ? bytes.length : 0);
+    }
+
+    static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (null == bytes) {
+            buffer.putInt(NO_VALUE);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * @return the next bytes of the buffer as a buffer of their own, moving past them, {@code null} for no value
+     * @throws ProtocolException if the length does not fit the frame
+     */
+    static ByteBuffer getBytes(ByteBuffer buffer) throws ProtocolException {
+        int length = getInt(buffer);
+        if (NO_VALUE == length) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new ProtocolException("bad length " + length);
+        }
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return bytes;
+    }
+
+    static int getInt(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new ProtocolException("truncated frame");
+        }
+        return buffer.getInt();
+    }
+
+    static long getLong(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < Long.BYTES) {
+            throw new ProtocolException("truncated frame");
+        }
+        return buffer.getLong();
+    }
+
+    static byte[] utf8(String message) {
+        return String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A frame which does not follow the protocol, the connection is closed.
+     */
+    static final class ProtocolException extends Exception {
+        private static final long serialVersionUID = 4616830201937476236L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
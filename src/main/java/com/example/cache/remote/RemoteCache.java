@@ -0,0 +1,332 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+import com.example.cache.Serializer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Cache} served by a {@link CacheServer}, over one connection shared by all the threads using it.
+ * <p>
+ * Requests are pipelined: a request is written without waiting for the responses to the ones before it, a reader
+ * thread completes the futures of the requests in order as their responses come in. The {@code ...Async} methods
+ * return those futures, so one thread can have many requests in flight, the {@link Cache} methods wait for theirs.
+ * The bulk operations send all their requests before waiting for any response. A failure of the server cache is
+ * thrown as an {@link IllegalStateException}, a failure of the connection as an {@link UncheckedIOException} and
+ * fails every request in flight; the cache is then unusable.
+ *
+ * @author vishnu.g
+ */
+public class RemoteCache<K, V> implements Cache<K, V>, CacheConnection<K, V> {
+
+    private final SocketChannel channel;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    // guards the writes, so the requests are queued in the order they are sent
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // requests sent and waiting for their response, oldest first
+    private final ConcurrentLinkedQueue<Request<?>> inFlight = new ConcurrentLinkedQueue<>();
+    private volatile IOException failure;
+
+    /**
+     * Connect to a server.
+     *
+     * @param address         the address of the server
+     * @param keySerializer   the serializer of the keys, as used by the server
+     * @param valueSerializer the serializer of the values, as used by the server
+     * @throws IOException if the connection fails
+     */
+    public RemoteCache(InetSocketAddress address, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        this.keySerializer = Objects.requireNonNull(keySerializer);
+        this.valueSerializer = Objects.requireNonNull(valueSerializer);
+        this.channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread reader = new Thread(this::read, "cache-client-" + address);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(K key) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        ByteBuffer request = request(Protocol.GET, Protocol.sizeOf(keyBytes));
+        Protocol.putBytes(request, keyBytes);
+        return send(request, this::value);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(K key, V value, long ttl) {
+        if (null == value) {
+            return removeAsync(key).thenApply(removed -> null);
+        }
+        byte[] keyBytes = keySerializer.serialize(key);
+        byte[] valueBytes = valueSerializer.serialize(value);
+        ByteBuffer request = request(Protocol.PUT,
+                Long.BYTES + Protocol.sizeOf(keyBytes) + Protocol.sizeOf(valueBytes));
+        request.putLong((ttl < 0) ? Protocol.DEFAULT_TTL : ttl);
+        Protocol.putBytes(request, keyBytes);
+        Protocol.putBytes(request, valueBytes);
+        return send(request, body -> null);
+    }
+
+    @Override
+    public CompletableFuture<V> removeAsync(K key) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        ByteBuffer request = request(Protocol.REMOVE, Protocol.sizeOf(keyBytes));
+        Protocol.putBytes(request, keyBytes);
+        return send(request, this::value);
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> getAllAsync(Iterable<? extends K> keys) {
+        List<K> keyList = new ArrayList<>();
+        List<byte[]> keyBytes = new ArrayList<>();
+        int length = Integer.BYTES;
+        for (K key : keys) {
+            byte[] bytes = keySerializer.serialize(key);
+            keyList.add(key);
+            keyBytes.add(bytes);
+            length += Protocol.sizeOf(bytes);
+        }
+        ByteBuffer request = request(Protocol.MULTI_GET, length).putInt(keyBytes.size());
+        keyBytes.forEach(bytes -> Protocol.putBytes(request, bytes));
+        return send(request, body -> {
+            int count = Protocol.getInt(body);
+            if (count != keyList.size()) {
+                throw new Protocol.ProtocolException("expected " + keyList.size() + " values, got " + count);
+            }
+            Map<K, V> values = new LinkedHashMap<>();
+            for (K key : keyList) {
+                V value = value(body);
+                if (null != value) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> sizeAsync() {
+        return send(request(Protocol.SIZE, 0), Protocol::getLong);
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAsync() {
+        return send(request(Protocol.CLEAR, 0), body -> null);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        join(putAsync(key, value, ttl));
+    }
+
+    @Override
+    public void put(K key, V value) {
+        join(putAsync(key, value, Protocol.DEFAULT_TTL));
+    }
+
+    @Override
+    public V remove(K key) {
+        return join(removeAsync(key));
+    }
+
+    @Override
+    public V get(K key) {
+        return join(getAsync(key));
+    }
+
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        return join(getAllAsync(keys));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        List<CompletableFuture<Void>> puts = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> puts.add(putAsync(key, value, ttl)));
+        puts.forEach(RemoteCache::join);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        List<CompletableFuture<V>> removes = new ArrayList<>();
+        keys.forEach(key -> removes.add(removeAsync(key)));
+        removes.forEach(RemoteCache::join);
+    }
+
+    @Override
+    public void clear() {
+        join(clearAsync());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public long size() {
+        return join(sizeAsync());
+    }
+
+    /**
+     * @return zero, the capacity of the server cache is not known to its clients
+     */
+    @Override
+    public int capacity() {
+        return 0;
+    }
+
+    /**
+     * Close the connection, failing the requests in flight. The server cache is left as it is.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private V value(ByteBuffer body) throws Protocol.ProtocolException {
+        ByteBuffer bytes = Protocol.getBytes(body);
+        return (null != bytes) ? valueSerializer.deserialize(bytes) : null;
+    }
+
+    private static ByteBuffer request(byte opcode, int length) {
+        return ByteBuffer.allocate(Protocol.LENGTH_SIZE + 1 + length).putInt(1 + length).put(opcode);
+    }
+
+    private <R> CompletableFuture<R> send(ByteBuffer buffer, Decoder<R> decoder) {
+        Request<R> request = new Request<>(decoder);
+        buffer.flip();
+        writeLock.lock();
+        try {
+            if (null != failure) {
+                request.completeExceptionally(new UncheckedIOException(failure));
+                return request;
+            }
+            inFlight.add(request); // before writing, the response may come before write returns
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            writeLock.unlock();
+        }
+        return request;
+    }
+
+    /**
+     * Complete the requests with the responses until the connection closes.
+     */
+    private void read() {
+        ByteBuffer length = ByteBuffer.allocate(Protocol.LENGTH_SIZE);
+        try {
+            while (true) {
+                readFully(length.clear());
+                int size = length.flip().getInt();
+                if (size <= 0 || size > Protocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("bad frame length " + size);
+                }
+                ByteBuffer body = ByteBuffer.allocate(size);
+                readFully(body);
+                Request<?> request = inFlight.poll();
+                if (null == request) {
+                    throw new IOException("response without a request");
+                }
+                request.completeWith(body.flip());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("connection closed by the server");
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        writeLock.lock();
+        try {
+            if (null == failure) {
+                failure = e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // no request is queued once the failure is set
+        for (Request<?> request; null != (request = inFlight.poll()); ) {
+            request.completeExceptionally(new UncheckedIOException(failure));
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) { // already failed
+        }
+    }
+
+    /**
+     * Wait for the future, throwing the cause of its failure if unchecked.
+     */
+    static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Decoder<R> {
+        R decode(ByteBuffer body) throws Protocol.ProtocolException;
+    }
+
+    private static final class Request<R> extends CompletableFuture<R> {
+        private final Decoder<R> decoder;
+
+        private Request(Decoder<R> decoder) {
+            this.decoder = decoder;
+        }
+
+        private void completeWith(ByteBuffer body) throws IOException {
+            if (Protocol.ERROR == body.get()) {
+                completeExceptionally(new IllegalStateException(StandardCharsets.UTF_8.decode(body).toString()));
+                return;
+            }
+            try {
+                complete(decoder.decode(body));
+            } catch (Protocol.ProtocolException e) {
+                throw new IOException(e.getMessage(), e);
+            } catch (RuntimeException e) { // the value could not be deserialized
+                completeExceptionally(e);
+            }
+        }
+    }
+}
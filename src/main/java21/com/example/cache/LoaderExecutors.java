@@ -0,0 +1,35 @@
+package com.example.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for the loads of a cache, see {@link InMemoryCache.CacheBuilder#threadPerLoad()}.
+ * <p>
+ * The Java 21 version of this class, in the versioned part of the multi-release jar: every load runs on a virtual
+ * thread of its own. A load waiting on its backend unmounts from its carrier thread, so the loads in flight are
+ * bounded by memory rather than by a thread pool. The caches guard their state with {@link
+ * java.util.concurrent.locks.ReentrantLock}s, not {@code synchronized}, so waiting for a lock does not pin the
+ * carrier either.
+ *
+ * @author vishnu.g
+ */
+public final class LoaderExecutors {
+
+    private LoaderExecutors() {
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task; it needs no shutdown
+     */
+    public static ExecutorService threadPerLoad() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-loader-", 1).factory());
+    }
+
+    /**
+     * @return {@code true} if {@link #threadPerLoad()} runs the loads on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return true;
+    }
+}
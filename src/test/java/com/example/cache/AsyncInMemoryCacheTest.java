@@ -0,0 +1,98 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class AsyncInMemoryCacheTest {
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> backend = new CompletableFuture<>();
+        AsyncInMemoryCache<String, String> simpleCache = InMemoryCache.builder()
+                .buildAsync(key -> {
+                    loads.incrementAndGet();
+                    return backend;
+                });
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(simpleCache.getAsync("1"));
+        }
+        backend.complete("one");
+        for (CompletableFuture<String> future : futures) {
+            assertEquals("one", future.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals("one", simpleCache.get("1")); // served from the cache
+        assertEquals(1, loads.get());
+        assertEquals(1, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AsyncInMemoryCache<String, String> simpleCache = InMemoryCache.builder()
+                .executor(Runnable::run)
+                .buildAsync(key -> loads.incrementAndGet() == 1
+                        ? CompletableFuture.failedFuture(new IllegalStateException("backend down"))
+                        : CompletableFuture.completedFuture("one"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> simpleCache.getAsync("1").get());
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertTrue(simpleCache.isEmpty());
+        assertEquals("one", simpleCache.getAsync("1").get()); // loads again
+        assertEquals(2, loads.get());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testLoadRunsOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "loader"));
+        AsyncInMemoryCache<String, String> simpleCache = InMemoryCache.builder()
+                .executor(executor)
+                .buildAsync(key -> CompletableFuture.completedFuture(Thread.currentThread().getName()));
+        assertEquals("loader", simpleCache.getAsync("1").get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testPutWinsOverLoad() throws Exception {
+        CompletableFuture<String> backend = new CompletableFuture<>();
+        AsyncInMemoryCache<String, String> simpleCache = InMemoryCache.builder().buildAsync(key -> backend);
+        CompletableFuture<String> future = simpleCache.getAsync("1");
+        simpleCache.put("1", "ONE");
+        backend.complete("one");
+        assertEquals("one", future.get(1, TimeUnit.SECONDS));
+        assertEquals("ONE", simpleCache.get("1"));
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRecordStats() throws Exception {
+        AsyncInMemoryCache<String, String> simpleCache = InMemoryCache.builder()
+                .recordStats()
+                .executor(Runnable::run)
+                .buildAsync(key -> key.equals("fail")
+                        ? CompletableFuture.failedFuture(new IllegalStateException("backend down"))
+                        : CompletableFuture.completedFuture("loaded-" + key));
+        assertEquals("loaded-1", simpleCache.getAsync("1").get());
+        assertEquals("loaded-1", simpleCache.getAsync("1").get());
+        assertThrows(ExecutionException.class, () -> simpleCache.getAsync("fail").get());
+        CacheStats stats = simpleCache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        simpleCache.clear();
+    }
+}
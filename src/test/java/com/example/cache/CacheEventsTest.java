@@ -0,0 +1,73 @@
+package com.example.cache;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class CacheEventsTest {
+
+    @Test
+    public void testEventsAreRecordedOnlyIfEnabled() throws Exception {
+        InMemoryCache<Integer, String> simpleCache = InMemoryCache.builder()
+                .maximumSize(2)
+                .registerMBean("events-test")
+                .build(key -> {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(20); // a slow backend
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "value-" + key;
+                });
+        try {
+            simpleCache.get(0); // no recording, nothing to record to
+            List<RecordedEvent> events;
+            try (Recording recording = new Recording()) {
+                recording.enable("com.example.cache.SlowLoad");
+                recording.enable("com.example.cache.EvictionBatch");
+                recording.start();
+                simpleCache.get(1);
+                simpleCache.put(2, "value-2", 0); // evicts the first key
+                recording.stop();
+                Path file = Files.createTempFile("cache-events", ".jfr");
+                try {
+                    recording.dump(file);
+                    events = RecordingFile.readAllEvents(file);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+            List<RecordedEvent> loads = eventsNamed(events, "com.example.cache.SlowLoad");
+            assertEquals(1, loads.size());
+            assertEquals("events-test", loads.get(0).getString("cache"));
+            assertEquals("1", loads.get(0).getString("key"));
+            assertFalse(loads.get(0).getBoolean("failed"));
+            assertTrue(loads.get(0).getDuration().compareTo(Duration.ofMillis(10)) >= 0);
+            List<RecordedEvent> evictions = eventsNamed(events, "com.example.cache.EvictionBatch");
+            assertEquals(1, evictions.size());
+            assertEquals(1, evictions.get(0).getInt("evicted"));
+            assertTrue(eventsNamed(events, "com.example.cache.ExpirySweep").isEmpty()); // not enabled
+        } finally {
+            simpleCache.close();
+        }
+    }
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+}
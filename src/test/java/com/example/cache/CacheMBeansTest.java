@@ -0,0 +1,74 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class CacheMBeansTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void testRegisteredCacheIsExposed() throws Exception {
+        InMemoryCache<Integer, String> simpleCache = InMemoryCache.builder()
+                .maximumSize(2)
+                .recordStats()
+                .registerMBean("mbean-test")
+                .build();
+        ObjectName objectName = new ObjectName("com.example.cache:type=Cache,name=\"mbean-test\"");
+        try {
+            simpleCache.put(1, "value-1", 0);
+            simpleCache.put(2, "value-2", 0);
+            simpleCache.put(3, "value-3", 0);
+            simpleCache.get(3);
+            simpleCache.get(4);
+            assertEquals(2L, server.getAttribute(objectName, "Size"));
+            assertEquals(2L, server.getAttribute(objectName, "Capacity"));
+            assertEquals(1L, server.getAttribute(objectName, "HitCount"));
+            assertEquals(1L, server.getAttribute(objectName, "MissCount"));
+            assertEquals(0.5, server.getAttribute(objectName, "HitRatio"));
+            assertEquals(1L, server.getAttribute(objectName, "EvictionCount"));
+            // names are unique
+            assertThrows(IllegalArgumentException.class,
+                    () -> InMemoryCache.builder().registerMBean("mbean-test").build());
+        } finally {
+            simpleCache.close();
+        }
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @Test
+    public void testClosedAsyncCacheIsUnregistered() throws Exception {
+        AsyncInMemoryCache<Integer, String> simpleCache = InMemoryCache.builder()
+                .maximumSize(2)
+                .registerMBean("async-mbean-test")
+                .buildAsync(key -> CompletableFuture.completedFuture("value-" + key));
+        ObjectName objectName = new ObjectName("com.example.cache:type=Cache,name=\"async-mbean-test\"");
+        assertTrue(server.isRegistered(objectName));
+        simpleCache.close();
+        assertFalse(server.isRegistered(objectName));
+        // the name is free again
+        InMemoryCache.builder().registerMBean("async-mbean-test").build().close();
+    }
+
+    @Test
+    public void testRegisterAnyCache() throws Exception {
+        InMemoryCacheWithLFUEviction<Integer, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 10);
+        try (CacheMBeans.Registration registration = CacheMBeans.register("lfu-test", simpleCache)) {
+            simpleCache.put(1, "value-1", 10);
+            assertEquals(1L, server.getAttribute(registration.objectName(), "Size"));
+            assertEquals(10L, server.getAttribute(registration.objectName(), "Capacity"));
+            assertEquals(0L, server.getAttribute(registration.objectName(), "EvictionCount"));
+        } finally {
+            simpleCache.close();
+        }
+    }
+}
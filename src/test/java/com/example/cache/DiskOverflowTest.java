@@ -0,0 +1,78 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class DiskOverflowTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSpillAndTake() {
+        DiskOverflow<String, String> overflow = new DiskOverflow<>(directory, 1 << 16, Serializer.string(), Runnable::run);
+        overflow.spill("1", "one", 0, 0);
+        overflow.spill("2", "two", System.nanoTime() + 60_000_000_000L, 60_000_000_000L);
+        overflow.spill("3", "three", System.nanoTime() - 1, 1); // already expired
+        overflow.spill("1", "ONE", 0, 0);
+        assertEquals(2, overflow.size());
+        DiskOverflow.Entry<String> entry = overflow.take("1");
+        assertEquals("ONE", entry.value);
+        assertNull(overflow.take("1")); // taken out of the tier
+        assertEquals(60_000_000_000L, overflow.take("2").expireAfterNanos);
+        assertNull(overflow.take("3"));
+        overflow.spill("4", "four", 0, 0);
+        overflow.invalidate("4");
+        assertNull(overflow.take("4"));
+        overflow.clear();
+    }
+
+    @Test
+    public void testOldestFileIsDroppedWhenFull() {
+        // four files of 4 KiB
+        DiskOverflow<Integer, String> overflow = new DiskOverflow<>(directory, 1 << 14, Serializer.string(),
+                Runnable::run);
+        String value = new String(new char[1000]);
+        for (int i = 0; i < 40; i++) {
+            overflow.spill(i, value, 0, 0);
+        }
+        assertEquals(4, overflow.fileCount());
+        assertNull(overflow.take(0));
+        assertEquals(value, overflow.take(39).value);
+        overflow.clear();
+    }
+
+    @Test
+    public void testSparseFilesAreCompacted() throws IOException {
+        DiskOverflow<Integer, String> overflow = new DiskOverflow<>(directory, 1 << 20, Serializer.string(),
+                Runnable::run);
+        String value = new String(new char[1000]);
+        for (int i = 0; i < 1000; i++) {
+            overflow.spill(i, value + i, 0, 0);
+        }
+        int files = overflow.fileCount();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 != 0) {
+                overflow.invalidate(i);
+            }
+        }
+        assertTrue(overflow.fileCount() < files);
+        for (int i = 0; i < 1000; i += 10) {
+            assertEquals(value + i, overflow.take(i).value); // live entries survive the compaction
+        }
+        overflow.clear();
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertEquals(0, paths.count());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class ExpirySamplerTest {
+
+    private static final class Entry extends ExpirySampler.Node {
+        private final boolean expired;
+
+        private Entry(boolean expired) {
+            this.expired = expired;
+        }
+    }
+
+    @Test
+    public void testRemoveMovesTheLastEntry() {
+        ExpirySampler<Entry> sampler = new ExpirySampler<>();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new Entry(false));
+            sampler.add(entries.get(i));
+        }
+        sampler.remove(entries.get(0));
+        sampler.remove(entries.get(0)); // not in the sampler anymore
+        sampler.remove(entries.get(99));
+        assertEquals(98, sampler.size());
+        assertFalse(sampler.sample(entry -> entry.expired, entry -> fail()));
+        sampler.clear();
+        assertEquals(0, sampler.size());
+        assertFalse(sampler.sample(entry -> true, entry -> fail()));
+    }
+
+    @Test
+    public void testRoundsRepeatWhileMostlyExpired() {
+        ExpirySampler<Entry> sampler = new ExpirySampler<>();
+        for (int i = 0; i < 10_000; i++) {
+            sampler.add(new Entry(i % 10 != 0)); // 90% expired
+        }
+        List<Entry> removed = new ArrayList<>();
+        int rounds = 0;
+        while (sampler.sample(entry -> entry.expired, entry -> {
+            removed.add(entry);
+            sampler.remove(entry);
+        })) {
+            rounds++;
+        }
+        assertTrue(removed.stream().allMatch(entry -> entry.expired));
+        // rounds stop once a sample is at most a quarter expired, which a random sample may show early
+        assertTrue(sampler.size() < 10_000 / 2, "left " + sampler.size() + " after " + rounds + " rounds");
+        assertTrue(removed.size() <= rounds * ExpirySampler.SAMPLE_SIZE + ExpirySampler.SAMPLE_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void testFrequencySaturates() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        assertEquals(0, sketch.frequency("1"));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("1");
+        }
+        assertEquals(15, sketch.frequency("1"));
+        sketch.increment("2");
+        assertEquals(1, sketch.frequency("2"));
+    }
+
+    @Test
+    public void testCountersAreHalvedAfterSampleSize() {
+        FrequencySketch sketch = new FrequencySketch(64); // sample size of 640 increments
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(10, sketch.frequency("hot"));
+        int previous;
+        int frequency = sketch.frequency("hot");
+        int increments = 10;
+        do { // other keys may share counters with 'hot' until the reset
+            previous = frequency;
+            sketch.increment(increments++);
+            frequency = sketch.frequency("hot");
+        } while (frequency >= previous && increments < 10_000);
+        assertTrue(increments <= 640, "reset after " + increments + " increments");
+        assertEquals(previous / 2, frequency);
+    }
+
+    @Test
+    public void testEnsureCapacityGrowsTheTable() {
+        FrequencySketch sketch = new FrequencySketch(8);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("1");
+        }
+        sketch.ensureCapacity(8); // large enough
+        assertEquals(5, sketch.frequency("1"));
+        sketch.ensureCapacity(1024); // growing drops the counts
+        assertEquals(0, sketch.frequency("1"));
+        sketch.increment("1");
+        assertEquals(1, sketch.frequency("1"));
+    }
+}
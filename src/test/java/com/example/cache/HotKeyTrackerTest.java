@@ -0,0 +1,71 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class HotKeyTrackerTest {
+
+    @Test
+    public void testFindsTheHeavyHitters() {
+        // a key above 1/64 of the accesses is sure to be tracked
+        HotKeyTracker<Integer> tracker = new HotKeyTracker<>(64, 1);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            if (i % 10 == 0) {
+                tracker.record(-1); // a tenth of the accesses
+            } else if (i % 20 == 1) {
+                tracker.record(-2); // a twentieth
+            } else {
+                tracker.record(random.nextInt(100_000)); // a long tail
+            }
+        }
+        List<HotKeyTracker.HotKey<Integer>> hotKeys = tracker.hotKeys(2);
+        assertEquals(List.of(-1, -2), hotKeys.stream().map(HotKeyTracker.HotKey::getKey).collect(Collectors.toList()));
+        // overestimated by at most the error
+        HotKeyTracker.HotKey<Integer> hottest = hotKeys.get(0);
+        assertTrue(hottest.getCount() >= 10_000 && hottest.getCount() - hottest.getError() <= 10_000,
+                hottest.toString());
+        assertEquals(64, tracker.hotKeys().size()); // bounded
+        assertTrue(hottest.getRate() > 0);
+        tracker.clear();
+        assertTrue(tracker.hotKeys().isEmpty());
+    }
+
+    @Test
+    public void testSampledCountsAreScaledUp() {
+        HotKeyTracker<String> tracker = new HotKeyTracker<>(8, 0.1);
+        for (int i = 0; i < 100_000; i++) {
+            tracker.record("hot");
+            tracker.record("cold-" + (i % 1_000));
+        }
+        HotKeyTracker.HotKey<String> hottest = tracker.hotKeys(1).get(0);
+        assertEquals("hot", hottest.getKey());
+        assertTrue(hottest.getCount() > 80_000 && hottest.getCount() < 120_000, hottest.toString());
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker<>(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker<>(8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker<>(8, 1.5));
+    }
+
+    @Test
+    public void testNewHotKeysReplaceOldOnes() throws InterruptedException {
+        HotKeyTracker<String> tracker = new HotKeyTracker<>(4, 1, Duration.ofMillis(20));
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record("was-hot");
+        }
+        TimeUnit.MILLISECONDS.sleep(200); // ten half-lives, 10 000 halved down to 9
+        for (int i = 0; i < 1_000; i++) {
+            tracker.record("is-hot");
+        }
+        assertEquals("is-hot", tracker.hotKeys(1).get(0).getKey());
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.cache;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.time.temporal.ChronoUnit;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,6 +40,46 @@ public class InMemoryCacheTest {
         simpleCache.clear();
     }
 
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().build(key -> {
+            loads.incrementAndGet();
+            try {
+                TimeUnit.MILLISECONDS.sleep(200); // a slow backend
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (key.startsWith("bad")) {
+                throw new IllegalArgumentException("cannot load " + key);
+            }
+            return "loaded-" + key;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch ready = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            String key = (t % 2 == 0) ? "1" : "bad-1";
+            executor.execute(() -> {
+                try {
+                    ready.countDown();
+                    ready.await(); // all miss together
+                    results.add(simpleCache.get(key));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IllegalArgumentException e) { // the failure is shared too
+                    results.add(e.getMessage());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, loads.get()); // one per key
+        assertEquals(4, Collections.frequency(results, "loaded-1"));
+        assertEquals(4, Collections.frequency(results, "cannot load bad-1"));
+        simpleCache.clear();
+    }
+
     @Test
     public void testLRUEviction() {
         InMemoryCache<String, String> simpleCache = InMemoryCache.builder().initialCapacity(4).maximumSize(4).build();
@@ -98,4 +145,485 @@ public class InMemoryCacheTest {
         assertNull(simpleCache.get("2"));
         simpleCache.clear();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrencyLevel() throws InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> InMemoryCache.builder().concurrencyLevel(0));
+        InMemoryCache<Integer, Integer> simpleCache = InMemoryCache.builder()
+                .concurrencyLevel(8).maximumSize(800).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 1000;
+            executor.execute(() -> {
+                for (int i = offset; i < offset + 1000; i++) {
+                    simpleCache.put(i, i);
+                    simpleCache.get(i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(800, simpleCache.size()); // every segment is filled up to its share
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+
+    @Test
+    public void testWindowTinyLfuKeepsHotKeysThroughScan() {
+        InMemoryCache<Integer, Integer> tinyLfuCache = InMemoryCache.builder()
+                .maximumSize(100).evictionPolicy(EvictionPolicy.WINDOW_TINY_LFU).build();
+        InMemoryCache<Integer, Integer> lruCache = InMemoryCache.builder().maximumSize(100).build();
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 50; key++) {
+                if (null == tinyLfuCache.get(key)) {
+                    tinyLfuCache.put(key, key);
+                }
+                if (null == lruCache.get(key)) {
+                    lruCache.put(key, key);
+                }
+            }
+        }
+        for (int key = 1000; key < 11000; key++) { // keys used only once
+            tinyLfuCache.put(key, key);
+            lruCache.put(key, key);
+        }
+        int tinyLfuHits = 0;
+        int lruHits = 0;
+        for (int key = 0; key < 50; key++) {
+            tinyLfuHits += (null != tinyLfuCache.get(key)) ? 1 : 0;
+            lruHits += (null != lruCache.get(key)) ? 1 : 0;
+        }
+        assertEquals(0, lruHits);
+        assertTrue(tinyLfuHits >= 45, "hot keys kept: " + tinyLfuHits);
+        assertEquals(100, tinyLfuCache.size());
+        tinyLfuCache.clear();
+        lruCache.clear();
+    }
+
+    @Test
+    public void testGetAllLoadsMissesWithOneBulkLoad() {
+        List<Set<String>> bulkLoads = new ArrayList<>();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().concurrencyLevel(4)
+                .build(null, keys -> {
+                    bulkLoads.add(new HashSet<>(keys));
+                    Map<String, String> values = new HashMap<>();
+                    keys.stream().filter(key -> !key.equals("4")).forEach(key -> values.put(key, "loaded-" + key));
+                    return values;
+                });
+        simpleCache.put("1", "one");
+        Map<String, String> values = simpleCache.getAll(Arrays.asList("3", "1", "2", "4"));
+        assertEquals(Arrays.asList("3", "1", "2"), new ArrayList<>(values.keySet())); // in the order of the keys
+        assertEquals("one", values.get("1"));
+        assertEquals("loaded-2", values.get("2"));
+        assertEquals(1, bulkLoads.size());
+        assertEquals(new HashSet<>(Arrays.asList("2", "3", "4")), bulkLoads.get(0));
+        assertEquals("loaded-5", simpleCache.get("5")); // single miss through the bulk loader
+        assertEquals(4, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testPutAllAndInvalidateAll() {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().concurrencyLevel(4).maximumSize(8).build();
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            entries.put(String.valueOf(i), "value-" + i);
+        }
+        simpleCache.putAll(entries, 60_000);
+        assertEquals(8, simpleCache.size()); // bounded by the maximum size
+        simpleCache.invalidateAll(entries.keySet());
+        assertTrue(simpleCache.getAll(entries.keySet()).isEmpty());
+        assertEquals(0, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testOffHeapStorage() {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder()
+                .offHeap(1 << 16, Serializer.string())
+                .build(key -> "loaded-" + key);
+        simpleCache.put("1", "one");
+        assertEquals("one", simpleCache.get("1"));
+        simpleCache.put("1", "ONE");
+        assertEquals("ONE", simpleCache.get("1"));
+        assertEquals("loaded-2", simpleCache.get("2"));
+        assertEquals("ONE", simpleCache.remove("1"));
+        assertNull(simpleCache.remove("1"));
+        // far more writes than fit at once, the freed memory of overwritten values is reused
+        for (int i = 0; i < 10_000; i++) {
+            simpleCache.put(String.valueOf(i % 10), "value-" + i);
+        }
+        assertEquals("value-9999", simpleCache.get("9"));
+        simpleCache.put("3", new String(new char[1 << 17])); // larger than the off-heap memory, not cached
+        assertEquals(10, simpleCache.size());
+        assertEquals("value-9993", simpleCache.get("3"));
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+        simpleCache.put("1", "one");
+        assertEquals("one", simpleCache.get("1"));
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testOffHeapValuesOfManySizes() {
+        InMemoryCache<Integer, String> simpleCache = InMemoryCache.builder().concurrencyLevel(16).maximumSize(1_000)
+                .offHeap(16 << 20, Serializer.string())
+                .build();
+        Random random = new Random(42);
+        String[] values = new String[200];
+        for (int i = 0; i < values.length; i++) {
+            char[] chars = new char[1 + random.nextInt(3_000)];
+            Arrays.fill(chars, (char) ('a' + i % 26));
+            values[i] = new String(chars);
+            simpleCache.put(i, values[i]);
+        }
+        // far below the memory, every size class gets its slabs
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], simpleCache.get(i));
+        }
+        // a larger value replaces a small one
+        simpleCache.put(0, "a");
+        simpleCache.put(0, new String(new char[5_000]));
+        assertEquals(5_000, simpleCache.get(0).length());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testOffHeapEvictsUntilTheValueFits() {
+        InMemoryCache<Integer, String> simpleCache = InMemoryCache.builder().maximumSize(1_000)
+                .offHeap(64 << 10, Serializer.string())
+                .build();
+        for (int i = 0; i < 100; i++) { // about 160 KB of 1.6 KB values
+            simpleCache.put(i, String.valueOf(i).repeat(400));
+        }
+        assertTrue(simpleCache.size() < 100);
+        assertEquals("99".repeat(400), simpleCache.get(99)); // the eldest were evicted
+        assertNull(simpleCache.get(0));
+        simpleCache.put(100, "x".repeat(20_000)); // another size class, its slab is freed by evictions
+        assertEquals(20_000, simpleCache.get(100).length());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testOffHeapConcurrentReadsAndWrites() throws InterruptedException {
+        InMemoryCache<Integer, String> simpleCache = InMemoryCache.builder().concurrencyLevel(4).maximumSize(64)
+                .offHeap(1 << 20, Serializer.string())
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = i % 128;
+                        simpleCache.put(key, "value-" + key);
+                        String value = simpleCache.get((i * 31) % 128);
+                        // a freed and reused chunk must never be served
+                        assertTrue(null == value || value.equals("value-" + (i * 31) % 128), value);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(64, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testEvictedEntriesArePromotedFromDisk(@TempDir Path directory) {
+        AtomicInteger loads = new AtomicInteger();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(2)
+                .overflowTo(directory, 1 << 20, Serializer.string())
+                .build(key -> "loaded-" + loads.incrementAndGet());
+        simpleCache.put("1", "one");
+        simpleCache.put("2", "two");
+        simpleCache.put("3", "three"); // evicts key 'one' to disk
+        assertEquals(2, simpleCache.size());
+        assertEquals("one", simpleCache.get("1")); // promoted, evicts key 'two'
+        assertEquals(Collections.singletonMap("2", "two"), simpleCache.getAll(Collections.singletonList("2")));
+        assertEquals(0, loads.get());
+        simpleCache.put("1", "ONE");
+        simpleCache.put("4", "four"); // evicts key 'two', key 'three' is still on disk
+        assertEquals("three", simpleCache.remove("3"));
+        assertEquals("loaded-1", simpleCache.get("3")); // removed from disk as well
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRecordStats() throws InterruptedException {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(2).recordStats()
+                .expireAfter(100, ChronoUnit.MILLIS)
+                .build(key -> key.equals("fail") ? null : "loaded-" + key);
+        simpleCache.put("1", "one");
+        simpleCache.get("1"); // hit
+        simpleCache.get("2"); // miss and load
+        simpleCache.get("fail"); // miss and failed load
+        simpleCache.put("3", "three"); // evicts key 'one'
+        simpleCache.remove("2");
+        Thread.sleep(150);
+        assertEquals(0, simpleCache.size()); // key 'three' expired
+        CacheStats stats = simpleCache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertTrue(stats.getTotalLoadTime() > 0);
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(1, stats.getExplicitRemovalCount());
+        assertEquals(1, stats.getExpiredCount());
+        assertEquals(1.0 / 3, stats.getHitRate(), 1e-9);
+
+        simpleCache.getAll(Arrays.asList("4", "5"));
+        CacheStats delta = simpleCache.stats().minus(stats);
+        assertEquals(2, delta.getMissCount());
+        assertEquals(2, delta.getLoadSuccessCount());
+        simpleCache.clear();
+        assertEquals(CacheStats.empty().getHitCount(), InMemoryCache.builder().build().stats().getHitCount());
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumWeight(10)
+                    .evictionPolicy(policy).<String, String>weigher((key, value) -> value.length()).build();
+            simpleCache.put("1", "aaaa");
+            simpleCache.put("2", "bbbb");
+            assertEquals(8, simpleCache.weightedSize());
+            simpleCache.put("2", "b"); // an update changes the weight
+            assertEquals(5, simpleCache.weightedSize());
+            simpleCache.put("3", "cccc");
+            assertEquals(9, simpleCache.weightedSize());
+            simpleCache.put("4", "dddd"); // evicts to stay within the weight
+            assertTrue(simpleCache.weightedSize() <= 10);
+            assertTrue(simpleCache.size() < 4);
+            long weightedSize = simpleCache.weightedSize();
+            simpleCache.put("5", "too heavy to be cached"); // heavier than the maximum
+            assertNull(simpleCache.get("5"));
+            assertEquals(weightedSize, simpleCache.weightedSize());
+            String present = simpleCache.getAll(Arrays.asList("1", "2", "3", "4")).keySet().iterator().next();
+            simpleCache.put(present, "heavier than ten"); // an update beyond the maximum removes the key
+            assertNull(simpleCache.get(present));
+            simpleCache.clear();
+            assertEquals(0, simpleCache.weightedSize());
+        }
+        assertThrows(IllegalStateException.class, () -> InMemoryCache.builder().maximumSize(1).maximumWeight(1));
+        assertThrows(IllegalArgumentException.class, () -> InMemoryCache.builder().maximumWeight(0));
+    }
+
+    @Test
+    public void testWindowTinyLfuAdmitsEntriesHeavierThanTheWindow() {
+        InMemoryCache<Integer, Integer> simpleCache = InMemoryCache.builder().maximumWeight(1000)
+                .evictionPolicy(EvictionPolicy.WINDOW_TINY_LFU).<Integer, Integer>weigher((key, value) -> value)
+                .build();
+        for (int key = 0; key < 100; key++) {
+            simpleCache.put(key, 20); // the window holds a weight of 10
+        }
+        assertEquals(50, simpleCache.size());
+        assertTrue(simpleCache.weightedSize() <= 1000);
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRefreshAfterWriteServesStaleValueWhileReloading() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> refreshes = new ArrayList<>();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().recordStats()
+                .refreshAfterWrite(50, ChronoUnit.MILLIS).executor(refreshes::add)
+                .build(key -> {
+                    if (loads.incrementAndGet() == 3) {
+                        throw new IllegalStateException("loader is down");
+                    }
+                    return key + "-" + loads.get();
+                });
+        assertEquals("1-1", simpleCache.get("1"));
+        assertEquals("1-1", simpleCache.get("1")); // not due yet
+        assertTrue(refreshes.isEmpty());
+        Thread.sleep(80);
+        assertEquals("1-1", simpleCache.get("1")); // the stale value, starts the refresh
+        assertEquals("1-1", simpleCache.get("1")); // the refresh is running, no second one
+        assertEquals(1, refreshes.size());
+        refreshes.remove(0).run();
+        assertEquals("1-2", simpleCache.get("1"));
+        assertEquals(2, simpleCache.stats().getLoadSuccessCount());
+
+        Thread.sleep(80);
+        assertEquals("1-2", simpleCache.getAll(Collections.singleton("1")).get("1"));
+        refreshes.remove(0).run(); // fails, the value stays
+        assertEquals("1-2", simpleCache.get("1"));
+        assertEquals(1, simpleCache.stats().getLoadFailureCount());
+        refreshes.remove(0).run(); // retried by the read
+        assertEquals("1-4", simpleCache.get("1"));
+
+        Thread.sleep(80);
+        simpleCache.get("1");
+        simpleCache.put("1", "written"); // a write wins over the running refresh
+        refreshes.remove(0).run();
+        assertEquals("written", simpleCache.get("1"));
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRemovalListener() throws InterruptedException {
+        List<String> removals = new ArrayList<>();
+        List<Runnable> dispatches = new ArrayList<>();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(2)
+                .expireAfter(10_000, ChronoUnit.MILLIS).executor(dispatches::add)
+                .<String, String>removalListener((key, value, cause) -> removals.add(key + "=" + value + ":" + cause))
+                .build();
+        simpleCache.put("1", "one");
+        simpleCache.put("1", "ONE");
+        simpleCache.put("2", "two");
+        simpleCache.put("3", "three", 50); // evicts key 'ONE', only this one expires
+        simpleCache.remove("2");
+        assertTrue(removals.isEmpty()); // not delivered until the executor runs
+        assertEquals(1, dispatches.size()); // one dispatch drains all queued removals
+        dispatches.remove(0).run();
+        assertEquals(Arrays.asList("1=one:REPLACED", "1=ONE:SIZE", "2=two:EXPLICIT"), removals);
+        Thread.sleep(80);
+        assertEquals(0, simpleCache.size());
+        simpleCache.put("4", "four");
+        simpleCache.clear();
+        dispatches.remove(0).run();
+        assertEquals(Arrays.asList("1=one:REPLACED", "1=ONE:SIZE", "2=two:EXPLICIT", "3=three:EXPIRED",
+                "4=four:EXPLICIT"), removals);
+    }
+
+    @Test
+    public void testRemovalListenerThrowingError() {
+        List<String> removals = new ArrayList<>();
+        List<Runnable> dispatches = new ArrayList<>();
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(10).executor(dispatches::add)
+                .<String, String>removalListener((key, value, cause) -> {
+                    if ("1".equals(key)) {
+                        throw new AssertionError("listener failed");
+                    }
+                    removals.add(key);
+                })
+                .build();
+        simpleCache.put("1", "one");
+        simpleCache.put("2", "two");
+        simpleCache.remove("1");
+        simpleCache.remove("2");
+        assertThrows(AssertionError.class, () -> dispatches.remove(0).run());
+        assertEquals(1, dispatches.size()); // the removal left behind is dispatched again
+        dispatches.remove(0).run();
+        assertEquals(Arrays.asList("2"), removals);
+        simpleCache.put("3", "three");
+        simpleCache.remove("3");
+        dispatches.remove(0).run();
+        assertEquals(Arrays.asList("2", "3"), removals);
+    }
+
+    @Test
+    public void testSnapshotAndRestore(@TempDir Path directory) throws Exception {
+        Path snapshot = directory.resolve("cache.snapshot");
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(100)
+                .evictionPolicy(EvictionPolicy.WINDOW_TINY_LFU).expireAfter(10_000, ChronoUnit.MILLIS).build();
+        for (int i = 0; i < 50; i++) {
+            simpleCache.put(String.valueOf(i), "value-" + i);
+        }
+        simpleCache.put("short", "lived", 50); // in the unit of expireAfter
+        simpleCache.snapshotTo(snapshot, Serializer.string(), Serializer.string());
+        Thread.sleep(80);
+
+        InMemoryCache<String, String> restored = InMemoryCache.builder().maximumSize(100)
+                .evictionPolicy(EvictionPolicy.WINDOW_TINY_LFU).expireAfter(10_000, ChronoUnit.MILLIS)
+                .restoreFrom(snapshot, Serializer.string(), Serializer.string()).build();
+        assertEquals(50, restored.size()); // the entry expired since the snapshot is skipped
+        assertNull(restored.get("short"));
+        for (int i = 0; i < 50; i++) {
+            assertEquals("value-" + i, restored.get(String.valueOf(i)));
+        }
+
+        InMemoryCache<String, String> empty = InMemoryCache.builder()
+                .restoreFrom(directory.resolve("missing.snapshot"), Serializer.string(), Serializer.string()).build();
+        assertTrue(empty.isEmpty()); // no snapshot yet, like on the first start
+    }
+
+    @Test
+    public void testClockEviction() {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(4)
+                .evictionPolicy(EvictionPolicy.CLOCK).build();
+        simpleCache.put("1", "one");
+        simpleCache.put("2", "two");
+        simpleCache.put("3", "three");
+        simpleCache.put("4", "four");
+        assertEquals("one", simpleCache.get("1")); // referenced, gets a second chance
+        simpleCache.put("5", "five");
+        assertNull(simpleCache.get("2")); // key 'two' should not be present
+        assertEquals("one", simpleCache.get("1"));
+        simpleCache.put("3", "THREE"); // an update counts as a hit
+        simpleCache.put("6", "six");
+        assertNull(simpleCache.get("4"));
+        assertEquals("THREE", simpleCache.get("3"));
+        assertEquals(4, simpleCache.size());
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+
+    @Test
+    public void testClockEvictionAfterClear() {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(4)
+                .evictionPolicy(EvictionPolicy.CLOCK).build();
+        simpleCache.put("1", "one");
+        simpleCache.put("2", "two");
+        simpleCache.put("3", "three");
+        simpleCache.put("4", "four");
+        simpleCache.put("1", "ONE"); // updates set the bits of the first two slots
+        simpleCache.put("2", "TWO");
+        simpleCache.clear();
+        simpleCache.put("a", "A");
+        simpleCache.put("b", "B");
+        simpleCache.put("c", "C");
+        simpleCache.put("d", "D");
+        simpleCache.put("e", "E");
+        assertNull(simpleCache.get("a")); // no second chance earned before the clear
+        assertEquals("B", simpleCache.get("b"));
+        assertEquals("C", simpleCache.get("c"));
+        assertEquals(4, simpleCache.size());
+    }
+
+    @Test
+    public void testClockHitRatioIsCloseToLru() {
+        InMemoryCache<Integer, Integer> clockCache = InMemoryCache.builder().maximumSize(1000)
+                .evictionPolicy(EvictionPolicy.CLOCK).recordStats().build();
+        InMemoryCache<Integer, Integer> lruCache = InMemoryCache.builder().maximumSize(1000).recordStats().build();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // skewed keys, a small key is far more likely
+            int key = (int) Math.pow(10_000, random.nextDouble());
+            if (null == clockCache.get(key)) {
+                clockCache.put(key, key);
+            }
+            if (null == lruCache.get(key)) {
+                lruCache.put(key, key);
+            }
+        }
+        double clockHitRate = clockCache.stats().getHitRate();
+        double lruHitRate = lruCache.stats().getHitRate();
+        assertTrue(Math.abs(clockHitRate - lruHitRate) < 0.03, "CLOCK " + clockHitRate + ", LRU " + lruHitRate);
+        assertEquals(1000, clockCache.size());
+    }
+
+    @Test
+    public void testHotKeys() {
+        InMemoryCache<String, String> simpleCache = InMemoryCache.builder().maximumSize(100)
+                .trackHotKeys(4, 1).build();
+        simpleCache.put("hot", "value");
+        for (int i = 0; i < 1_000; i++) {
+            simpleCache.get("hot");
+            simpleCache.get("miss-" + (i % 100)); // misses count too
+        }
+        simpleCache.getAll(List.of("hot", "hot-too"));
+        List<HotKeyTracker.HotKey<String>> hotKeys = simpleCache.hotKeys();
+        assertEquals(4, hotKeys.size());
+        assertEquals("hot", hotKeys.get(0).getKey());
+        assertEquals(1_001, hotKeys.get(0).getCount());
+        assertTrue(InMemoryCache.builder().build().hotKeys().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> InMemoryCache.builder().trackHotKeys(4, 0));
+    }
+}
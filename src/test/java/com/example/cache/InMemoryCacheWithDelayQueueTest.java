@@ -3,6 +3,9 @@ package com.example.cache;
 import org.junit.jupiter.api.Test;
 
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -43,4 +46,33 @@ public class InMemoryCacheWithDelayQueueTest {
         assertEquals(4, simpleCache.size());
         simpleCache.clear();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRemovalListener() throws InterruptedException {
+        List<String> removals = new CopyOnWriteArrayList<>();
+        Cache<String, String> simpleCache = new InMemoryCacheWithDelayQueue<>(
+                (key, value, cause) -> removals.add(key + "=" + value + ":" + cause), Runnable::run);
+        simpleCache.put("1", "one");
+        simpleCache.put("1", "ONE");
+        simpleCache.remove("1");
+        simpleCache.put("2", "two", 10);
+        Thread.sleep(100); // swept by the cleaner thread
+        simpleCache.put("3", "three");
+        simpleCache.clear();
+        assertEquals(Arrays.asList("1=one:REPLACED", "1=ONE:EXPLICIT", "2=two:EXPIRED", "3=three:EXPLICIT"),
+                removals);
+    }
+
+    @Test
+    public void testCloseStopsTheCleanup() throws InterruptedException {
+        Cache<String, String> simpleCache = new InMemoryCacheWithDelayQueue<>();
+        simpleCache.put("1", "one", 10);
+        Thread.sleep(100);
+        assertTrue(simpleCache.isEmpty()); // swept in the background
+        simpleCache.close();
+        simpleCache.put("1", "one", 10);
+        Thread.sleep(100);
+        assertFalse(simpleCache.isEmpty());
+        assertNull(simpleCache.get("1")); // expired entries are still never served
+    }
+}
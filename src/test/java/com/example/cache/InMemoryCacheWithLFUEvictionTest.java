@@ -1,6 +1,9 @@
 package com.example.cache;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,4 +62,139 @@ public class InMemoryCacheWithLFUEvictionTest {
         assertEquals(4, simpleCache.size());
         simpleCache.clear();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFrequencyAging() {
+        // frequencies are halved after 10 hits per entry, 20 here
+        Cache<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 2);
+        simpleCache.put("1", "one");
+        for (int i = 0; i < 19; i++) {
+            simpleCache.get("1");
+        }
+        simpleCache.put("2", "two");
+        for (int i = 0; i < 11; i++) { // the first hit halves the frequency of '1' to 9
+            simpleCache.get("2");
+        }
+        simpleCache.put("3", "three");
+        assertNull(simpleCache.get("1")); // aged key 'one' is less frequent than key 'two'
+        assertEquals("two", simpleCache.get("2"));
+        assertEquals(2, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        Cache<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 0);
+        simpleCache.put("a", "1");
+        assertEquals("1", simpleCache.get("a"));
+        simpleCache.put("b", "2"); // evicts the one entry
+        assertNull(simpleCache.get("a"));
+        assertEquals(1, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testEvictionOrderWithinFrequency() {
+        Cache<Integer, Integer> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 1000);
+        for (int i = 0; i < 1000; i++) {
+            simpleCache.put(i, i);
+            if (i % 2 == 0) {
+                simpleCache.get(i);
+            }
+        }
+        for (int i = 1000; i < 1500; i++) { // evicts the odd keys, oldest first
+            simpleCache.put(i, i);
+            assertNull(simpleCache.get(2 * (i - 1000) + 1));
+            assertEquals(i, simpleCache.get(i));
+        }
+        assertEquals(0, simpleCache.get(0));
+        assertEquals(1000, simpleCache.size());
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+
+    @Test
+    public void testEvictedEntriesArePromotedFromDisk(@TempDir Path directory) {
+        Cache<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 2,
+                new DiskOverflow<>(directory, 1 << 20, Serializer.string(), Runnable::run));
+        simpleCache.put("1", "one", 60_000);
+        simpleCache.put("2", "two", 60_000);
+        simpleCache.get("2");
+        simpleCache.put("3", "three", 60_000); // evicts the least frequently used key 'one' to disk
+        assertEquals(2, simpleCache.size());
+        assertEquals("one", simpleCache.get("1")); // promoted, evicts key 'three'
+        assertEquals("three", simpleCache.remove("3"));
+        assertNull(simpleCache.get("3"));
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRestoreKeepsTheMostFrequentEntries(@TempDir Path directory) throws Exception {
+        Path snapshot = directory.resolve("cache.snapshot");
+        InMemoryCacheWithLFUEviction<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 10);
+        for (int i = 0; i < 10; i++) {
+            simpleCache.put(String.valueOf(i), "value-" + i, 60_000);
+        }
+        for (int i = 0; i < 10; i += 2) { // the even keys are hot
+            simpleCache.get(String.valueOf(i));
+            simpleCache.get(String.valueOf(i));
+        }
+        simpleCache.snapshotTo(snapshot, Serializer.string(), Serializer.string());
+
+        InMemoryCacheWithLFUEviction<String, String> restored = new InMemoryCacheWithLFUEviction<>(0, 5);
+        restored.restoreFrom(snapshot, Serializer.string(), Serializer.string());
+        assertEquals(5, restored.size());
+        for (int i = 0; i < 10; i += 2) {
+            assertEquals("value-" + i, restored.get(String.valueOf(i)));
+        }
+        restored.put("10", "value-10", 60_000); // the restored frequencies still count
+        assertEquals("value-10", restored.get("10"));
+        assertEquals(5, restored.size());
+        restored.clear();
+    }
+
+    @Test
+    public void testExpiredEntriesAreRemovedOnAccess() throws InterruptedException {
+        Cache<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 10); // no cleanup
+        simpleCache.put("1", "one", 50);
+        simpleCache.put("2", "two", 60_000);
+        Thread.sleep(100);
+        assertEquals(2, simpleCache.size());
+        assertNull(simpleCache.get("1"));
+        assertEquals(1, simpleCache.size());
+        assertEquals("two", simpleCache.get("2"));
+    }
+
+    @Test
+    public void testCleanupSamplesExpiredEntries() throws InterruptedException {
+        Cache<Integer, Integer> simpleCache = new InMemoryCacheWithLFUEviction<>(1, 20_000);
+        for (int i = 0; i < 10_000; i++) {
+            simpleCache.put(i, i, 50);
+        }
+        for (int i = 10_000; i < 10_100; i++) {
+            simpleCache.put(i, i, 60_000);
+        }
+        for (int attempt = 0; attempt < 50 && simpleCache.size() > 10_100 / 2; attempt++) {
+            Thread.sleep(100); // cleaned up every second
+        }
+        assertTrue(simpleCache.size() <= 10_100 / 2, "size " + simpleCache.size());
+        for (int i = 10_000; i < 10_100; i++) {
+            assertEquals(Integer.valueOf(i), simpleCache.get(i));
+        }
+        simpleCache.close();
+    }
+
+    @Test
+    public void testHotKeys() {
+        InMemoryCacheWithLFUEviction<String, String> simpleCache = new InMemoryCacheWithLFUEviction<>(0, 100, null,
+                new HotKeyTracker<>(4, 1));
+        simpleCache.put("hot", "value", 60_000);
+        for (int i = 0; i < 1_000; i++) {
+            simpleCache.get("hot");
+            simpleCache.get("miss-" + (i % 100));
+        }
+        assertEquals("hot", simpleCache.hotKeys().get(0).getKey());
+        assertEquals(1_000, simpleCache.hotKeys().get(0).getCount());
+        assertTrue(new InMemoryCacheWithLFUEviction<String, String>(0, 100).hotKeys().isEmpty());
+    }
+}
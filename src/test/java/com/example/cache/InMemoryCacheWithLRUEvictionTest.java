@@ -3,6 +3,17 @@ package com.example.cache;
 import org.junit.jupiter.api.Test;
 
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,6 +33,11 @@ public class InMemoryCacheWithLRUEvictionTest {
         assertEquals(2, simpleCache.size());
         assertNotNull(simpleCache.remove("2"));
         assertEquals(1, simpleCache.size());
+        // null keys are ignored
+        simpleCache.put(null, "null");
+        assertNull(simpleCache.get(null));
+        assertNull(simpleCache.remove(null));
+        assertEquals(1, simpleCache.size());
         simpleCache.clear();
     }
 
@@ -58,4 +74,82 @@ public class InMemoryCacheWithLRUEvictionTest {
         assertEquals(4, simpleCache.size());
         simpleCache.clear();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBulkOperations() {
+        Cache<String, String> simpleCache = new InMemoryCacheWithLRUEviction<>(4);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("1", "one");
+        entries.put("2", "two");
+        entries.put("3", "three");
+        entries.put("4", "four");
+        simpleCache.putAll(entries, 60_000);
+        assertEquals(entries, simpleCache.getAll(Arrays.asList("1", "2", "3", "4", "5")));
+        simpleCache.getAll(Collections.singletonList("1")); // access the 1st key here
+        simpleCache.put("5", "five");
+        assertNull(simpleCache.get("2")); // key 'two' should not be present
+        simpleCache.invalidateAll(Arrays.asList("1", "3"));
+        assertEquals(2, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testRemovalListener() throws InterruptedException {
+        List<String> removals = new CopyOnWriteArrayList<>();
+        Cache<String, String> simpleCache = new InMemoryCacheWithLRUEviction<>(2, null,
+                (key, value, cause) -> removals.add(key + "=" + value + ":" + cause), Runnable::run);
+        simpleCache.put("1", "one");
+        simpleCache.put("1", "ONE");
+        simpleCache.put("2", "two");
+        simpleCache.put("3", "three"); // evicts key 'ONE'
+        simpleCache.remove("2");
+        simpleCache.put("4", "four", 10);
+        Thread.sleep(100); // swept by the cleaner thread
+        simpleCache.clear();
+        assertEquals(Arrays.asList("1=one:REPLACED", "1=ONE:SIZE", "2=two:EXPLICIT", "4=four:EXPIRED",
+                "3=three:EXPLICIT"), removals);
+    }
+
+    @Test
+    public void testConcurrentReadsAndWrites() throws InterruptedException {
+        InMemoryCacheWithLRUEviction<Integer, Integer> simpleCache = new InMemoryCacheWithLRUEviction<>(256);
+        for (int i = 0; i < 128; i++) { // hot keys, read by every thread
+            simpleCache.put(i, i, 60_000);
+        }
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200_000; i++) {
+                    int key = random.nextInt(1024);
+                    int operation = random.nextInt(10);
+                    if (operation < 7) {
+                        Integer value = simpleCache.get(key);
+                        if (null != value && value != key) {
+                            errors.incrementAndGet();
+                        }
+                    } else if (operation < 9) {
+                        simpleCache.put(key, key, 60_000);
+                    } else {
+                        simpleCache.remove(key);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertTrue(simpleCache.size() <= 256, "size " + simpleCache.size());
+        // the order still evicts every key exactly once when new keys come in
+        for (int i = 0; i < 256; i++) {
+            simpleCache.put(10_000 + i, i, 60_000);
+        }
+        assertEquals(256, simpleCache.size());
+        for (int i = 0; i < 256; i++) {
+            assertEquals(Integer.valueOf(i), simpleCache.get(10_000 + i));
+        }
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+}
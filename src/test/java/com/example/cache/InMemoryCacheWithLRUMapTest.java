@@ -55,4 +55,35 @@ public class InMemoryCacheWithLRUMapTest {
         assertEquals(4, simpleCache.size());
         simpleCache.clear();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testExpiredEntriesAreRemovedOnAccess() throws InterruptedException {
+        Cache<String, String> simpleCache = new InMemoryCacheWithLRUMap<>(0, 10); // no cleanup
+        simpleCache.put("1", "one", 50);
+        simpleCache.put("2", "two", 60_000);
+        Thread.sleep(100);
+        assertEquals(2, simpleCache.size());
+        assertNull(simpleCache.get("1"));
+        assertEquals(1, simpleCache.size());
+        assertEquals("two", simpleCache.get("2"));
+    }
+
+    @Test
+    public void testCleanupSamplesExpiredEntries() throws InterruptedException {
+        Cache<Integer, Integer> simpleCache = new InMemoryCacheWithLRUMap<>(1, 20_000);
+        for (int i = 0; i < 10_000; i++) {
+            simpleCache.put(i, i, 50);
+        }
+        for (int i = 10_000; i < 10_100; i++) {
+            simpleCache.put(i, i, 60_000);
+        }
+        for (int attempt = 0; attempt < 50 && simpleCache.size() > 10_100 / 2; attempt++) {
+            Thread.sleep(100); // cleaned up every second
+        }
+        assertTrue(simpleCache.size() <= 10_100 / 2, "size " + simpleCache.size());
+        for (int i = 10_000; i < 10_100; i++) {
+            assertEquals(Integer.valueOf(i), simpleCache.get(i));
+        }
+        simpleCache.close();
+    }
+}
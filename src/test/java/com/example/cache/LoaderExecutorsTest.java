@@ -0,0 +1,50 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class LoaderExecutorsTest {
+
+    @Test
+    public void testSlowLoadsRunConcurrently() throws Exception {
+        Set<String> loaderThreads = ConcurrentHashMap.newKeySet();
+        AsyncInMemoryCache<Integer, String> simpleCache = InMemoryCache.builder()
+                .maximumSize(1_000)
+                .threadPerLoad()
+                .buildAsync(key -> {
+                    loaderThreads.add(Thread.currentThread().getName());
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(200); // a slow backend
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return CompletableFuture.completedFuture("value-" + key);
+                });
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(simpleCache.getAsync(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("value-" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        // 40 seconds one after the other
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed < 5_000, "took " + elapsed + " ms");
+        assertTrue(loaderThreads.size() > 1);
+        assertTrue(loaderThreads.stream().allMatch(name -> name.startsWith("cache-loader-")), loaderThreads.toString());
+        assertEquals(200, simpleCache.size());
+        simpleCache.clear();
+    }
+}
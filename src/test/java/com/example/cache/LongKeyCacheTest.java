@@ -0,0 +1,110 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * @author vishnu.g
+ */
+public class LongKeyCacheTest {
+
+    @Test
+    public void testSimpleCache() {
+        LongKeyCache<String> simpleCache = new LongKeyCache<>();
+        simpleCache.put(1L, "one");
+        assertEquals("one", simpleCache.get(1L));
+        simpleCache.put(1L, "ONE");
+        assertEquals("ONE", simpleCache.get(1L));
+        simpleCache.put(Long.valueOf(2L), "TWO");
+        assertEquals("TWO", simpleCache.get(Long.valueOf(2L)));
+        assertEquals(2, simpleCache.size());
+        assertEquals("TWO", simpleCache.remove(2L));
+        assertNull(simpleCache.remove(2L));
+        simpleCache.put(3L, null); // a null value removes the key
+        assertEquals(1, simpleCache.size());
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+
+    @Test
+    public void testLRUEviction() {
+        LongKeyCache<String> simpleCache = new LongKeyCache<>(4);
+        simpleCache.put(1L, "one");
+        simpleCache.put(2L, "two");
+        simpleCache.put(3L, "three");
+        simpleCache.put(4L, "four");
+        assertEquals("one", simpleCache.get(1L)); // access the 1st key here
+        simpleCache.put(5L, "five");
+        assertNull(simpleCache.get(2L)); // key 'two' should not be present
+        assertEquals(4, simpleCache.size());
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testCacheKeyExpiry() throws InterruptedException {
+        LongKeyCache<String> simpleCache = new LongKeyCache<>();
+        simpleCache.put(1L, "one", 100);
+        simpleCache.put(2L, "two", 0); // never expires
+        simpleCache.put(3L, "three", 100);
+        assertEquals("one", simpleCache.get(1L));
+        Thread.sleep(150);
+        assertNull(simpleCache.get(1L));
+        assertFalse(simpleCache.containsKey(3L));
+        assertEquals(1, simpleCache.size());
+        assertEquals("two", simpleCache.get(2L));
+        simpleCache.clear();
+    }
+
+    @Test
+    public void testMatchesHashMapUnderRandomOperations() {
+        // keys colliding in the table and a key space of the capacity exercise the shifting of clusters on removal
+        LongKeyCache<Long> simpleCache = new LongKeyCache<>(1024);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = (long) random.nextInt(256) << 40 | random.nextInt(4);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), simpleCache.remove(key));
+            } else {
+                simpleCache.put(key, Long.valueOf(key), 0);
+                expected.put(key, key);
+            }
+        }
+        assertEquals(expected.size(), simpleCache.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), simpleCache.get(entry.getKey().longValue()));
+        }
+    }
+
+    @Test
+    public void testGetDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        LongKeyCache<String> simpleCache = new LongKeyCache<>(1024);
+        for (long key = 0; key < 1024; key++) {
+            simpleCache.put(key, "value", 0);
+        }
+        long threadId = Thread.currentThread().getId();
+        long hits = 0;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the measurement as well
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (long key = 0; key < 100_000; key++) {
+                hits += (null != simpleCache.get(key & 2047)) ? 1 : 0;
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            if (round == 2) {
+                assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+            }
+        }
+        assertEquals(3 * (48 * 1024 + 1024), hits);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class MaintenanceSchedulerTest {
+
+    private final MaintenanceScheduler scheduler = new MaintenanceScheduler(1);
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCancelStopsTheMaintenance() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Object cache = new Object();
+        MaintenanceScheduler.Registration registration = scheduler.register(cache, target -> runs.incrementAndGet(),
+                5, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        assertTrue(runs.get() > 0);
+        // a registration leaves the queue while it runs
+        assertTrue(scheduler.registrations() <= 1);
+        registration.cancel();
+        assertEquals(0, scheduler.registrations());
+        Thread.sleep(10); // a run in progress completes
+        int cancelledRuns = runs.get();
+        Thread.sleep(50);
+        assertEquals(cancelledRuns, runs.get());
+    }
+
+    @Test
+    public void testUnreachableCachesAreDeregistered() throws InterruptedException {
+        List<Object> caches = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) { // many caches share the one thread
+            caches.add(new Object());
+            scheduler.register(caches.get(i), target -> { }, 1, TimeUnit.MILLISECONDS);
+        }
+        // a registration leaves the queue while it runs
+        assertTrue(scheduler.registrations() >= 999);
+        caches.clear();
+        for (int attempt = 0; attempt < 100 && scheduler.registrations() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, scheduler.registrations());
+    }
+
+    @Test
+    public void testFailingMaintenanceKeepsRunning() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Object cache = new Object();
+        MaintenanceScheduler.Registration registration = scheduler.register(cache, target -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("cleanup failed");
+        }, 5, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        assertTrue(runs.get() > 1);
+        assertNotNull(cache); // reachable until here, so it stayed registered
+        registration.cancel();
+    }
+}
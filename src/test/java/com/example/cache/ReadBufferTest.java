@@ -0,0 +1,77 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class ReadBufferTest {
+
+    @Test
+    public void testFullRingDropsReads() {
+        ReadBuffer<Integer> buffer = new ReadBuffer<>();
+        boolean drainRequested = false;
+        for (int i = 0; i < 20; i++) { // one thread fills one ring of 16 slots
+            drainRequested |= buffer.offer(i);
+        }
+        assertTrue(drainRequested);
+        List<Integer> drained = new ArrayList<>();
+        buffer.drain(drained::add);
+        assertEquals(16, drained.size());
+        assertEquals(Integer.valueOf(0), drained.get(0));
+        assertEquals(Integer.valueOf(15), drained.get(15));
+        buffer.offer(20); // room again
+        drained.clear();
+        buffer.drain(drained::add);
+        assertEquals(List.of(20), drained);
+    }
+
+    @Test
+    public void testConcurrentOffersAreDrainedAtMostOnce() throws InterruptedException {
+        ReadBuffer<Integer> buffer = new ReadBuffer<>();
+        ReentrantLock lock = new ReentrantLock();
+        Set<Integer> drained = new HashSet<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 100_000;
+            executor.execute(() -> {
+                for (int i = offset; i < offset + 100_000; i++) {
+                    if (buffer.offer(i) && lock.tryLock()) {
+                        try {
+                            buffer.drain(element -> {
+                                if (!drained.add(element)) {
+                                    duplicates.incrementAndGet();
+                                }
+                            });
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        lock.lock();
+        try {
+            buffer.drain(drained::add);
+        } finally {
+            lock.unlock();
+        }
+        assertEquals(0, duplicates.get());
+        assertTrue(drained.size() > 0 && drained.size() <= 800_000);
+    }
+}
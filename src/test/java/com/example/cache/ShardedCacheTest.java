@@ -0,0 +1,114 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class ShardedCacheTest {
+
+    @Test
+    public void testSimpleCache() {
+        Cache<String, String> simpleCache = new ShardedCache<>(4, 100, InMemoryCacheWithLRUEviction::new);
+        simpleCache.put("1", "one");
+        assertEquals("one", simpleCache.get("1"));
+        simpleCache.put("1", "ONE");
+        assertEquals("ONE", simpleCache.get("1"));
+        simpleCache.put("2", "TWO");
+        assertEquals(2, simpleCache.size());
+        assertEquals("TWO", simpleCache.remove("2"));
+        assertEquals(1, simpleCache.size());
+        // null keys are ignored, as by the segments
+        simpleCache.put(null, "null");
+        assertNull(simpleCache.get(null));
+        assertNull(simpleCache.remove(null));
+        assertEquals(1, simpleCache.size());
+        simpleCache.clear();
+        assertTrue(simpleCache.isEmpty());
+    }
+
+    @Test
+    public void testSegmentsShareTheCapacity() {
+        List<Integer> capacities = new ArrayList<>();
+        ShardedCache<Integer, Integer> simpleCache = new ShardedCache<>(3, 1002, capacity -> {
+            capacities.add(capacity);
+            return new InMemoryCacheWithFIFOEviction<>(capacity);
+        });
+        assertEquals(4, simpleCache.segmentCount()); // rounded up to a power of two
+        assertEquals(Arrays.asList(251, 251, 250, 250), capacities);
+        assertEquals(1002, simpleCache.capacity());
+        for (int i = 0; i < 10_000; i++) {
+            simpleCache.put(i, i, 60_000);
+        }
+        // every segment evicts on its own share
+        assertTrue(simpleCache.size() <= 1002 && simpleCache.size() > 900, "size " + simpleCache.size());
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCache<>(0, 10,
+                InMemoryCacheWithLRUEviction::new));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCache<>(16, 8,
+                InMemoryCacheWithLRUEviction::new));
+    }
+
+    @Test
+    public void testBulkOperationsKeepTheKeyOrder() {
+        Cache<Integer, String> simpleCache = new ShardedCache<>(8, 1000, InMemoryCacheWithLFUEviction::new);
+        Map<Integer, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            entries.put(i, "value-" + i);
+        }
+        simpleCache.putAll(entries, 60_000);
+        assertEquals(100, simpleCache.size());
+        List<Integer> keys = new ArrayList<>(entries.keySet());
+        Collections.reverse(keys);
+        keys.add(1000); // absent
+        assertEquals(new ArrayList<>(keys.subList(0, 100)), new ArrayList<>(simpleCache.getAll(keys).keySet()));
+        simpleCache.invalidateAll(keys.subList(0, 50));
+        assertEquals(50, simpleCache.size());
+        assertNull(simpleCache.get(99));
+        assertEquals("value-0", simpleCache.get(0));
+    }
+
+    @Test
+    public void testStatsAreAggregated() {
+        Cache<String, String> simpleCache = InMemoryCache.builder().maximumSize(64).concurrencyLevel(4)
+                .buildSharded(capacity -> InMemoryCache.builder().maximumSize(capacity).recordStats().build());
+        assertEquals(4, ((ShardedCache<String, String>) simpleCache).segmentCount());
+        for (int i = 0; i < 10; i++) {
+            simpleCache.put(String.valueOf(i), "value");
+        }
+        for (int i = 0; i < 20; i++) {
+            simpleCache.get(String.valueOf(i));
+        }
+        CacheStats stats = simpleCache.stats();
+        assertEquals(10, stats.getHitCount());
+        assertEquals(10, stats.getMissCount());
+        assertThrows(IllegalStateException.class, () -> InMemoryCache.builder()
+                .buildSharded(InMemoryCacheWithLRUEviction::new));
+    }
+
+    @Test
+    public void testConcurrentWrites() throws InterruptedException {
+        Cache<Integer, Integer> simpleCache = InMemoryCache.builder().maximumSize(100_000).concurrencyLevel(16)
+                .buildSharded(InMemoryCacheWithLRUMap::new);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 10_000;
+            executor.execute(() -> {
+                for (int i = offset; i < offset + 10_000; i++) {
+                    simpleCache.put(i, i, 60_000);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(80_000, simpleCache.size());
+        assertEquals(Integer.valueOf(12_345), simpleCache.get(12_345));
+        simpleCache.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class SlabAllocatorTest {
+
+    @Test
+    public void testWriteAndRead() {
+        SlabAllocator allocator = new SlabAllocator(1 << 16);
+        byte[] one = "one".getBytes(StandardCharsets.UTF_8);
+        byte[] two = "two, a longer value".getBytes(StandardCharsets.UTF_8);
+        long first = allocator.allocate(one.length);
+        long second = allocator.allocate(two.length);
+        allocator.write(first, one);
+        allocator.write(second, two);
+        assertArrayEquals(one, allocator.read(first, one.length));
+        assertArrayEquals(two, allocator.read(second, two.length));
+        assertEquals(8 << 10, allocator.reservedBytes()); // one slab of 4 KiB per size class
+    }
+
+    @Test
+    public void testFreedChunkIsReused() {
+        SlabAllocator allocator = new SlabAllocator(1 << 16);
+        long address = allocator.allocate(100);
+        allocator.allocate(100); // keeps the slab
+        long usedBytes = allocator.usedBytes();
+        assertTrue(usedBytes >= 200 && usedBytes <= 250); // at most a fifth is wasted
+        allocator.free(address, 100);
+        assertEquals(usedBytes / 2, allocator.usedBytes());
+        assertEquals(address, allocator.allocate(110)); // same size class
+    }
+
+    @Test
+    public void testEmptySlabsGoToOtherSizeClasses() {
+        SlabAllocator allocator = new SlabAllocator(8 << 10);
+        long small = allocator.allocate(16);
+        assertNotEquals(SlabAllocator.NULL, small);
+        assertNotEquals(SlabAllocator.NULL, allocator.allocate(100));
+        assertEquals(SlabAllocator.NULL, allocator.allocate(200)); // both slabs taken by other size classes
+        allocator.free(small, 16);
+        assertEquals(4 << 10, allocator.reservedBytes()); // released
+        assertNull(allocator.read(small, 16));
+        assertNotEquals(SlabAllocator.NULL, allocator.allocate(200));
+        assertEquals(8 << 10, allocator.reservedBytes());
+    }
+
+    @Test
+    public void testAllocationFailsWhenFull() {
+        SlabAllocator allocator = new SlabAllocator(2048);
+        assertFalse(allocator.fits(2049)); // larger than the memory
+        assertEquals(SlabAllocator.NULL, allocator.allocate(2049));
+        assertTrue(allocator.fits(2048));
+        assertNotEquals(SlabAllocator.NULL, allocator.allocate(2048));
+        assertEquals(SlabAllocator.NULL, allocator.allocate(16)); // the memory is taken by another size class
+        allocator.clear();
+        assertEquals(0, allocator.reservedBytes());
+        assertNotEquals(SlabAllocator.NULL, allocator.allocate(16));
+        assertEquals(2048, allocator.reservedBytes());
+    }
+}
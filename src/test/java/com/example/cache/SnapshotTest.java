@@ -0,0 +1,83 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class SnapshotTest {
+
+    @Test
+    public void testBlocksAreReadInParallel(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("cache.snapshot");
+        String large = "x".repeat(3 << 20); // larger than a block
+        try (Snapshot.Writer<String, String> writer = new Snapshot.Writer<>(path, Serializer.string(),
+                Serializer.string())) {
+            for (int i = 0; i < 100_000; i++) { // about 4 MiB, several blocks
+                writer.write(String.valueOf(i), "value-" + i, TimeUnit.SECONDS.toNanos(60),
+                        TimeUnit.SECONDS.toNanos(30), i % 16);
+            }
+            writer.write("large", large, 0, 0, 1);
+            writer.write("expired", "value", TimeUnit.SECONDS.toNanos(60), 1, 0);
+            writer.commit();
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count()); // the temporary file was moved in place
+        }
+
+        Map<String, String> entries = new ConcurrentHashMap<>();
+        Map<String, Integer> frequencies = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Snapshot.read(path, Serializer.string(), Serializer.string(), executor,
+                    (key, value, expireAfterNanos, remainingNanos, frequency) -> {
+                        entries.put(key, value);
+                        frequencies.put(key, frequency);
+                        if (expireAfterNanos > 0) {
+                            assertTrue(remainingNanos > 0 && remainingNanos <= TimeUnit.SECONDS.toNanos(30));
+                        } else {
+                            assertEquals(0, remainingNanos);
+                        }
+                    });
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100_001, entries.size()); // the expired entry is skipped
+        assertEquals("value-99999", entries.get("99999"));
+        assertEquals(99_999 % 16, frequencies.get("99999"));
+        assertEquals(large, entries.get("large"));
+        assertNull(entries.get("expired"));
+    }
+
+    @Test
+    public void testUncommittedSnapshotIsDiscarded(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("cache.snapshot");
+        try (Snapshot.Writer<String, String> writer = new Snapshot.Writer<>(path, Serializer.string(),
+                Serializer.string())) {
+            writer.write("1", "one", 0, 0, 0);
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("cache.snapshot");
+        Files.write(path, "not a snapshot at all".getBytes());
+        assertThrows(IOException.class, () -> Snapshot.read(path, Serializer.string(), Serializer.string(),
+                Runnable::run, (key, value, expireAfterNanos, remainingNanos, frequency) -> fail()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class TimerWheelTest {
+
+    private static final long START = TimeUnit.DAYS.toNanos(1);
+
+    @Test
+    public void testExpiryAcrossLevels() {
+        TimerWheel<TimerWheel.Node> timerWheel = new TimerWheel<>(START);
+        TimerWheel.Node inMillis = new TimerWheel.Node(START + TimeUnit.MILLISECONDS.toNanos(5));
+        TimerWheel.Node inSeconds = new TimerWheel.Node(START + TimeUnit.SECONDS.toNanos(3));
+        TimerWheel.Node inHours = new TimerWheel.Node(START + TimeUnit.HOURS.toNanos(2));
+        TimerWheel.Node inWeeks = new TimerWheel.Node(START + TimeUnit.DAYS.toNanos(20));
+        timerWheel.schedule(inWeeks);
+        timerWheel.schedule(inHours);
+        timerWheel.schedule(inSeconds);
+        timerWheel.schedule(inMillis);
+        assertEquals(4, timerWheel.size());
+
+        List<TimerWheel.Node> expired = new ArrayList<>();
+        timerWheel.advance(START + TimeUnit.MILLISECONDS.toNanos(4), expired::add);
+        assertTrue(expired.isEmpty());
+        timerWheel.advance(START + TimeUnit.MILLISECONDS.toNanos(10), expired::add);
+        assertEquals(List.of(inMillis), expired);
+        timerWheel.advance(START + TimeUnit.SECONDS.toNanos(2), expired::add);
+        assertEquals(1, expired.size());
+        timerWheel.advance(START + TimeUnit.SECONDS.toNanos(4), expired::add);
+        assertEquals(List.of(inMillis, inSeconds), expired);
+        timerWheel.advance(START + TimeUnit.HOURS.toNanos(3), expired::add);
+        assertEquals(List.of(inMillis, inSeconds, inHours), expired);
+        timerWheel.advance(START + TimeUnit.DAYS.toNanos(19), expired::add);
+        assertEquals(3, expired.size());
+        timerWheel.advance(START + TimeUnit.DAYS.toNanos(21), expired::add);
+        assertEquals(List.of(inMillis, inSeconds, inHours, inWeeks), expired);
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void testCancelAndReschedule() {
+        TimerWheel<TimerWheel.Node> timerWheel = new TimerWheel<>(START);
+        TimerWheel.Node cancelled = new TimerWheel.Node(START + TimeUnit.MILLISECONDS.toNanos(100));
+        TimerWheel.Node rescheduled = new TimerWheel.Node(START + TimeUnit.MILLISECONDS.toNanos(100));
+        timerWheel.schedule(cancelled);
+        timerWheel.schedule(rescheduled);
+        timerWheel.cancel(cancelled);
+        timerWheel.cancel(cancelled); // no-op
+        assertFalse(cancelled.isScheduled());
+        timerWheel.reschedule(rescheduled, START + TimeUnit.MINUTES.toNanos(1));
+        assertEquals(1, timerWheel.size());
+
+        List<TimerWheel.Node> expired = new ArrayList<>();
+        timerWheel.advance(START + TimeUnit.SECONDS.toNanos(1), expired::add);
+        assertTrue(expired.isEmpty());
+        timerWheel.advance(START + TimeUnit.MINUTES.toNanos(2), expired::add);
+        assertEquals(List.of(rescheduled), expired);
+    }
+
+    @Test
+    public void testOverdueNodeExpiresOnNextAdvance() {
+        TimerWheel<TimerWheel.Node> timerWheel = new TimerWheel<>(START);
+        TimerWheel.Node overdue = new TimerWheel.Node(START - TimeUnit.SECONDS.toNanos(1));
+        timerWheel.schedule(overdue);
+        List<TimerWheel.Node> expired = new ArrayList<>();
+        timerWheel.advance(START + TimeUnit.MILLISECONDS.toNanos(2), expired::add);
+        assertEquals(List.of(overdue), expired);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+import com.example.cache.InMemoryCache;
+import com.example.cache.Serializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class CacheServerTest {
+
+    private CacheServer<String, String> server;
+    private RemoteCache<String, String> remoteCache;
+
+    private InetSocketAddress start(Cache<String, String> cache, int reactors) throws IOException {
+        server = new CacheServer<>(cache, Serializer.string(), Serializer.string(), reactors);
+        InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        remoteCache = new RemoteCache<>(address, Serializer.string(), Serializer.string());
+        return address;
+    }
+
+    @AfterEach
+    public void close() throws IOException {
+        if (null != remoteCache) {
+            remoteCache.close();
+        }
+        if (null != server) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testSimpleCache() throws IOException {
+        start(InMemoryCache.builder().maximumSize(100).build(), 1);
+        remoteCache.put("1", "one");
+        assertEquals("one", remoteCache.get("1"));
+        remoteCache.put("1", "ONE");
+        assertEquals("ONE", remoteCache.get("1"));
+        remoteCache.put("2", "TWO");
+        assertNull(remoteCache.get("3"));
+        assertEquals(2, remoteCache.size());
+        assertEquals("TWO", remoteCache.remove("2"));
+        assertNull(remoteCache.remove("2"));
+        assertEquals(1, remoteCache.size());
+        remoteCache.put("1", null); // removes
+        assertTrue(remoteCache.isEmpty());
+        remoteCache.put("4", "four");
+        remoteCache.clear();
+        assertTrue(remoteCache.isEmpty());
+    }
+
+    @Test
+    public void testTtlAndMultiGet() throws Exception {
+        start(InMemoryCache.builder().maximumSize(100).expireAfter(60_000, ChronoUnit.MILLIS).build(), 2);
+        remoteCache.put("short", "lived", 50);
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            entries.put("key-" + i, "value-" + i);
+        }
+        remoteCache.putAll(entries, 60_000);
+        List<String> keys = new ArrayList<>(entries.keySet());
+        keys.add(10, "missing");
+        Map<String, String> values = remoteCache.getAll(keys);
+        assertEquals(entries, values);
+        assertEquals(new ArrayList<>(entries.keySet()), new ArrayList<>(values.keySet()));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertNull(remoteCache.get("short"));
+        remoteCache.invalidateAll(entries.keySet());
+        assertTrue(remoteCache.getAll(keys).isEmpty());
+    }
+
+    @Test
+    public void testPipelinedRequestsFromManyThreads() throws Exception {
+        start(InMemoryCache.builder().maximumSize(100_000).build(), 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(CompletableFuture.runAsync(() -> {
+                List<CompletableFuture<Void>> puts = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    puts.add(remoteCache.putAsync(thread + "-" + i, "value-" + i, -1));
+                }
+                puts.forEach(CompletableFuture::join);
+                List<CompletableFuture<String>> gets = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    gets.add(remoteCache.getAsync(thread + "-" + i));
+                }
+                for (int i = 0; i < 2_000; i++) { // every response matches its request
+                    assertEquals("value-" + i, gets.get(i).join());
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(8_000, remoteCache.size());
+    }
+
+    @Test
+    public void testValuesLargerThanTheBuffers() throws IOException {
+        start(InMemoryCache.builder().maximumSize(100).build(), 1);
+        char[] chars = new char[300_000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        List<CompletableFuture<String>> gets = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            remoteCache.putAsync("large-" + i, large + i, -1);
+            gets.add(remoteCache.getAsync("large-" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(large + i, gets.get(i).join());
+        }
+    }
+
+    @Test
+    public void testPipelinedResponsesLargerThanThePendingBuffers() throws IOException {
+        InetSocketAddress address = start(InMemoryCache.builder().maximumSize(200).build(), 1);
+        char[] chars = new char[60_000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        int count = 200; // about 12 MB of responses, far more than 16 buffers of 64 KB
+        for (int i = 0; i < count; i++) {
+            remoteCache.put("large-" + i, large + i);
+        }
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            // all the requests in one write, the client then only reads
+            ByteBuffer requests = ByteBuffer.allocate(count * 32);
+            for (int i = 0; i < count; i++) {
+                byte[] key = Protocol.utf8("large-" + i);
+                requests.putInt(1 + Protocol.sizeOf(key)).put(Protocol.GET);
+                Protocol.putBytes(requests, key);
+            }
+            requests.flip();
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            channel.socket().setSoTimeout(10_000);
+            DataInputStream in = new DataInputStream(channel.socket().getInputStream());
+            for (int i = 0; i < count; i++) {
+                byte[] response = new byte[in.readInt()];
+                in.readFully(response);
+                assertEquals(Protocol.OK, response[0]);
+                String value = new String(response, 1 + Protocol.LENGTH_SIZE,
+                        response.length - 1 - Protocol.LENGTH_SIZE, StandardCharsets.UTF_8);
+                assertEquals(large + i, value);
+            }
+        }
+    }
+
+    @Test
+    public void testCacheFailuresAreReturned() throws IOException {
+        start(InMemoryCache.builder().maximumSize(100).build(key -> {
+            if (key.startsWith("bad")) {
+                throw new IllegalArgumentException("cannot load " + key);
+            }
+            return "loaded-" + key;
+        }), 1);
+        assertEquals("loaded-1", remoteCache.get("1"));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> remoteCache.get("bad-key"));
+        assertTrue(e.getMessage().contains("cannot load bad-key"), e.getMessage());
+        // the connection goes on
+        assertEquals("loaded-2", remoteCache.get("2"));
+    }
+
+    @Test
+    public void testMalformedFramesCloseTheConnection() throws IOException {
+        InetSocketAddress address = start(InMemoryCache.builder().maximumSize(100).build(), 1);
+        remoteCache.put("1", "one");
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer frame = ByteBuffer.allocate(5).putInt(1).put((byte) 42); // unknown opcode
+            channel.write(frame.flip());
+            assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        }
+        // other connections are not affected
+        assertEquals("one", remoteCache.get("1"));
+        server.close();
+        assertThrows(UncheckedIOException.class, () -> remoteCache.get("1"));
+        assertThrows(UncheckedIOException.class, () -> remoteCache.put("2", "two"));
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.cache.remote;
+
+import com.example.cache.Cache;
+import com.example.cache.InMemoryCache;
+import com.example.cache.Serializer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author vishnu.g
+ */
+public class ConsistentHashCacheTest {
+
+    private static Map<String, Cache<String, String>> nodes(int count) {
+        Map<String, Cache<String, String>> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            nodes.put("node-" + i, InMemoryCache.builder().maximumSize(100_000).build());
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testSimpleCache() throws IOException {
+        Map<String, Cache<String, String>> nodes = nodes(3);
+        try (ConsistentHashCache<String, String> simpleCache = new ConsistentHashCache<>(nodes.keySet(),
+                CacheTransport.local(nodes))) {
+            simpleCache.put("1", "one");
+            assertEquals("one", simpleCache.get("1"));
+            assertEquals("one", nodes.get(simpleCache.nodeFor("1")).get("1")); // on its node only
+            assertEquals(1, nodes.values().stream().mapToLong(Cache::size).sum());
+            simpleCache.put("2", "TWO");
+            assertEquals(2, simpleCache.size());
+            assertEquals("TWO", simpleCache.remove("2"));
+            assertEquals(1, simpleCache.size());
+            simpleCache.clear();
+            assertTrue(simpleCache.isEmpty());
+        }
+        assertThrows(IOException.class, () -> new ConsistentHashCache<>(Arrays.asList("node-0", "unknown"),
+                CacheTransport.local(nodes)));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashCache<>(nodes.keySet(),
+                CacheTransport.local(nodes), 0));
+    }
+
+    @Test
+    public void testKeysAreSpreadEvenly() throws IOException {
+        Map<String, Cache<String, String>> nodes = nodes(4);
+        try (ConsistentHashCache<String, String> simpleCache = new ConsistentHashCache<>(nodes.keySet(),
+                CacheTransport.local(nodes))) {
+            Map<String, String> entries = new HashMap<>();
+            for (int i = 0; i < 40_000; i++) {
+                entries.put("key-" + i, "value-" + i);
+            }
+            simpleCache.putAll(entries, 60_000);
+            for (Cache<String, String> node : nodes.values()) {
+                assertTrue(node.size() > 7_000 && node.size() < 13_000, "node size " + node.size());
+            }
+        }
+    }
+
+    @Test
+    public void testAddingANodeMovesItsShareOfTheKeys() throws IOException {
+        Map<String, Cache<String, String>> nodes = nodes(5);
+        try (ConsistentHashCache<String, String> simpleCache = new ConsistentHashCache<>(
+                Arrays.asList("node-0", "node-1", "node-2", "node-3"), CacheTransport.local(nodes))) {
+            Map<String, String> before = new HashMap<>();
+            for (int i = 0; i < 20_000; i++) {
+                before.put("key-" + i, simpleCache.nodeFor("key-" + i));
+            }
+            simpleCache.addNode("node-4");
+            int moved = 0;
+            for (Map.Entry<String, String> key : before.entrySet()) {
+                String node = simpleCache.nodeFor(key.getKey());
+                if (!node.equals(key.getValue())) {
+                    assertEquals("node-4", node); // keys only move to the new node
+                    moved++;
+                }
+            }
+            assertTrue(moved > 20_000 / 5 * 0.7 && moved < 20_000 / 5 * 1.3, "moved " + moved);
+            simpleCache.removeNode("node-4");
+            assertEquals(4, simpleCache.nodes().size());
+            for (Map.Entry<String, String> key : before.entrySet()) { // back where they were
+                assertEquals(key.getValue(), simpleCache.nodeFor(key.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testGetAllIsSplitByNode() throws IOException {
+        Map<String, Cache<String, String>> nodes = nodes(4);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        CacheTransport<String, String> transport = node -> new ForwardingConnection(
+                CacheConnection.local(nodes.get(node)), batchSizes);
+        try (ConsistentHashCache<String, String> simpleCache = new ConsistentHashCache<>(nodes.keySet(),
+                transport)) {
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                keys.add("key-" + i);
+                if (i % 10 != 0) {
+                    simpleCache.put("key-" + i, "value-" + i);
+                }
+            }
+            Map<String, String> values = simpleCache.getAll(keys);
+            assertEquals(90, values.size());
+            List<String> expected = new ArrayList<>(keys);
+            expected.removeIf(key -> Integer.parseInt(key.substring(4)) % 10 == 0);
+            assertEquals(expected, new ArrayList<>(values.keySet()));
+            // one batch per node
+            assertEquals(4, batchSizes.size());
+            assertEquals(100, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    @Test
+    public void testRemoteNodes() throws IOException {
+        List<CacheServer<String, String>> servers = new ArrayList<>();
+        List<String> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                CacheServer<String, String> server = new CacheServer<>(
+                        InMemoryCache.builder().maximumSize(1_000).build(), Serializer.string(), Serializer.string(),
+                        1);
+                servers.add(server);
+                InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        0));
+                addresses.add(address.getHostString() + ":" + address.getPort());
+            }
+            try (ConsistentHashCache<String, String> simpleCache = new ConsistentHashCache<>(addresses,
+                    CacheTransport.tcp(Serializer.string(), Serializer.string()))) {
+                Map<String, String> entries = new LinkedHashMap<>();
+                for (int i = 0; i < 300; i++) {
+                    entries.put("key-" + i, "value-" + i);
+                }
+                simpleCache.putAll(entries, 60_000);
+                assertEquals(300, simpleCache.size());
+                assertEquals(entries, simpleCache.getAll(entries.keySet()));
+                assertEquals("value-7", simpleCache.get("key-7"));
+            }
+        } finally {
+            for (CacheServer<String, String> server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    private static final class ForwardingConnection implements CacheConnection<String, String> {
+        private final CacheConnection<String, String> delegate;
+        private final List<Integer> batchSizes;
+
+        private ForwardingConnection(CacheConnection<String, String> delegate, List<Integer> batchSizes) {
+            this.delegate = delegate;
+            this.batchSizes = batchSizes;
+        }
+
+        @Override
+        public CompletableFuture<String> getAsync(String key) {
+            return delegate.getAsync(key);
+        }
+
+        @Override
+        public CompletableFuture<Void> putAsync(String key, String value, long ttl) {
+            return delegate.putAsync(key, value, ttl);
+        }
+
+        @Override
+        public CompletableFuture<String> removeAsync(String key) {
+            return delegate.removeAsync(key);
+        }
+
+        @Override
+        public CompletableFuture<Map<String, String>> getAllAsync(
+                Iterable<? extends String> keys) {
+            int size = 0;
+            for (String ignored : keys) {
+                size++;
+            }
+            batchSizes.add(size);
+            return delegate.getAllAsync(keys);
+        }
+
+        @Override
+        public CompletableFuture<Long> sizeAsync() {
+            return delegate.sizeAsync();
+        }
+
+        @Override
+        public CompletableFuture<Void> clearAsync() {
+            return delegate.clearAsync();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}